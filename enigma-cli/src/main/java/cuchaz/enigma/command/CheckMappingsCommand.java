@@ -4,6 +4,7 @@ import cuchaz.enigma.Enigma;
 import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.PackageVisibilityIndex;
 import cuchaz.enigma.classprovider.ClasspathClassProvider;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.serde.MappingSaveParameters;
@@ -12,7 +13,7 @@ import cuchaz.enigma.translation.mapping.tree.EntryTree;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 
 import java.nio.file.Path;
-import java.util.Set;
+import java.util.Arrays;
 import java.util.stream.Collectors;
 
 public class CheckMappingsCommand extends Command {
@@ -54,15 +55,21 @@ public class CheckMappingsCommand extends Command {
 
 		boolean error = false;
 
-		for (Set<ClassEntry> partition : idx.getPackageVisibilityIndex().getPartitions()) {
-			long packages = partition.stream()
+		PackageVisibilityIndex visibilityIndex = idx.getPackageVisibilityIndex();
+		for (int i = 0; i < visibilityIndex.getPartitionCount(); i++) {
+			ClassEntry[] partition = visibilityIndex.getPartitionClasses(i);
+			if (partition.length < 2) {
+				continue;
+			}
+
+			long packages = Arrays.stream(partition)
 					.map(project.getMapper()::deobfuscate)
 					.map(ClassEntry::getPackageName)
 					.distinct()
 					.count();
 			if (packages > 1) {
 				error = true;
-				System.err.println("ERROR: Must be in one package:\n" + partition.stream()
+				System.err.println("ERROR: Must be in one package:\n" + Arrays.stream(partition)
 						.map(project.getMapper()::deobfuscate)
 						.map(ClassEntry::toString)
 						.sorted()
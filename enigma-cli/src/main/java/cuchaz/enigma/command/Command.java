@@ -5,6 +5,7 @@ import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.classprovider.ClasspathClassProvider;
 import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.MappingDelta;
 import cuchaz.enigma.translation.mapping.serde.MappingSaveParameters;
 import cuchaz.enigma.translation.mapping.serde.MappingFormat;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
@@ -40,15 +41,27 @@ public abstract class Command {
 		if (fileMappings != null) {
 			System.out.println("Reading mappings...");
 
-			MappingSaveParameters saveParameters = enigma.getProfile().getMappingSaveParameters();
-			EntryTree<EntryMapping> mappings = chooseEnigmaFormat(fileMappings).read(fileMappings, progress, saveParameters);
-
-			project.setMappings(mappings);
+			project.setMappings(readMappings(project, fileMappings));
 		}
 
 		return project;
 	}
 
+	protected static EntryTree<EntryMapping> readMappings(EnigmaProject project, Path fileMappings) throws Exception {
+		MappingSaveParameters saveParameters = project.getEnigma().getProfile().getMappingSaveParameters();
+		return chooseEnigmaFormat(fileMappings).read(fileMappings, new ConsoleProgressListener(), saveParameters);
+	}
+
+	/**
+	 * Compares the mappings a previous export was made with to the project's current mappings.
+	 */
+	protected static MappingDelta<EntryMapping> readMappingDelta(EnigmaProject project, Path filePreviousMappings) throws Exception {
+		System.out.println("Reading previous mappings...");
+
+		EntryTree<EntryMapping> previousMappings = readMappings(project, filePreviousMappings);
+		return MappingDelta.compare(previousMappings, project.getMapper().getObfToDeobf());
+	}
+
 	protected static MappingFormat chooseEnigmaFormat(Path path) {
 		if (Files.isDirectory(path)) {
 			return MappingFormat.ENIGMA_DIRECTORY;
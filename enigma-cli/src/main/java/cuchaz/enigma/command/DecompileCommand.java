@@ -5,10 +5,15 @@ import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.EnigmaProject.DecompileErrorStrategy;
 import cuchaz.enigma.source.DecompilerService;
 import cuchaz.enigma.source.Decompilers;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.MappingDelta;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 public class DecompileCommand extends Command {
 
@@ -18,12 +23,12 @@ public class DecompileCommand extends Command {
 
 	@Override
 	public String getUsage() {
-		return "<decompiler> <in jar> <out folder> [<mappings file>]";
+		return "<decompiler> <in jar> <out folder> [<mappings file>] [<previous mappings file>]";
 	}
 
 	@Override
 	public boolean isValidArgument(int length) {
-		return length == 3 || length == 4;
+		return length >= 3 && length <= 5;
 	}
 
 	@Override
@@ -32,6 +37,7 @@ public class DecompileCommand extends Command {
 		Path fileJarIn = getReadableFile(getArg(args, 1, "in jar", true)).toPath();
 		Path fileJarOut = getWritableFolder(getArg(args, 2, "out folder", true)).toPath();
 		Path fileMappings = getReadablePath(getArg(args, 3, "mappings file", false));
+		Path filePreviousMappings = getReadablePath(getArg(args, 4, "previous mappings file", false));
 
 		DecompilerService decompilerService;
 
@@ -47,9 +53,26 @@ public class DecompileCommand extends Command {
 
 		ProgressListener progress = new ConsoleProgressListener();
 
-		EnigmaProject.JarExport jar = project.exportRemappedJar(progress);
-		EnigmaProject.SourceExport source = jar.decompile(progress, decompilerService, DecompileErrorStrategy.TRACE_AS_SOURCE);
+		if (filePreviousMappings != null && hasSources(fileJarOut)) {
+			// only redo the classes that changed since the output folder was decompiled with the previous mappings
+			MappingDelta<EntryMapping> delta = readMappingDelta(project, filePreviousMappings);
+			project.updateDecompiledSources(fileJarOut, delta, progress, decompilerService, DecompileErrorStrategy.TRACE_AS_SOURCE);
+		} else {
+			if (filePreviousMappings != null) {
+				System.out.println("Out folder is empty, decompiling all classes...");
+			}
 
-		source.write(fileJarOut, progress);
+			project.writeDecompiledSources(fileJarOut, progress, decompilerService, DecompileErrorStrategy.TRACE_AS_SOURCE);
+		}
+	}
+
+	private static boolean hasSources(Path folder) throws IOException {
+		if (!Files.isDirectory(folder)) {
+			return false;
+		}
+
+		try (Stream<Path> children = Files.list(folder)) {
+			return children.findAny().isPresent();
+		}
 	}
 }
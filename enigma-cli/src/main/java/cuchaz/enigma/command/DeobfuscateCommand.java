@@ -2,7 +2,10 @@ package cuchaz.enigma.command;
 
 import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.ProgressListener;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.MappingDelta;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class DeobfuscateCommand extends Command {
@@ -13,12 +16,12 @@ public class DeobfuscateCommand extends Command {
 
 	@Override
 	public String getUsage() {
-		return "<in jar> <out jar> [<mappings file>]";
+		return "<in jar> <out jar> [<mappings file>] [<previous mappings file>]";
 	}
 
 	@Override
 	public boolean isValidArgument(int length) {
-		return length == 2 || length == 3;
+		return length >= 2 && length <= 4;
 	}
 
 	@Override
@@ -26,12 +29,18 @@ public class DeobfuscateCommand extends Command {
 		Path fileJarIn = getReadablePath(getArg(args, 0, "in jar", true));
 		Path fileJarOut = getWritableFile(getArg(args, 1, "out jar", true)).toPath();
 		Path fileMappings = getReadablePath(getArg(args, 2, "mappings file", false));
+		Path filePreviousMappings = getReadablePath(getArg(args, 3, "previous mappings file", false));
 
 		EnigmaProject project = openProject(fileJarIn, fileMappings);
 
 		ProgressListener progress = new ConsoleProgressListener();
 
-		EnigmaProject.JarExport jar = project.exportRemappedJar(progress);
-		jar.write(fileJarOut, progress);
+		if (filePreviousMappings != null && Files.exists(fileJarOut)) {
+			// only rewrite the classes that changed since the out jar was written with the previous mappings
+			MappingDelta<EntryMapping> delta = readMappingDelta(project, filePreviousMappings);
+			project.updateRemappedJar(fileJarOut, delta, progress);
+		} else {
+			project.writeRemappedJar(fileJarOut, progress);
+		}
 	}
 }
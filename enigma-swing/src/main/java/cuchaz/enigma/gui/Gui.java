@@ -35,6 +35,7 @@ import cuchaz.enigma.Enigma;
 import cuchaz.enigma.EnigmaProfile;
 import cuchaz.enigma.analysis.*;
 import cuchaz.enigma.classhandle.ClassHandle;
+import cuchaz.enigma.classhandle.ClassHandleProvider;
 import cuchaz.enigma.gui.config.Themes;
 import cuchaz.enigma.gui.config.UiConfig;
 import cuchaz.enigma.gui.dialog.CrashDialog;
@@ -54,7 +55,9 @@ import cuchaz.enigma.network.packet.MessageC2SPacket;
 import cuchaz.enigma.network.packet.RemoveMappingC2SPacket;
 import cuchaz.enigma.network.packet.RenameC2SPacket;
 import cuchaz.enigma.source.Token;
+import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.mapping.MappingBatch;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
 import cuchaz.enigma.translation.representation.entry.FieldEntry;
@@ -300,6 +303,7 @@ public class Gui implements LanguageChangeListener {
 				showStructure(getActiveEditor());
 			}
 		});
+		openFiles.addChangeListener(e -> updateFocusedClass());
 
 		deobfPanelPopupMenu = new DeobfPanelPopupMenu(this);
 		deobfPanel.deobfClasses.addMouseListener(new MouseAdapter() {
@@ -477,6 +481,7 @@ public class Gui implements LanguageChangeListener {
 				public void onClassHandleChanged(EditorPanel editor, ClassEntry old, ClassHandle ch) {
 					editors.remove(old);
 					editors.put(ch.getRef(), editor);
+					updateFocusedClass();
 				}
 
 				@Override
@@ -581,6 +586,18 @@ public class Gui implements LanguageChangeListener {
 		infoPanel.setReference(reference == null ? null : reference.entry);
 	}
 
+	/**
+	 * Lets the class handle provider decompile the class of the selected tab first.
+	 */
+	private void updateFocusedClass() {
+		ClassHandleProvider chp = controller.getClassHandleProvider();
+		if (chp == null) return;
+
+		EditorPanel activeEditor = getActiveEditor();
+		ClassHandle handle = activeEditor == null ? null : activeEditor.getClassHandle();
+		chp.setFocusedClass(handle == null ? null : handle.getRef());
+	}
+
 	@Nullable
 	public EditorPanel getActiveEditor() {
 		return EditorPanel.byUi(openFiles.getSelectedComponent());
@@ -795,14 +812,26 @@ public class Gui implements LanguageChangeListener {
 
 	public void onPanelRename(ValidationContext vc, Object prevData, Object data, DefaultMutableTreeNode node) {
 		if (data instanceof String) {
-			// package rename
+			// package rename, committed as one batch so that the open classes are only remapped once
+			EntryRemapper mapper = this.controller.project.getMapper();
+			Map<ClassEntry, ClassEntry> deobfToObf = getMappedClasses(mapper);
+			MappingBatch batch = mapper.beginBatch();
+			Map<ClassEntry, String> renamed = new LinkedHashMap<>();
+
 			for (int i = 0; i < node.getChildCount(); i++) {
 				DefaultMutableTreeNode childNode = (DefaultMutableTreeNode) node.getChildAt(i);
 				ClassEntry prevDataChild = (ClassEntry) childNode.getUserObject();
-				ClassEntry dataChild = new ClassEntry(data + "/" + prevDataChild.getSimpleName());
+				ClassEntry obf = deobfToObf.get(prevDataChild);
+				String newName = data + "/" + prevDataChild.getSimpleName();
 
-				onPanelRename(vc, prevDataChild, dataChild, node);
+				EntryMapping previous = mapper.getDeobfMapping(obf);
+				batch.mapFromObf(obf, previous != null ? previous.withName(newName) : new EntryMapping(newName));
+				renamed.put(obf, newName);
 			}
+
+			if (!this.controller.applyBatch(vc, batch, false)) return;
+			renamed.forEach((obf, newName) -> this.controller.sendPacket(new RenameC2SPacket(obf, newName, false)));
+
 			node.setUserObject(data);
 			// Ob package will never be modified, just reload deob view
 			this.deobfPanel.deobfClasses.reload();
@@ -815,11 +844,7 @@ public class Gui implements LanguageChangeListener {
 			//      fast enough for now
 			EntryRemapper mapper = this.controller.project.getMapper();
 			ClassEntry deobf = (ClassEntry) prevData;
-			ClassEntry obf = mapper.getObfToDeobf().getAllEntries()
-					.filter(e -> e instanceof ClassEntry)
-					.map(e -> (ClassEntry) e)
-					.filter(e -> mapper.deobfuscate(e).equals(deobf))
-					.findAny().get();
+			ClassEntry obf = getMappedClasses(mapper).get(deobf);
 
 			this.controller.rename(vc, new EntryReference<>(obf, obf.getFullName()), ((ClassEntry) data).getFullName(), false);
 			if (!vc.canProceed()) return;
@@ -827,6 +852,15 @@ public class Gui implements LanguageChangeListener {
 		}
 	}
 
+	private static Map<ClassEntry, ClassEntry> getMappedClasses(EntryRemapper mapper) {
+		Map<ClassEntry, ClassEntry> deobfToObf = new HashMap<>();
+		mapper.getObfToDeobf().getAllEntries()
+				.filter(e -> e instanceof ClassEntry)
+				.map(e -> (ClassEntry) e)
+				.forEach(e -> deobfToObf.put(mapper.deobfuscate(e), e));
+		return deobfToObf;
+	}
+
 	public void moveClassTree(Entry<?> obfEntry, String newName) {
 		String oldEntry = obfEntry.getContainingClass().getPackageName();
 		String newEntry = new ClassEntry(newName).getPackageName();
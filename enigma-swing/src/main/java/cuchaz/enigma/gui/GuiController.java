@@ -17,7 +17,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -55,6 +57,7 @@ import cuchaz.enigma.translation.mapping.*;
 import cuchaz.enigma.translation.mapping.serde.MappingFormat;
 import cuchaz.enigma.translation.mapping.serde.MappingParseException;
 import cuchaz.enigma.translation.mapping.serde.MappingSaveParameters;
+import cuchaz.enigma.translation.mapping.tree.DeltaTrackingTree;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
 import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
@@ -77,6 +80,9 @@ public class GuiController implements ClientPacketHandler {
 
 	private ClassHandleProvider chp;
 
+	private DeltaTrackingTree<EntryMapping> trackedMappings;
+	private final Set<Entry<?>> changedEntries = new HashSet<>();
+
 	private ClassHandle tokenHandle;
 
 	private EnigmaClient client;
@@ -94,6 +100,10 @@ public class GuiController implements ClientPacketHandler {
 	}
 
 	public CompletableFuture<Void> openJar(final Path jarPath) {
+		if (project != null) {
+			closeJar();
+		}
+
 		this.gui.onStartOpenJar();
 
 		return ProgressDialog.runOffThread(gui.getFrame(), progress -> {
@@ -110,6 +120,11 @@ public class GuiController implements ClientPacketHandler {
 	public void closeJar() {
 		this.chp.destroy();
 		this.chp = null;
+		try {
+			this.project.close();
+		} catch (IOException e) {
+			System.err.println("Failed to close jar: " + e.getMessage());
+		}
 		this.project = null;
 		this.gui.onCloseJar();
 	}
@@ -123,7 +138,7 @@ public class GuiController implements ClientPacketHandler {
 			try {
 				MappingSaveParameters saveParameters = enigma.getProfile().getMappingSaveParameters();
 
-				EntryTree<EntryMapping> mappings = format.read(path, progress, saveParameters);
+				EntryTree<EntryMapping> mappings = format.read(path, progress, saveParameters, project);
 				project.setMappings(mappings);
 
 				loadedMappingFormat = format;
@@ -386,6 +401,7 @@ public class GuiController implements ClientPacketHandler {
 
 	public void onModifierChanged(ValidationContext vc, Entry<?> entry, AccessModifier modifier) {
 		EntryRemapper mapper = project.getMapper();
+		trackMappingChanges();
 
 		EntryMapping mapping = mapper.getDeobfMapping(entry);
 		if (mapping != null) {
@@ -394,7 +410,7 @@ public class GuiController implements ClientPacketHandler {
 			mapper.mapFromObf(vc, entry, new EntryMapping(entry.getName(), modifier));
 		}
 
-		chp.invalidateMapped();
+		invalidateChangedMappings();
 	}
 
 	public StructureTreeNode getClassStructure(ClassEntry entry, boolean hideDeobfuscated) {
@@ -461,6 +477,7 @@ public class GuiController implements ClientPacketHandler {
 	public void rename(ValidationContext vc, EntryReference<Entry<?>, Entry<?>> reference, String newName, boolean refreshClassTree, boolean validateOnly) {
 		Entry<?> entry = reference.getNameableEntry();
 		EntryMapping previous = project.getMapper().getDeobfMapping(entry);
+		trackMappingChanges();
 		project.getMapper().mapFromObf(vc, entry, previous != null ? previous.withName(newName) : new EntryMapping(newName), true, validateOnly);
 		gui.showStructure(gui.getActiveEditor());
 
@@ -469,11 +486,12 @@ public class GuiController implements ClientPacketHandler {
 		if (refreshClassTree && reference.entry instanceof ClassEntry && !((ClassEntry) reference.entry).isInnerClass())
 			this.gui.moveClassTree(reference.entry, newName);
 
-		chp.invalidateMapped();
+		invalidateChangedMappings();
 	}
 
 	@Override
 	public void removeMapping(ValidationContext vc, EntryReference<Entry<?>, Entry<?>> reference) {
+		trackMappingChanges();
 		project.getMapper().removeByObf(vc, reference.getNameableEntry());
 		gui.showStructure(gui.getActiveEditor());
 
@@ -482,7 +500,7 @@ public class GuiController implements ClientPacketHandler {
 		if (reference.entry instanceof ClassEntry)
 			this.gui.moveClassTree(reference.entry, false, true);
 
-		chp.invalidateMapped();
+		invalidateChangedMappings();
 	}
 
 	@Override
@@ -513,6 +531,7 @@ public class GuiController implements ClientPacketHandler {
 	public void markAsDeobfuscated(ValidationContext vc, EntryReference<Entry<?>, Entry<?>> reference) {
 		EntryRemapper mapper = project.getMapper();
 		Entry<?> entry = reference.getNameableEntry();
+		trackMappingChanges();
 		mapper.mapFromObf(vc, entry, new EntryMapping(mapper.deobfuscate(entry).getName()));
 		gui.showStructure(gui.getActiveEditor());
 
@@ -521,7 +540,73 @@ public class GuiController implements ClientPacketHandler {
 		if (reference.entry instanceof ClassEntry && !((ClassEntry) reference.entry).isInnerClass())
 			this.gui.moveClassTree(reference.entry, true, false);
 
-		chp.invalidateMapped();
+		invalidateChangedMappings();
+	}
+
+	/**
+	 * Commits a batch of mapping changes and re-remaps the open classes once, instead of after
+	 * every change.
+	 *
+	 * @return whether the changes were valid and have been applied
+	 */
+	public boolean applyBatch(ValidationContext vc, MappingBatch batch) {
+		return applyBatch(vc, batch, true);
+	}
+
+	/**
+	 * @param refreshClassTree whether to move the renamed and unmapped top-level classes in the class tree
+	 * @see #applyBatch(ValidationContext, MappingBatch)
+	 */
+	public boolean applyBatch(ValidationContext vc, MappingBatch batch, boolean refreshClassTree) {
+		Map<Entry<?>, EntryMapping> changes = batch.getChanges();
+		trackMappingChanges();
+		if (!batch.commit(vc)) {
+			return false;
+		}
+
+		gui.showStructure(gui.getActiveEditor());
+
+		if (refreshClassTree) {
+			changes.forEach((entry, mapping) -> {
+				if (!(entry instanceof ClassEntry)) return;
+
+				if (mapping == null) {
+					this.gui.moveClassTree(entry, false, true);
+				} else if (!((ClassEntry) entry).isInnerClass()) {
+					this.gui.moveClassTree(entry, mapping.getTargetName());
+				}
+			});
+		}
+
+		invalidateChangedMappings();
+		return true;
+	}
+
+	/**
+	 * Starts recording the entries whose mappings change, if the current mappings aren't recorded
+	 * yet, so that {@link #invalidateChangedMappings()} only has to remap the open classes that
+	 * refer to them.
+	 */
+	private void trackMappingChanges() {
+		DeltaTrackingTree<EntryMapping> mappings = project.getMapper().getObfToDeobf();
+		if (mappings != trackedMappings) {
+			trackedMappings = mappings;
+			mappings.addChangeListener(entry -> {
+				synchronized (changedEntries) {
+					changedEntries.add(entry);
+				}
+			});
+		}
+	}
+
+	private void invalidateChangedMappings() {
+		Set<Entry<?>> changed;
+		synchronized (changedEntries) {
+			changed = new HashSet<>(changedEntries);
+			changedEntries.clear();
+		}
+
+		chp.invalidateMapped(changed);
 	}
 
 	public void openStats(Set<StatsMember> includedMembers, String topLevelPackage, boolean includeSynthetic) {
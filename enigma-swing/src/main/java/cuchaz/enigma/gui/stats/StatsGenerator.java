@@ -108,7 +108,7 @@ public class StatsGenerator {
 
     private void update(Map<String, Integer> counts, Entry<?> entry) {
         if (project.isObfuscated(entry)) {
-            String parent = mapper.deobfuscate(entry.getAncestry().get(0)).getName().replace('/', '.');
+            String parent = mapper.deobfuscate(entry.getAncestor(0)).getName().replace('/', '.');
             counts.put(parent, counts.getOrDefault(parent, 0) + 1);
         }
     }
@@ -12,17 +12,24 @@
 package cuchaz.enigma;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.ServiceLoader;
-import java.util.Set;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.io.BaseEncoding;
 import org.objectweb.asm.Opcodes;
 
 import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.JarIndexSnapshot;
 import cuchaz.enigma.api.EnigmaPlugin;
 import cuchaz.enigma.api.EnigmaPluginContext;
 import cuchaz.enigma.api.service.EnigmaService;
@@ -32,10 +39,11 @@ import cuchaz.enigma.api.service.JarIndexerService;
 import cuchaz.enigma.classprovider.CachingClassProvider;
 import cuchaz.enigma.classprovider.ClassProvider;
 import cuchaz.enigma.classprovider.CombiningClassProvider;
-import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.classprovider.MappedJarClassProvider;
+import cuchaz.enigma.config.ConfigPaths;
+import cuchaz.enigma.source.SourceCache;
+import cuchaz.enigma.utils.I18n;
 import cuchaz.enigma.utils.Utils;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldNode;
 
 public class Enigma {
     public static final String NAME = "Enigma";
@@ -45,10 +53,17 @@ public class Enigma {
 
     private final EnigmaProfile profile;
 	private final EnigmaServices services;
+	@Nullable
+	private final Path indexCacheDirectory;
+	private final long indexCacheSize;
+	private final SourceCache sourceCache;
 
-	private Enigma(EnigmaProfile profile, EnigmaServices services) {
+	private Enigma(EnigmaProfile profile, EnigmaServices services, @Nullable Path indexCacheDirectory, long indexCacheSize, SourceCache sourceCache) {
 		this.profile = profile;
 		this.services = services;
+		this.indexCacheDirectory = indexCacheDirectory;
+		this.indexCacheSize = indexCacheSize;
+		this.sourceCache = sourceCache;
 	}
 
 	public static Enigma create() {
@@ -60,24 +75,116 @@ public class Enigma {
 	}
 
 	public EnigmaProject openJar(Path path, ClassProvider libraryClassProvider, ProgressListener progress) throws IOException {
-		JarClassProvider jarClassProvider = new JarClassProvider(path);
-		ClassProvider classProvider = new CachingClassProvider(new CombiningClassProvider(jarClassProvider, libraryClassProvider));
-		Set<String> scope = jarClassProvider.getClassNames();
+		MappedJarClassProvider jarClassProvider = new MappedJarClassProvider(path);
+		try {
+			ClassProvider classProvider = new CachingClassProvider(new CombiningClassProvider(jarClassProvider, libraryClassProvider), profile.getClassCacheParameters());
+			Set<String> scope = jarClassProvider.getClassNames();
 
-		EnigmaProfile.fieldSignatures.clear();
-		jarClassProvider.getClassNames().forEach(clazzName -> {
-			ClassNode clazz = jarClassProvider.get(clazzName);
+			byte[] jarChecksum = Utils.zipSha1(path);
+			byte[] classpathChecksum = Utils.classpathSha1();
+			sourceCache.open(jarChecksum, classpathChecksum);
 
-			for (FieldNode field : clazz.fields) {
-				EnigmaProfile.fieldSignatures.put(clazz.name + "/" + field.name, field.desc);
+			JarIndex cachedIndex = readCachedIndex(jarChecksum, progress);
+			JarIndex index;
+
+			if (cachedIndex != null) {
+				index = cachedIndex;
+			} else {
+				index = JarIndex.empty();
+				index.indexJar(scope, classProvider, progress);
+				writeCachedIndex(index, jarChecksum);
 			}
-		});
 
-		JarIndex index = JarIndex.empty();
-		index.indexJar(scope, classProvider, progress);
-		services.get(JarIndexerService.TYPE).forEach(indexer -> indexer.acceptJar(scope, classProvider, index));
+			pruneIndexCache(jarChecksum);
+
+			services.get(JarIndexerService.TYPE).forEach(indexer -> indexer.acceptJar(scope, classProvider, index));
+			// plugins may have changed the index after it was processed
+			index.invalidateCaches();
+
+			return new EnigmaProject(this, path, classProvider, index, jarChecksum, classpathChecksum, jarClassProvider);
+		} catch (IOException | RuntimeException e) {
+			jarClassProvider.close();
+			throw e;
+		}
+	}
+
+	@Nullable
+	private JarIndex readCachedIndex(byte[] jarChecksum, ProgressListener progress) {
+		if (indexCacheDirectory == null) {
+			return null;
+		}
+
+		progress.init(1, I18n.translate("progress.jar.indexing"));
+		progress.step(1, I18n.translate("progress.jar.indexing.cache"));
+
+		Path snapshotPath = getIndexSnapshotPath(jarChecksum);
+		try {
+			return JarIndexSnapshot.read(snapshotPath, jarChecksum);
+		} catch (IOException e) {
+			System.err.println("Failed to read cached jar index " + snapshotPath + ", reindexing: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void writeCachedIndex(JarIndex index, byte[] jarChecksum) {
+		if (indexCacheDirectory == null) {
+			return;
+		}
 
-		return new EnigmaProject(this, path, classProvider, index, Utils.zipSha1(path));
+		Path snapshotPath = getIndexSnapshotPath(jarChecksum);
+		try {
+			JarIndexSnapshot.write(index, jarChecksum, snapshotPath);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Failed to write cached jar index " + snapshotPath + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Deletes the snapshots of other jars, least recently opened first, until the index cache fits
+	 * in its maximum size. The snapshot of the opened jar is never deleted.
+	 */
+	private void pruneIndexCache(byte[] jarChecksum) {
+		if (indexCacheDirectory == null || !Files.isDirectory(indexCacheDirectory)) {
+			return;
+		}
+
+		Path keep = getIndexSnapshotPath(jarChecksum);
+		try {
+			if (Files.isRegularFile(keep)) {
+				Files.setLastModifiedTime(keep, FileTime.fromMillis(System.currentTimeMillis()));
+			}
+
+			List<Path> snapshots;
+			try (Stream<Path> children = Files.list(indexCacheDirectory)) {
+				snapshots = children.filter(path -> path.getFileName().toString().endsWith(".idx")).collect(Collectors.toList());
+			}
+
+			Map<Path, Long> sizes = new HashMap<>();
+			Map<Path, FileTime> opened = new HashMap<>();
+			long totalSize = 0;
+			for (Path snapshot : snapshots) {
+				sizes.put(snapshot, Files.size(snapshot));
+				opened.put(snapshot, Files.getLastModifiedTime(snapshot));
+				totalSize += sizes.get(snapshot);
+			}
+
+			snapshots.remove(keep);
+			snapshots.sort(Comparator.comparing(opened::get));
+			for (Path snapshot : snapshots) {
+				if (totalSize <= indexCacheSize) {
+					break;
+				}
+
+				Files.deleteIfExists(snapshot);
+				totalSize -= sizes.get(snapshot);
+			}
+		} catch (IOException | UncheckedIOException e) {
+			System.err.println("Failed to prune jar index cache " + indexCacheDirectory + ": " + e.getMessage());
+		}
+	}
+
+	private Path getIndexSnapshotPath(byte[] jarChecksum) {
+		return indexCacheDirectory.resolve(BaseEncoding.base16().lowerCase().encode(jarChecksum) + ".idx");
 	}
 
 	public EnigmaProfile getProfile() {
@@ -88,9 +195,29 @@ public class Enigma {
 		return services;
 	}
 
+	@Nullable
+	public Path getIndexCacheDirectory() {
+		return indexCacheDirectory;
+	}
+
+	public SourceCache getSourceCache() {
+		return sourceCache;
+	}
+
 	public static class Builder {
 		private EnigmaProfile profile = EnigmaProfile.EMPTY;
 		private Iterable<EnigmaPlugin> plugins = ServiceLoader.load(EnigmaPlugin.class);
+		@Nullable
+		private Path indexCacheDirectory = Boolean.parseBoolean(System.getProperty("enigma.indexCache", "true"))
+				? ConfigPaths.getCachePathRoot().resolve("enigma").resolve("index")
+				: null;
+		private long indexCacheSize = Long.getLong("enigma.indexCacheSize", 256L * 1024 * 1024);
+		@Nullable
+		private Path sourceCacheDirectory = Boolean.parseBoolean(System.getProperty("enigma.sourceCache", "true"))
+				? ConfigPaths.getCachePathRoot().resolve("enigma").resolve("sources")
+				: null;
+		private long sourceCacheSize = Long.getLong("enigma.sourceCacheSize", SourceCache.DEFAULT_MAXIMUM_BYTES);
+		private long sourceCacheDiskSize = Long.getLong("enigma.sourceCacheDiskSize", SourceCache.DEFAULT_MAXIMUM_DISK_BYTES);
 
 		private Builder() {
 		}
@@ -107,6 +234,58 @@ public class Enigma {
 			return this;
 		}
 
+		/**
+		 * Sets the directory where jar index snapshots are cached, keyed by the jar checksum.
+		 * A {@code null} directory disables the cache, which is also the default when the
+		 * {@code enigma.indexCache} system property is set to {@code false}.
+		 */
+		public Builder setIndexCacheDirectory(@Nullable Path indexCacheDirectory) {
+			this.indexCacheDirectory = indexCacheDirectory;
+			return this;
+		}
+
+		/**
+		 * Sets the approximate number of bytes of jar index snapshots kept in the index cache
+		 * directory, which defaults to the {@code enigma.indexCacheSize} system property. The snapshot
+		 * of the opened jar is kept even if it exceeds it.
+		 */
+		public Builder setIndexCacheSize(long indexCacheSize) {
+			Preconditions.checkArgument(indexCacheSize >= 0, "index cache size cannot be negative");
+			this.indexCacheSize = indexCacheSize;
+			return this;
+		}
+
+		/**
+		 * Sets the directory where decompiled sources are cached, keyed by the jar checksum, the
+		 * library classpath, the decompiler and the class. A {@code null} directory only keeps sources in memory, which is
+		 * also the default when the {@code enigma.sourceCache} system property is set to {@code false}.
+		 */
+		public Builder setSourceCacheDirectory(@Nullable Path sourceCacheDirectory) {
+			this.sourceCacheDirectory = sourceCacheDirectory;
+			return this;
+		}
+
+		/**
+		 * Sets the approximate number of bytes of decompiled sources kept in memory, which defaults to
+		 * the {@code enigma.sourceCacheSize} system property.
+		 */
+		public Builder setSourceCacheSize(long sourceCacheSize) {
+			Preconditions.checkArgument(sourceCacheSize >= 0, "source cache size cannot be negative");
+			this.sourceCacheSize = sourceCacheSize;
+			return this;
+		}
+
+		/**
+		 * Sets the approximate number of bytes of decompiled sources kept in the source cache directory,
+		 * which defaults to the {@code enigma.sourceCacheDiskSize} system property. The sources of the
+		 * opened jar are kept even if they exceed it.
+		 */
+		public Builder setSourceCacheDiskSize(long sourceCacheDiskSize) {
+			Preconditions.checkArgument(sourceCacheDiskSize >= 0, "source cache disk size cannot be negative");
+			this.sourceCacheDiskSize = sourceCacheDiskSize;
+			return this;
+		}
+
 		public Enigma build() {
 			PluginContext pluginContext = new PluginContext(profile);
 			for (EnigmaPlugin plugin : plugins) {
@@ -114,7 +293,7 @@ public class Enigma {
 			}
 
 			EnigmaServices services = pluginContext.buildServices();
-			return new Enigma(profile, services);
+			return new Enigma(profile, services, indexCacheDirectory, indexCacheSize, new SourceCache(sourceCacheSize, sourceCacheDirectory, sourceCacheDiskSize));
 		}
 	}
 
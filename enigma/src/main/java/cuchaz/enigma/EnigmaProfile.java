@@ -11,6 +11,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 import cuchaz.enigma.api.service.EnigmaServiceType;
+import cuchaz.enigma.classprovider.ClassCacheParameters;
 import cuchaz.enigma.translation.mapping.serde.MappingFileNameFormat;
 import cuchaz.enigma.translation.mapping.serde.MappingSaveParameters;
 
@@ -41,7 +42,8 @@ public final class EnigmaProfile {
 	@SerializedName("mapping_save_parameters")
 	private final MappingSaveParameters mappingSaveParameters = null;
 
-	public static Map<String, String> fieldSignatures = new HashMap<>();
+	@SerializedName("class_cache")
+	private final ClassCacheParameters classCacheParameters = null;
 
 	private EnigmaProfile(ServiceContainer serviceProfiles) {
 		this.serviceProfiles = serviceProfiles;
@@ -98,6 +100,11 @@ public final class EnigmaProfile {
 		return mappingSaveParameters == null ? EnigmaProfile.DEFAULT_MAPPING_SAVE_PARAMETERS : mappingSaveParameters;
 	}
 
+	public ClassCacheParameters getClassCacheParameters() {
+		//noinspection ConstantConditions
+		return classCacheParameters == null ? ClassCacheParameters.DEFAULT : classCacheParameters;
+	}
+
 	public static class Service {
 		private final String id;
 		private final Map<String, String> args;
@@ -1,28 +1,36 @@
 package cuchaz.enigma;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import cuchaz.enigma.api.service.ObfuscationTestService;
 import cuchaz.enigma.classprovider.ObfuscationFixClassProvider;
-import org.objectweb.asm.ClassWriter;
+import cuchaz.enigma.classprovider.TranslatingClassProvider;
 import org.objectweb.asm.tree.ClassNode;
 
+import cuchaz.enigma.analysis.AffectedClassCollector;
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.index.JarIndex;
 import cuchaz.enigma.api.service.NameProposalService;
@@ -35,36 +43,66 @@ import cuchaz.enigma.translation.ProposingTranslator;
 import cuchaz.enigma.translation.Translator;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.mapping.MappingDelta;
 import cuchaz.enigma.translation.mapping.MappingsChecker;
 import cuchaz.enigma.translation.mapping.tree.DeltaTrackingTree;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
 import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
 import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.AsmUtil;
 import cuchaz.enigma.utils.I18n;
+import cuchaz.enigma.utils.ParallelJarWriter;
+
+public class EnigmaProject implements Closeable {
+	private static final int DECOMPILE_BATCH_SIZE = 512;
+	private static final int WRITE_BATCH_SIZE = 256;
 
-public class EnigmaProject {
 	private final Enigma enigma;
 
 	private final Path jarPath;
 	private final ClassProvider classProvider;
 	private final JarIndex jarIndex;
 	private final byte[] jarChecksum;
+	private final byte[] classpathChecksum;
+	@Nullable
+	private final Closeable jarResource;
 
 	private EntryRemapper mapper;
 
-	public EnigmaProject(Enigma enigma, Path jarPath, ClassProvider classProvider, JarIndex jarIndex, byte[] jarChecksum) {
+	public EnigmaProject(Enigma enigma, Path jarPath, ClassProvider classProvider, JarIndex jarIndex, byte[] jarChecksum, byte[] classpathChecksum) {
+		this(enigma, jarPath, classProvider, jarIndex, jarChecksum, classpathChecksum, null);
+	}
+
+	/**
+	 * @param jarResource what reads the jar for the class provider, closed along with the project
+	 */
+	public EnigmaProject(Enigma enigma, Path jarPath, ClassProvider classProvider, JarIndex jarIndex, byte[] jarChecksum, byte[] classpathChecksum, @Nullable Closeable jarResource) {
 		Preconditions.checkArgument(jarChecksum.length == 20);
+		Preconditions.checkArgument(classpathChecksum.length == 20);
 		this.enigma = enigma;
 		this.jarPath = jarPath;
 		this.classProvider = classProvider;
 		this.jarIndex = jarIndex;
 		this.jarChecksum = jarChecksum;
+		this.classpathChecksum = classpathChecksum;
+		this.jarResource = jarResource;
 
 		this.mapper = EntryRemapper.empty(jarIndex);
 	}
 
+	/**
+	 * Releases the jar. Classes can't be loaded from the project afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (jarResource != null) {
+			jarResource.close();
+		}
+	}
+
 	public void setMappings(EntryTree<EntryMapping> mappings) {
 		if (mappings != null) {
 			mapper = EntryRemapper.mapped(jarIndex, mappings);
@@ -93,6 +131,18 @@ public class EnigmaProject {
 		return jarChecksum;
 	}
 
+	/**
+	 * @return the checksum of the classpath the library classes of the project are loaded from
+	 */
+	public byte[] getClasspathChecksum() {
+		return classpathChecksum;
+	}
+
+	@Nullable
+	public TypeDescriptor getFieldDescriptor(ClassEntry owner, String name) {
+		return jarIndex.getEntryIndex().getFieldDescriptor(owner, name);
+	}
+
 	public EntryRemapper getMapper() {
 		return mapper;
 	}
@@ -188,12 +238,33 @@ public class EnigmaProject {
 		return true;
 	}
 
+	private Translator createExportDeobfuscator() {
+		return createExportDeobfuscator(mapper);
+	}
+
+	private Translator createExportDeobfuscator(EntryRemapper mapper) {
+		NameProposalService[] nameProposalServices = getEnigma().getServices().get(NameProposalService.TYPE).toArray(new NameProposalService[0]);
+		return nameProposalServices.length == 0 ? mapper.getDeobfuscator() : new ProposingTranslator(mapper, nameProposalServices);
+	}
+
+	private TranslatingClassProvider createExportClassProvider(Translator deobfuscator) {
+		ClassProvider fixingClassProvider = new ObfuscationFixClassProvider(classProvider, jarIndex);
+		return new TranslatingClassProvider(fixingClassProvider, deobfuscator, jarIndex.getEntryIndex().getClasses(), enigma.getProfile().getClassCacheParameters());
+	}
+
+	/**
+	 * Finds the classes whose remapped output changes with the given mapping delta.
+	 *
+	 * @return the obfuscated entries of the affected classes, including inner classes
+	 */
+	public Set<ClassEntry> getAffectedClasses(MappingDelta<?> delta) {
+		return new AffectedClassCollector(jarIndex, classProvider).collect(delta);
+	}
+
 	public JarExport exportRemappedJar(ProgressListener progress) {
 		Collection<ClassEntry> classEntries = jarIndex.getEntryIndex().getClasses();
 		ClassProvider fixingClassProvider = new ObfuscationFixClassProvider(classProvider, jarIndex);
-
-		NameProposalService[] nameProposalServices = getEnigma().getServices().get(NameProposalService.TYPE).toArray(new NameProposalService[0]);
-		Translator deobfuscator = nameProposalServices.length == 0 ? mapper.getDeobfuscator() : new ProposingTranslator(mapper, nameProposalServices);
+		Translator deobfuscator = createExportDeobfuscator();
 
 		AtomicInteger count = new AtomicInteger();
 		progress.init(classEntries.size(), I18n.translate("progress.classes.deobfuscating"));
@@ -218,6 +289,161 @@ public class EnigmaProject {
 		return new JarExport(mapper, compiled);
 	}
 
+	/**
+	 * Remaps the jar and writes it to the given path. Unlike {@link #exportRemappedJar(ProgressListener)},
+	 * classes are translated and written in batches of a fixed size, so only the classes of the current
+	 * batch are held in memory.
+	 */
+	public void writeRemappedJar(Path path, ProgressListener progress) throws IOException {
+		writeRemappedJar(path, progress, ParallelJarWriter.DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * @param compressionLevel the deflate level of the jar entries, or {@link java.util.zip.Deflater#NO_COMPRESSION} to store them
+	 * @see #writeRemappedJar(Path, ProgressListener)
+	 */
+	public void writeRemappedJar(Path path, ProgressListener progress, int compressionLevel) throws IOException {
+		TranslatingClassProvider translatingClassProvider = createExportClassProvider(createExportDeobfuscator());
+		Set<String> classNames = translatingClassProvider.getClassNames();
+
+		progress.init(classNames.size(), I18n.translate("progress.jar.writing"));
+
+		try (ParallelJarWriter out = new ParallelJarWriter(Files.newOutputStream(path))) {
+			int count = 0;
+
+			// the classes of a batch are translated and compressed in parallel, but written in name order so that the jar is
+			// reproducible
+			List<String> sortedNames = classNames.stream().sorted().collect(Collectors.toList());
+			for (List<String> batch : Lists.partition(sortedNames, WRITE_BATCH_SIZE)) {
+				List<ParallelJarWriter.PreparedEntry> entries = batch.parallelStream()
+						.map(name -> {
+							ClassNode node = translatingClassProvider.get(name);
+							return node != null ? ParallelJarWriter.prepare(name + ".class", AsmUtil.nodeToBytes(node), compressionLevel) : null;
+						})
+						.filter(Objects::nonNull)
+						.collect(Collectors.toList());
+
+				for (ParallelJarWriter.PreparedEntry entry : entries) {
+					progress.step(count++, entry.getName());
+					out.write(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remaps and decompiles the jar, writing the sources to the given directory. Unlike
+	 * {@link JarExport#decompile(ProgressListener, DecompilerService, DecompileErrorStrategy)}, each class is
+	 * translated on demand and its source is written as soon as it has been decompiled, and the decompiler is
+	 * recreated for every batch of classes so its caches don't grow with the size of the jar.
+	 */
+	public void writeDecompiledSources(Path path, ProgressListener progress, DecompilerService decompilerService, DecompileErrorStrategy errorStrategy) throws IOException {
+		TranslatingClassProvider translatingClassProvider = createExportClassProvider(createExportDeobfuscator());
+		List<String> classNames = translatingClassProvider.getClassNames().stream()
+				.filter(name -> name.indexOf('$') == -1)
+				.collect(Collectors.toList());
+
+		writeDecompiledSources(path, classNames, translatingClassProvider, progress, decompilerService, errorStrategy);
+	}
+
+	/**
+	 * Updates a jar written by {@link #writeRemappedJar(Path, ProgressListener)} with the base mappings of the
+	 * delta to the current mappings, rewriting only the classes affected by the delta and leaving the other
+	 * entries untouched.
+	 */
+	public void updateRemappedJar(Path path, MappingDelta<EntryMapping> delta, ProgressListener progress) throws IOException {
+		Set<ClassEntry> affected = getAffectedClasses(delta);
+		Translator baseDeobfuscator = createExportDeobfuscator(EntryRemapper.mapped(jarIndex, delta.getBaseMappings()));
+		Translator deobfuscator = createExportDeobfuscator();
+		TranslatingClassProvider translatingClassProvider = createExportClassProvider(deobfuscator);
+
+		progress.init(affected.size(), I18n.translate("progress.jar.writing"));
+
+		try (FileSystem fileSystem = FileSystems.newFileSystem(path, (ClassLoader) null)) {
+			// remove all stale entries first, since a renamed class may take over the old name of another one
+			for (ClassEntry entry : affected) {
+				String baseName = baseDeobfuscator.translate(entry).getFullName();
+				if (!baseName.equals(deobfuscator.translate(entry).getFullName())) {
+					Files.deleteIfExists(fileSystem.getPath(baseName + ".class"));
+				}
+			}
+
+			int count = 0;
+			for (ClassEntry entry : affected) {
+				String name = deobfuscator.translate(entry).getFullName();
+				progress.step(count++, name);
+
+				ClassNode node = translatingClassProvider.get(name);
+				if (node == null) {
+					continue;
+				}
+
+				Path classPath = fileSystem.getPath(name + ".class");
+				if (classPath.getParent() != null) {
+					Files.createDirectories(classPath.getParent());
+				}
+
+				Files.write(classPath, AsmUtil.nodeToBytes(node));
+			}
+		}
+	}
+
+	/**
+	 * Updates sources written by {@link #writeDecompiledSources(Path, ProgressListener, DecompilerService, DecompileErrorStrategy)}
+	 * with the base mappings of the delta to the current mappings, decompiling only the top-level classes affected
+	 * by the delta.
+	 */
+	public void updateDecompiledSources(Path path, MappingDelta<EntryMapping> delta, ProgressListener progress, DecompilerService decompilerService, DecompileErrorStrategy errorStrategy) throws IOException {
+		Set<ClassEntry> affected = getAffectedClasses(delta).stream()
+				.map(ClassEntry::getOutermostClass)
+				.collect(Collectors.toSet());
+		Translator baseDeobfuscator = createExportDeobfuscator(EntryRemapper.mapped(jarIndex, delta.getBaseMappings()));
+		Translator deobfuscator = createExportDeobfuscator();
+
+		List<String> classNames = new ArrayList<>(affected.size());
+		for (ClassEntry entry : affected) {
+			String baseName = baseDeobfuscator.translate(entry).getFullName();
+			String name = deobfuscator.translate(entry).getFullName();
+			if (!baseName.equals(name)) {
+				Files.deleteIfExists(ClassSource.resolvePath(path, baseName));
+			}
+
+			classNames.add(name);
+		}
+
+		writeDecompiledSources(path, classNames, createExportClassProvider(deobfuscator), progress, decompilerService, errorStrategy);
+	}
+
+	private void writeDecompiledSources(Path path, List<String> classNames, ClassProvider translatingClassProvider, ProgressListener progress, DecompilerService decompilerService, DecompileErrorStrategy errorStrategy) throws IOException {
+		progress.init(classNames.size(), I18n.translate("progress.classes.decompiling"));
+
+		AtomicInteger count = new AtomicInteger();
+
+		try {
+			for (List<String> batch : Lists.partition(classNames, DECOMPILE_BATCH_SIZE)) {
+				Decompiler decompiler = decompilerService.create(translatingClassProvider, new SourceSettings(false, false));
+
+				batch.parallelStream().forEach(name -> {
+					progress.step(count.getAndIncrement(), name);
+
+					String source = JarExport.decompileClass(name, decompiler, mapper, errorStrategy);
+					if (source == null) {
+						return;
+					}
+
+					ClassSource classSource = new ClassSource(name, source);
+					try {
+						classSource.writeTo(classSource.resolvePath(path));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
 	public static final class JarExport {
 		private final EntryRemapper mapper;
 		private final Map<String, ClassNode> compiled;
@@ -228,23 +454,34 @@ public class EnigmaProject {
 		}
 
 		public void write(Path path, ProgressListener progress) throws IOException {
+			write(path, progress, ParallelJarWriter.DEFAULT_COMPRESSION_LEVEL);
+		}
+
+		/**
+		 * Writes the jar, serializing and compressing the classes in parallel and appending them
+		 * in iteration order.
+		 *
+		 * @param compressionLevel the deflate level of the jar entries, or {@link java.util.zip.Deflater#NO_COMPRESSION} to store them
+		 */
+		public void write(Path path, ProgressListener progress, int compressionLevel) throws IOException {
 			progress.init(this.compiled.size(), I18n.translate("progress.jar.writing"));
 
-			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(path))) {
+			try (ParallelJarWriter out = new ParallelJarWriter(Files.newOutputStream(path))) {
 				AtomicInteger count = new AtomicInteger();
 
-				for (ClassNode node : this.compiled.values()) {
-					progress.step(count.getAndIncrement(), node.name);
-
-					String entryName = node.name.replace('.', '/') + ".class";
-
-					ClassWriter writer = new ClassWriter(0);
-					node.accept(writer);
+				this.compiled.values().parallelStream()
+						.map(node -> ParallelJarWriter.prepare(node.name.replace('.', '/') + ".class", AsmUtil.nodeToBytes(node), compressionLevel))
+						.forEachOrdered(entry -> {
+							progress.step(count.getAndIncrement(), entry.getName());
 
-					out.putNextEntry(new JarEntry(entryName));
-					out.write(writer.toByteArray());
-					out.closeEntry();
-				}
+							try {
+								out.write(entry);
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+						});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
 			}
 		}
 
@@ -269,22 +506,7 @@ public class EnigmaProject {
 					.map(translatedNode -> {
 						progress.step(count.getAndIncrement(), translatedNode.name);
 
-						String source = null;
-						try {
-							source = decompileClass(translatedNode, decompiler);
-						} catch (Throwable throwable) {
-							switch (errorStrategy) {
-								case PROPAGATE: throw throwable;
-								case IGNORE: break;
-								case TRACE_AS_SOURCE: {
-									StringWriter writer = new StringWriter();
-									throwable.printStackTrace(new PrintWriter(writer));
-									source = writer.toString();
-									break;
-								}
-							}
-						}
-
+						String source = decompileClass(translatedNode.name, decompiler, mapper, errorStrategy);
 						if (source == null) {
 							return null;
 						}
@@ -294,8 +516,21 @@ public class EnigmaProject {
 					.filter(Objects::nonNull);
 		}
 
-		private String decompileClass(ClassNode translatedNode, Decompiler decompiler) {
-			return decompiler.getSource(translatedNode.name, mapper).asString();
+		@Nullable
+		static String decompileClass(String name, Decompiler decompiler, EntryRemapper mapper, DecompileErrorStrategy errorStrategy) {
+			try {
+				return decompiler.getSource(name, mapper).asString();
+			} catch (Throwable throwable) {
+				switch (errorStrategy) {
+					case PROPAGATE: throw throwable;
+					case TRACE_AS_SOURCE: {
+						StringWriter writer = new StringWriter();
+						throwable.printStackTrace(new PrintWriter(writer));
+						return writer.toString();
+					}
+					default: return null;
+				}
+			}
 		}
 	}
 
@@ -336,6 +571,10 @@ public class EnigmaProject {
 		}
 
 		public Path resolvePath(Path root) {
+			return resolvePath(root, name);
+		}
+
+		static Path resolvePath(Path root, String name) {
 			return root.resolve(name.replace('.', '/') + ".java");
 		}
 	}
@@ -0,0 +1,216 @@
+package cuchaz.enigma.analysis;
+
+import cuchaz.enigma.analysis.index.EntryIndex;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.ReferenceIndex;
+import cuchaz.enigma.classprovider.ClassProvider;
+import cuchaz.enigma.translation.mapping.MappingDelta;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import org.objectweb.asm.ClassReader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Works out which classes of a jar translate differently after a set of mapping changes, so that
+ * only those have to be exported again.
+ * <p>
+ * Member changes are followed through the {@link ReferenceIndex} to the classes that use the member,
+ * and method changes through the inheritance hierarchy to every equivalent method. The reference
+ * index doesn't record every use of a class (casts, class literals, signatures and annotations are
+ * missing), so classes that use a renamed class are found by scanning their constant pools instead.
+ * Neither does it record every use of a member (enclosing methods of local classes, enum constants
+ * in annotations and method handles outside of lambdas), so classes whose constant pools hold the
+ * name and descriptor of a renamed member together with its owner, or a subclass of it, are
+ * affected as well.
+ */
+public final class AffectedClassCollector {
+	private static final int CONSTANT_UTF8 = 1;
+
+	private final JarIndex jarIndex;
+	private final ClassProvider classProvider;
+
+	public AffectedClassCollector(JarIndex jarIndex, ClassProvider classProvider) {
+		this.jarIndex = jarIndex;
+		this.classProvider = classProvider;
+	}
+
+	/**
+	 * @return the obfuscated classes whose translated class files are affected by the delta
+	 */
+	public Set<ClassEntry> collect(MappingDelta<?> delta) {
+		EntryIndex entryIndex = jarIndex.getEntryIndex();
+		ReferenceIndex referenceIndex = jarIndex.getReferenceIndex();
+
+		Set<ClassEntry> affected = new HashSet<>();
+		Set<ClassEntry> changedClasses = new HashSet<>();
+		Set<Entry<?>> changedMembers = new HashSet<>();
+
+		for (Entry<?> changed : delta.getChanges().getAllEntries().collect(Collectors.toList())) {
+			for (Entry<?> entry : resolveEquivalentEntries(changed)) {
+				ClassEntry containingClass = entry.getContainingClass();
+				if (containingClass != null && entryIndex.hasClass(containingClass)) {
+					affected.add(containingClass);
+				}
+
+				if (entry instanceof ClassEntry) {
+					changedClasses.add((ClassEntry) entry);
+				} else if (entry instanceof FieldEntry) {
+					changedMembers.add(entry);
+					addContexts(affected, referenceIndex.getReferencesToField((FieldEntry) entry));
+				} else if (entry instanceof MethodEntry) {
+					changedMembers.add(entry);
+					addContexts(affected, referenceIndex.getReferencesToMethod((MethodEntry) entry));
+				}
+			}
+		}
+
+		if (!changedClasses.isEmpty()) {
+			// the names of inner classes are derived from their outer class
+			for (ClassEntry classEntry : entryIndex.getClasses()) {
+				if (isNestedIn(classEntry, changedClasses)) {
+					changedClasses.add(classEntry);
+					affected.add(classEntry);
+				}
+			}
+		}
+
+		if (changedClasses.isEmpty() && changedMembers.isEmpty()) {
+			return affected;
+		}
+
+		Set<String> changedNames = changedClasses.stream().map(ClassEntry::getFullName).collect(Collectors.toSet());
+		Collection<MemberConstants> memberConstants = changedMembers.stream().map(this::getMemberConstants).collect(Collectors.toList());
+		for (ClassEntry classEntry : entryIndex.getClasses()) {
+			if (affected.contains(classEntry)) {
+				continue;
+			}
+
+			Set<String> constants = readUtf8Constants(classEntry);
+			if (constants.stream().anyMatch(value -> mentionsAny(value, changedNames)) || memberConstants.stream().anyMatch(member -> member.isIn(constants))) {
+				affected.add(classEntry);
+			}
+		}
+
+		return affected;
+	}
+
+	private Collection<? extends Entry<?>> resolveEquivalentEntries(Entry<?> entry) {
+		MethodEntry method = entry.findAncestor(MethodEntry.class);
+		if (method != null && jarIndex.getEntryIndex().hasMethod(method)) {
+			return jarIndex.getEntryResolver().resolveEquivalentEntries(entry);
+		}
+
+		return Collections.singleton(entry);
+	}
+
+	private static void addContexts(Set<ClassEntry> affected, Collection<? extends EntryReference<?, ? extends Entry<?>>> references) {
+		for (EntryReference<?, ? extends Entry<?>> reference : references) {
+			if (reference.context != null) {
+				affected.add(reference.context.getContainingClass());
+			}
+		}
+	}
+
+	private static boolean isNestedIn(ClassEntry classEntry, Set<ClassEntry> classes) {
+		for (ClassEntry outer = classEntry.getOuterClass(); outer != null; outer = outer.getOuterClass()) {
+			if (classes.contains(outer)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Set<String> readUtf8Constants(ClassEntry classEntry) {
+		byte[] bytes = classProvider.getBytes(classEntry.getFullName());
+		if (bytes == null) {
+			return Collections.emptySet();
+		}
+
+		Set<String> constants = new HashSet<>();
+		ClassReader reader = new ClassReader(bytes);
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			int offset = reader.getItem(i);
+			if (offset == 0 || bytes[offset - 1] != CONSTANT_UTF8) {
+				continue;
+			}
+
+			constants.add(new String(bytes, offset + 2, reader.readUnsignedShort(offset), StandardCharsets.UTF_8));
+		}
+
+		return constants;
+	}
+
+	private MemberConstants getMemberConstants(Entry<?> member) {
+		ClassEntry owner = member.getContainingClass();
+		Set<String> owners = new HashSet<>();
+		owners.add(owner.getFullName());
+		for (ClassEntry descendant : jarIndex.getInheritanceIndex().getDescendants(owner)) {
+			owners.add(descendant.getFullName());
+		}
+
+		String desc = member instanceof FieldEntry ? ((FieldEntry) member).getDesc().toString() : ((MethodEntry) member).getDesc().toString();
+		return new MemberConstants(member.getName(), desc, owners);
+	}
+
+	/**
+	 * Checks whether a constant is one of the class names, or a descriptor or signature that mentions one.
+	 */
+	private static boolean mentionsAny(String value, Set<String> classNames) {
+		if (classNames.contains(value)) {
+			return true;
+		}
+
+		for (int start = value.indexOf('L'); start >= 0; start = value.indexOf('L', start + 1)) {
+			int end = start + 1;
+			while (end < value.length() && value.charAt(end) != ';' && value.charAt(end) != '<') {
+				end++;
+			}
+
+			if (end < value.length() && classNames.contains(value.substring(start + 1, end))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * The constants a class file needs to refer to a member: its name and descriptor, which a
+	 * NameAndType or an annotation enum value refer to, and the class it is accessed through, as a
+	 * name or as a descriptor.
+	 */
+	private static final class MemberConstants {
+		private final String name;
+		private final String desc;
+		private final Set<String> owners;
+
+		MemberConstants(String name, String desc, Set<String> owners) {
+			this.name = name;
+			this.desc = desc;
+			this.owners = owners;
+		}
+
+		boolean isIn(Set<String> constants) {
+			if (!constants.contains(name) || !constants.contains(desc)) {
+				return false;
+			}
+
+			for (String owner : owners) {
+				if (constants.contains(owner) || constants.contains("L" + owner + ";")) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
@@ -110,7 +110,7 @@ public class IndexSimpleVerifier extends SimpleVerifier {
             ClassEntry class2 = new ClassEntry(type2.getInternalName());
 
             if (entryIndex.hasClass(class1) && entryIndex.hasClass(class2)) {
-                return inheritanceIndex.getAncestors(class2).contains(class1);
+                return inheritanceIndex.isAncestor(class2, class1);
             }
 
             Class<?> class1Class = getClass(Type.getType('L' + class1.getFullName() + ';'));
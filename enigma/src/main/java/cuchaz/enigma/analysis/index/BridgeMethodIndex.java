@@ -9,6 +9,7 @@ import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
 import cuchaz.enigma.translation.representation.entry.MethodEntry;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.*;
 
 public class BridgeMethodIndex implements JarIndexer {
@@ -55,6 +56,30 @@ public class BridgeMethodIndex implements JarIndexer {
 		}
 	}
 
+	void writeSnapshot(JarIndexSnapshot.Writer writer) throws IOException {
+		writeMethodMap(writer, bridgeToSpecialized);
+		writeMethodMap(writer, specializedToBridge);
+	}
+
+	private static void writeMethodMap(JarIndexSnapshot.Writer writer, Map<MethodEntry, MethodEntry> map) throws IOException {
+		writer.writeInt(map.size());
+		for (Map.Entry<MethodEntry, MethodEntry> entry : map.entrySet()) {
+			writer.writeEntry(entry.getKey());
+			writer.writeEntry(entry.getValue());
+		}
+	}
+
+	void readSnapshot(JarIndexSnapshot.Reader reader) {
+		readMethodMap(reader, bridgeToSpecialized);
+		readMethodMap(reader, specializedToBridge);
+	}
+
+	private static void readMethodMap(JarIndexSnapshot.Reader reader, Map<MethodEntry, MethodEntry> map) {
+		for (int i = reader.readInt(); i > 0; i--) {
+			map.put(reader.readEntry(), reader.readEntry());
+		}
+	}
+
 	private void indexSyntheticMethod(MethodDefEntry syntheticMethod, AccessFlags access) {
 		MethodEntry specializedMethod = findSpecializedMethod(syntheticMethod);
 		if (specializedMethod == null) {
@@ -0,0 +1,58 @@
+package cuchaz.enigma.analysis.index;
+
+import cuchaz.enigma.analysis.ReferenceTargetType;
+import cuchaz.enigma.translation.representation.Lambda;
+import cuchaz.enigma.translation.representation.entry.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records indexing calls made by a single worker so that they can later be replayed,
+ * in order, into the real indexer.
+ */
+final class BufferedIndexer implements JarIndexer {
+	private final List<Consumer<JarIndexer>> calls = new ArrayList<>();
+
+	@Override
+	public void indexClass(ClassDefEntry classEntry) {
+		calls.add(indexer -> indexer.indexClass(classEntry));
+	}
+
+	@Override
+	public void indexField(FieldDefEntry fieldEntry) {
+		calls.add(indexer -> indexer.indexField(fieldEntry));
+	}
+
+	@Override
+	public void indexMethod(MethodDefEntry methodEntry) {
+		calls.add(indexer -> indexer.indexMethod(methodEntry));
+	}
+
+	@Override
+	public void indexMethodReference(MethodDefEntry callerEntry, MethodEntry referencedEntry, ReferenceTargetType targetType) {
+		calls.add(indexer -> indexer.indexMethodReference(callerEntry, referencedEntry, targetType));
+	}
+
+	@Override
+	public void indexFieldReference(MethodDefEntry callerEntry, FieldEntry referencedEntry, ReferenceTargetType targetType) {
+		calls.add(indexer -> indexer.indexFieldReference(callerEntry, referencedEntry, targetType));
+	}
+
+	@Override
+	public void indexLambda(MethodDefEntry callerEntry, Lambda lambda, ReferenceTargetType targetType) {
+		calls.add(indexer -> indexer.indexLambda(callerEntry, lambda, targetType));
+	}
+
+	@Override
+	public void processIndex(JarIndex index) {
+		throw new UnsupportedOperationException("processIndex cannot be buffered");
+	}
+
+	public void replay(JarIndexer indexer) {
+		for (Consumer<JarIndexer> call : calls) {
+			call.accept(indexer);
+		}
+	}
+}
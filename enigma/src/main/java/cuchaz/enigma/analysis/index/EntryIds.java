@@ -0,0 +1,43 @@
+package cuchaz.enigma.analysis.index;
+
+import cuchaz.enigma.translation.representation.entry.Entry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense int ids to entries, so that tables of entries can be stored as int arrays.
+ * Entries are told apart by their concrete class as well as by equality, since a def entry
+ * equals the plain entry it was built from but carries more information.
+ */
+final class EntryIds {
+	private final Map<Class<?>, Map<Entry<?>, Integer>> ids = new HashMap<>();
+	private Entry<?>[] entries = new Entry<?>[256];
+	private int size;
+
+	int getId(Entry<?> entry) {
+		Map<Entry<?>, Integer> pool = ids.computeIfAbsent(entry.getClass(), c -> new HashMap<>());
+		Integer id = pool.get(entry);
+		if (id == null) {
+			id = size;
+			pool.put(entry, id);
+
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			entries[size++] = entry;
+		}
+
+		return id;
+	}
+
+	@SuppressWarnings("unchecked")
+	<E extends Entry<?>> E get(int id) {
+		return (E) entries[id];
+	}
+
+	int size() {
+		return size;
+	}
+}
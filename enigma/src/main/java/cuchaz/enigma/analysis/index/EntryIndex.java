@@ -1,11 +1,16 @@
 package cuchaz.enigma.analysis.index;
 
 import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
 import cuchaz.enigma.translation.representation.entry.*;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class EntryIndex implements JarIndexer {
@@ -13,6 +18,10 @@ public class EntryIndex implements JarIndexer {
 	private Map<FieldEntry, AccessFlags> fields = new HashMap<>();
 	private Map<MethodEntry, AccessFlags> methods = new HashMap<>();
 	private Map<ClassEntry, ClassDefEntry> definitions = new HashMap<>();
+	private Map<ClassEntry, Map<String, TypeDescriptor>> fieldDescriptors = new HashMap<>();
+	private Map<ClassEntry, List<FieldEntry>> fieldsByOwner = new HashMap<>();
+	private Map<ClassEntry, List<MethodEntry>> methodsByOwner = new HashMap<>();
+	private Map<FieldEntry, MethodEntry> recordGetters = new HashMap<>();
 
 	@Override
 	public void indexClass(ClassDefEntry classEntry) {
@@ -22,12 +31,83 @@ public class EntryIndex implements JarIndexer {
 
 	@Override
 	public void indexMethod(MethodDefEntry methodEntry) {
-		methods.put(methodEntry, methodEntry.getAccess());
+		if (methods.put(methodEntry, methodEntry.getAccess()) == null) {
+			methodsByOwner.computeIfAbsent(methodEntry.getParent(), owner -> new ArrayList<>()).add(methodEntry);
+		}
 	}
 
 	@Override
 	public void indexField(FieldDefEntry fieldEntry) {
-		fields.put(fieldEntry, fieldEntry.getAccess());
+		if (fields.put(fieldEntry, fieldEntry.getAccess()) == null) {
+			fieldsByOwner.computeIfAbsent(fieldEntry.getParent(), owner -> new ArrayList<>()).add(fieldEntry);
+		}
+		fieldDescriptors.computeIfAbsent(fieldEntry.getParent(), owner -> new HashMap<>()).put(fieldEntry.getName(), fieldEntry.getDesc());
+	}
+
+	@Override
+	public void processIndex(JarIndex index) {
+		indexRecordGetters();
+	}
+
+	/**
+	 * Pairs each instance field of a record with the method of the same name that returns it.
+	 */
+	private void indexRecordGetters() {
+		recordGetters.clear();
+
+		for (Map.Entry<ClassEntry, List<FieldEntry>> owner : fieldsByOwner.entrySet()) {
+			AccessFlags ownerAccess = classes.get(owner.getKey());
+			if (ownerAccess == null || !ownerAccess.isRecord()) {
+				continue;
+			}
+
+			for (FieldEntry field : owner.getValue()) {
+				if (fields.get(field).isStatic()) {
+					continue;
+				}
+
+				String getterDesc = "()" + field.getDesc();
+				for (MethodEntry method : getMethods(owner.getKey())) {
+					if (method.getName().equals(field.getName()) && method.getDesc().toString().equals(getterDesc)) {
+						recordGetters.put(field, method);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	void writeSnapshot(JarIndexSnapshot.Writer writer) throws IOException {
+		writer.writeInt(definitions.size());
+		for (ClassDefEntry definition : definitions.values()) {
+			writer.writeEntry(definition);
+		}
+
+		writer.writeInt(fields.size());
+		for (FieldEntry field : fields.keySet()) {
+			writer.writeEntry(field);
+		}
+
+		writer.writeInt(methods.size());
+		for (MethodEntry method : methods.keySet()) {
+			writer.writeEntry(method);
+		}
+	}
+
+	void readSnapshot(JarIndexSnapshot.Reader reader) {
+		for (int i = reader.readInt(); i > 0; i--) {
+			indexClass(reader.readEntry());
+		}
+
+		for (int i = reader.readInt(); i > 0; i--) {
+			indexField(reader.readEntry());
+		}
+
+		for (int i = reader.readInt(); i > 0; i--) {
+			indexMethod(reader.readEntry());
+		}
+
+		indexRecordGetters();
 	}
 
 	public boolean hasClass(ClassEntry entry) {
@@ -84,6 +164,16 @@ public class EntryIndex implements JarIndexer {
 		return null;
 	}
 
+	/**
+	 * Looks up the descriptor of a field by its owner and name, for mapping formats that
+	 * don't record field descriptors.
+	 */
+	@Nullable
+	public TypeDescriptor getFieldDescriptor(ClassEntry owner, String name) {
+		Map<String, TypeDescriptor> descriptors = fieldDescriptors.get(owner);
+		return descriptors != null ? descriptors.get(name) : null;
+	}
+
 	public ClassDefEntry getDefinition(ClassEntry entry) {
 		return definitions.get(entry);
 	}
@@ -99,4 +189,30 @@ public class EntryIndex implements JarIndexer {
 	public Collection<FieldEntry> getFields() {
 		return fields.keySet();
 	}
+
+	/**
+	 * @return the methods declared by the class, in the order they were indexed
+	 */
+	public Collection<MethodEntry> getMethods(ClassEntry owner) {
+		List<MethodEntry> ownerMethods = methodsByOwner.get(owner);
+		return ownerMethods != null ? Collections.unmodifiableList(ownerMethods) : Collections.emptyList();
+	}
+
+	/**
+	 * @return the fields declared by the class, in the order they were indexed
+	 */
+	public Collection<FieldEntry> getFields(ClassEntry owner) {
+		List<FieldEntry> ownerFields = fieldsByOwner.get(owner);
+		return ownerFields != null ? Collections.unmodifiableList(ownerFields) : Collections.emptyList();
+	}
+
+	/**
+	 * Looks up the accessor method of a record component.
+	 *
+	 * @return the getter of the field, or {@code null} if the field is static, not in a record or has no getter
+	 */
+	@Nullable
+	public MethodEntry getRecordGetter(FieldEntry field) {
+		return recordGetters.get(field);
+	}
 }
@@ -11,7 +11,7 @@ public class IndexClassVisitor extends ClassVisitor {
 	private final JarIndexer indexer;
 	private ClassDefEntry classEntry;
 
-	public IndexClassVisitor(JarIndex indexer, int api) {
+	public IndexClassVisitor(JarIndexer indexer, int api) {
 		super(api);
 		this.indexer = indexer;
 	}
@@ -0,0 +1,182 @@
+package cuchaz.enigma.analysis.index;
+
+import com.google.common.collect.Multimap;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The transitive closure of the class hierarchy recorded by an {@link InheritanceIndex}, computed
+ * once so that ancestor and descendant queries don't have to walk the hierarchy.
+ * <p>
+ * Classes are numbered in topological order, subclasses before their supertypes, and the ancestors
+ * and descendants of each class are kept as sorted arrays of those numbers. Iterating the ancestors
+ * of a class therefore visits every class before its own supertypes, and membership tests are a
+ * binary search. Classes in or above an inheritance cycle, which only malformed jars have, are
+ * numbered last in no particular order, and classes in a cycle are their own ancestors.
+ */
+final class InheritanceClosure {
+	private final Map<ClassEntry, Integer> ids;
+	private final ClassEntry[] classes;
+	private final int[][] ancestors;
+	private final int[][] descendants;
+
+	private InheritanceClosure(Map<ClassEntry, Integer> ids, ClassEntry[] classes, int[][] ancestors, int[][] descendants) {
+		this.ids = ids;
+		this.classes = classes;
+		this.ancestors = ancestors;
+		this.descendants = descendants;
+	}
+
+	static InheritanceClosure build(Multimap<ClassEntry, ClassEntry> classParents, Multimap<ClassEntry, ClassEntry> classChildren) {
+		Set<ClassEntry> nodes = new LinkedHashSet<>(classParents.keySet());
+		nodes.addAll(classChildren.keySet());
+
+		// number the classes once every subclass has been numbered
+		Map<ClassEntry, Integer> remainingChildren = new HashMap<>(nodes.size());
+		Deque<ClassEntry> ready = new ArrayDeque<>();
+		for (ClassEntry node : nodes) {
+			int children = classChildren.get(node).size();
+			if (children == 0) {
+				ready.add(node);
+			} else {
+				remainingChildren.put(node, children);
+			}
+		}
+
+		Map<ClassEntry, Integer> ids = new HashMap<>(nodes.size());
+		ClassEntry[] classes = new ClassEntry[nodes.size()];
+		while (!ready.isEmpty()) {
+			ClassEntry node = ready.poll();
+			classes[ids.size()] = node;
+			ids.put(node, ids.size());
+
+			for (ClassEntry parent : classParents.get(node)) {
+				if (remainingChildren.merge(parent, -1, Integer::sum) == 0) {
+					remainingChildren.remove(parent);
+					ready.add(parent);
+				}
+			}
+		}
+
+		for (ClassEntry node : nodes) {
+			if (!ids.containsKey(node)) {
+				classes[ids.size()] = node;
+				ids.put(node, ids.size());
+			}
+		}
+
+		int[][] parents = new int[classes.length][];
+		for (int id = 0; id < classes.length; id++) {
+			parents[id] = classParents.get(classes[id]).stream().mapToInt(ids::get).toArray();
+		}
+
+		int[][] ancestors = new int[classes.length][];
+		int[] descendantCounts = new int[classes.length];
+		int[] visited = new int[classes.length];
+		int[] queue = new int[classes.length + 1];
+		for (int id = 0; id < classes.length; id++) {
+			int count = 0;
+			int head = 0;
+			queue[count++] = id;
+
+			while (head < count) {
+				for (int parent : parents[queue[head++]]) {
+					if (visited[parent] != id + 1) {
+						visited[parent] = id + 1;
+						queue[count++] = parent;
+					}
+				}
+			}
+
+			// the class itself is only an ancestor when it is reached again through a cycle
+			int[] result = visited[id] == id + 1 ? Arrays.copyOf(queue, count) : Arrays.copyOfRange(queue, 1, count);
+			Arrays.sort(result);
+			ancestors[id] = result;
+
+			for (int ancestor : result) {
+				descendantCounts[ancestor]++;
+			}
+		}
+
+		int[][] descendants = new int[classes.length][];
+		for (int id = 0; id < classes.length; id++) {
+			descendants[id] = new int[descendantCounts[id]];
+			descendantCounts[id] = 0;
+		}
+
+		// visiting the classes in order keeps every descendant array sorted
+		for (int id = 0; id < classes.length; id++) {
+			for (int ancestor : ancestors[id]) {
+				descendants[ancestor][descendantCounts[ancestor]++] = id;
+			}
+		}
+
+		return new InheritanceClosure(ids, classes, ancestors, descendants);
+	}
+
+	Set<ClassEntry> getAncestors(ClassEntry classEntry) {
+		Integer id = ids.get(classEntry);
+		return id == null ? Collections.emptySet() : new ClassSet(ancestors[id]);
+	}
+
+	Set<ClassEntry> getDescendants(ClassEntry classEntry) {
+		Integer id = ids.get(classEntry);
+		return id == null ? Collections.emptySet() : new ClassSet(descendants[id]);
+	}
+
+	boolean isAncestor(ClassEntry classEntry, ClassEntry potentialAncestor) {
+		Integer id = ids.get(classEntry);
+		Integer ancestorId = ids.get(potentialAncestor);
+		return id != null && ancestorId != null && Arrays.binarySearch(ancestors[id], ancestorId) >= 0;
+	}
+
+	private final class ClassSet extends AbstractSet<ClassEntry> {
+		private final int[] members;
+
+		ClassSet(int[] members) {
+			this.members = members;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			Integer id = o instanceof ClassEntry ? ids.get(o) : null;
+			return id != null && Arrays.binarySearch(members, id) >= 0;
+		}
+
+		@Override
+		public Iterator<ClassEntry> iterator() {
+			return new Iterator<ClassEntry>() {
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return index < members.length;
+				}
+
+				@Override
+				public ClassEntry next() {
+					if (index >= members.length) {
+						throw new NoSuchElementException();
+					}
+					return classes[members[index++]];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return members.length;
+		}
+	}
+}
@@ -13,13 +13,12 @@ package cuchaz.enigma.analysis.index;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import cuchaz.enigma.translation.representation.entry.ClassDefEntry;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 
+import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 
 public class InheritanceIndex implements JarIndexer {
@@ -28,6 +27,8 @@ public class InheritanceIndex implements JarIndexer {
 	private Multimap<ClassEntry, ClassEntry> classParents = HashMultimap.create();
 	private Multimap<ClassEntry, ClassEntry> classChildren = HashMultimap.create();
 
+	private volatile InheritanceClosure closure;
+
 	public InheritanceIndex(EntryIndex entryIndex) {
 		this.entryIndex = entryIndex;
 	}
@@ -51,6 +52,45 @@ public class InheritanceIndex implements JarIndexer {
 	private void indexParent(ClassEntry childEntry, ClassEntry parentEntry) {
 		classParents.put(childEntry, parentEntry);
 		classChildren.put(parentEntry, childEntry);
+		closure = null;
+	}
+
+	@Override
+	public void processIndex(JarIndex index) {
+		closure = InheritanceClosure.build(classParents, classChildren);
+	}
+
+	/**
+	 * Gets the hierarchy closure, building it again if classes have been indexed since it was
+	 * last built, like when a {@link cuchaz.enigma.api.service.JarIndexerService} adds to the index.
+	 */
+	private InheritanceClosure getClosure() {
+		InheritanceClosure closure = this.closure;
+		if (closure == null) {
+			synchronized (this) {
+				closure = this.closure;
+				if (closure == null) {
+					closure = InheritanceClosure.build(classParents, classChildren);
+					this.closure = closure;
+				}
+			}
+		}
+
+		return closure;
+	}
+
+	void writeSnapshot(JarIndexSnapshot.Writer writer) throws IOException {
+		writer.writeInt(classParents.size());
+		for (Map.Entry<ClassEntry, ClassEntry> entry : classParents.entries()) {
+			writer.writeEntry(entry.getKey());
+			writer.writeEntry(entry.getValue());
+		}
+	}
+
+	void readSnapshot(JarIndexSnapshot.Reader reader) {
+		for (int i = reader.readInt(); i > 0; i--) {
+			indexParent(reader.readEntry(), reader.readEntry());
+		}
 	}
 
 	public Collection<ClassEntry> getParents(ClassEntry classEntry) {
@@ -61,48 +101,32 @@ public class InheritanceIndex implements JarIndexer {
 		return classChildren.get(classEntry);
 	}
 
+	/**
+	 * @return every class that extends or implements the class, directly or indirectly
+	 */
 	public Collection<ClassEntry> getDescendants(ClassEntry classEntry) {
-		Collection<ClassEntry> descendants = new HashSet<>();
-
-		LinkedList<ClassEntry> descendantQueue = new LinkedList<>();
-		descendantQueue.push(classEntry);
-
-		while (!descendantQueue.isEmpty()) {
-			ClassEntry descendant = descendantQueue.pop();
-			Collection<ClassEntry> children = getChildren(descendant);
-
-			children.forEach(descendantQueue::push);
-			descendants.addAll(children);
-		}
-
-		return descendants;
+		return getClosure().getDescendants(classEntry);
 	}
 
+	/**
+	 * @return every class the class extends or implements, directly or indirectly. Each class
+	 * comes before its own supertypes.
+	 */
 	public Set<ClassEntry> getAncestors(ClassEntry classEntry) {
-		Set<ClassEntry> ancestors = Sets.newHashSet();
-
-		LinkedList<ClassEntry> ancestorQueue = new LinkedList<>();
-		ancestorQueue.push(classEntry);
-
-		while (!ancestorQueue.isEmpty()) {
-			ClassEntry ancestor = ancestorQueue.pop();
-			Collection<ClassEntry> parents = getParents(ancestor);
-
-			parents.forEach(ancestorQueue::push);
-			ancestors.addAll(parents);
-		}
+		return getClosure().getAncestors(classEntry);
+	}
 
-		return ancestors;
+	public boolean isAncestor(ClassEntry classEntry, ClassEntry potentialAncestor) {
+		return getClosure().isAncestor(classEntry, potentialAncestor);
 	}
 
 	public Relation computeClassRelation(ClassEntry classEntry, ClassEntry potentialAncestor) {
 		if (potentialAncestor.getName().equals("java/lang/Object")) return Relation.RELATED;
 		if (!entryIndex.hasClass(classEntry)) return Relation.UNKNOWN;
+		if (isAncestor(classEntry, potentialAncestor)) return Relation.RELATED;
 
 		for (ClassEntry ancestor : getAncestors(classEntry)) {
-			if (potentialAncestor.equals(ancestor)) {
-				return Relation.RELATED;
-			} else if (!entryIndex.hasClass(ancestor)) {
+			if (!entryIndex.hasClass(ancestor)) {
 				return Relation.UNKNOWN;
 			}
 		}
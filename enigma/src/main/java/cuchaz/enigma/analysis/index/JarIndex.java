@@ -21,17 +21,36 @@ import cuchaz.enigma.translation.mapping.IndexEntryResolver;
 import cuchaz.enigma.translation.representation.Lambda;
 import cuchaz.enigma.translation.representation.entry.*;
 import cuchaz.enigma.utils.I18n;
+import org.objectweb.asm.ClassReader;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 public class JarIndex implements JarIndexer {
+	/**
+	 * Whether {@link #indexJar(Set, ClassProvider, ProgressListener)} visits classes in parallel.
+	 * Set the {@code enigma.parallelIndexing} system property to {@code false} to index on a single thread.
+	 */
+	public static final boolean PARALLEL_INDEXING = Boolean.parseBoolean(System.getProperty("enigma.parallelIndexing", "true"));
+
+	/**
+	 * How many bytes of class files {@link #indexJar(Set, ClassProvider, ProgressListener)} keeps between the
+	 * entry and the reference pass by default. Classes that don't fit are read again for the reference pass.
+	 * Set the {@code enigma.indexBufferSize} system property to change it.
+	 */
+	public static final long DEFAULT_INDEX_BUFFER_BYTES = Long.getLong("enigma.indexBufferSize", 64L * 1024 * 1024);
+
 	private final Set<String> indexedClasses = new HashSet<>();
 	private final EntryIndex entryIndex;
 	private final InheritanceIndex inheritanceIndex;
 	private final ReferenceIndex referenceIndex;
 	private final BridgeMethodIndex bridgeMethodIndex;
 	private final PackageVisibilityIndex packageVisibilityIndex;
-	private final EntryResolver entryResolver;
+	private final IndexEntryResolver entryResolver;
+	private final EntryInterner entryInterner = new EntryInterner();
 
 	private final Collection<JarIndexer> indexers;
 
@@ -59,31 +78,136 @@ public class JarIndex implements JarIndexer {
 	}
 
 	public void indexJar(Set<String> classNames, ClassProvider classProvider, ProgressListener progress) {
+		indexJar(classNames, classProvider, progress, PARALLEL_INDEXING);
+	}
+
+	/**
+	 * Indexes the given classes. Each class file is read once and kept as bytes until the
+	 * reference pass has visited it, as long as the buffered classes fit in
+	 * {@link #DEFAULT_INDEX_BUFFER_BYTES}; classes that don't are read again. The entry pass
+	 * only reads the class headers and member declarations. When {@code parallel} is set, each class is visited on the common fork-join
+	 * pool and its results are buffered, then replayed into the index in the iteration order of
+	 * {@code classNames}, so both paths produce the same index.
+	 */
+	public void indexJar(Set<String> classNames, ClassProvider classProvider, ProgressListener progress, boolean parallel) {
+		indexJar(classNames, classProvider, progress, parallel, DEFAULT_INDEX_BUFFER_BYTES);
+	}
+
+	/**
+	 * Indexes the given classes, keeping at most {@code bufferBytes} of class files in memory between
+	 * the two passes.
+	 *
+	 * @see #indexJar(Set, ClassProvider, ProgressListener, boolean)
+	 */
+	public void indexJar(Set<String> classNames, ClassProvider classProvider, ProgressListener progress, boolean parallel, long bufferBytes) {
 		indexedClasses.addAll(classNames);
 		progress.init(4, I18n.translate("progress.jar.indexing"));
 
 		progress.step(1, I18n.translate("progress.jar.indexing.entries"));
 
-		for (String className : classNames) {
-			classProvider.get(className).accept(new IndexClassVisitor(this, Enigma.ASM_VERSION));
-		}
+		Map<String, byte[]> classBytes = new ConcurrentHashMap<>();
+		AtomicLong bufferedBytes = new AtomicLong();
+		visitClasses(classNames, parallel, (className, indexer) -> {
+			byte[] bytes = classProvider.getBytes(className);
+			if (bufferedBytes.addAndGet(bytes.length) <= bufferBytes) {
+				classBytes.put(className, bytes);
+			} else {
+				bufferedBytes.addAndGet(-bytes.length);
+			}
+
+			new ClassReader(bytes).accept(new IndexClassVisitor(indexer, Enigma.ASM_VERSION), ClassReader.SKIP_CODE);
+		});
 
 		progress.step(2, I18n.translate("progress.jar.indexing.references"));
 
-		for (String className : classNames) {
-			classProvider.get(className).accept(new IndexReferenceVisitor(this, entryIndex, inheritanceIndex, Enigma.ASM_VERSION));
-		}
+		// the entry and inheritance indices are complete and only read from here on
+		visitClasses(classNames, parallel, (className, indexer) -> {
+			byte[] bytes = classBytes.remove(className);
+			if (bytes == null) {
+				bytes = classProvider.getBytes(className);
+			}
+
+			new ClassReader(bytes).accept(new IndexReferenceVisitor(indexer, entryIndex, inheritanceIndex, Enigma.ASM_VERSION), 0);
+		});
 
 		progress.step(3, I18n.translate("progress.jar.indexing.methods"));
 		bridgeMethodIndex.findBridgeMethods();
 
 		progress.step(4, I18n.translate("progress.jar.indexing.process"));
-		processIndex(this);
+		processIndex(this, parallel);
+	}
+
+	private void visitClasses(Set<String> classNames, boolean parallel, BiConsumer<String, JarIndexer> visitor) {
+		if (parallel) {
+			new ArrayList<>(classNames).parallelStream()
+					.map(className -> {
+						BufferedIndexer buffer = new BufferedIndexer();
+						visitor.accept(className, buffer);
+						return buffer;
+					})
+					.forEachOrdered(buffer -> buffer.replay(this));
+		} else {
+			for (String className : classNames) {
+				visitor.accept(className, this);
+			}
+		}
+	}
+
+	void writeSnapshot(JarIndexSnapshot.Writer writer) throws IOException {
+		writer.writeInt(indexedClasses.size());
+		for (String className : indexedClasses) {
+			writer.writeString(className);
+		}
+
+		writer.writeInt(methodImplementations.size());
+		for (Map.Entry<String, MethodDefEntry> entry : methodImplementations.entries()) {
+			writer.writeString(entry.getKey());
+			writer.writeEntry(entry.getValue());
+		}
+
+		writer.writeInt(childrenByClass.size());
+		for (Map.Entry<ClassEntry, ParentedEntry> entry : childrenByClass.entries()) {
+			writer.writeEntry(entry.getKey());
+			writer.writeEntry(entry.getValue());
+		}
+
+		entryIndex.writeSnapshot(writer);
+		inheritanceIndex.writeSnapshot(writer);
+		referenceIndex.writeSnapshot(writer);
+		bridgeMethodIndex.writeSnapshot(writer);
+		packageVisibilityIndex.writeSnapshot(writer);
+	}
+
+	void readSnapshot(JarIndexSnapshot.Reader reader) {
+		for (int i = reader.readInt(); i > 0; i--) {
+			indexedClasses.add(reader.readString());
+		}
+
+		for (int i = reader.readInt(); i > 0; i--) {
+			methodImplementations.put(reader.readString(), reader.readEntry());
+		}
+
+		for (int i = reader.readInt(); i > 0; i--) {
+			childrenByClass.put(reader.readEntry(), reader.readEntry());
+		}
+
+		entryIndex.readSnapshot(reader);
+		inheritanceIndex.readSnapshot(reader);
+		referenceIndex.readSnapshot(reader);
+		bridgeMethodIndex.readSnapshot(reader);
+		packageVisibilityIndex.readSnapshot(reader);
+		entryResolver.invalidateCaches();
 	}
 
 	@Override
 	public void processIndex(JarIndex index) {
-		indexers.forEach(indexer -> indexer.processIndex(index));
+		processIndex(index, PARALLEL_INDEXING);
+	}
+
+	@Override
+	public void processIndex(JarIndex index, boolean parallel) {
+		indexers.forEach(indexer -> indexer.processIndex(index, parallel));
+		entryResolver.invalidateCaches();
 	}
 
 	@Override
@@ -98,9 +222,11 @@ public class JarIndex implements JarIndexer {
 			}
 		}
 
-		indexers.forEach(indexer -> indexer.indexClass(classEntry));
-		if (classEntry.isInnerClass() && !classEntry.getAccess().isSynthetic()) {
-			childrenByClass.put(classEntry.getParent(), classEntry);
+		ClassDefEntry canonical = entryInterner.intern(classEntry);
+
+		indexers.forEach(indexer -> indexer.indexClass(canonical));
+		if (canonical.isInnerClass() && !canonical.getAccess().isSynthetic()) {
+			childrenByClass.put(canonical.getParent(), canonical);
 		}
 	}
 
@@ -110,9 +236,10 @@ public class JarIndex implements JarIndexer {
 			return;
 		}
 
-		indexers.forEach(indexer -> indexer.indexField(fieldEntry));
-		if (!fieldEntry.getAccess().isSynthetic()) {
-			childrenByClass.put(fieldEntry.getParent(), fieldEntry);
+		FieldDefEntry canonical = entryInterner.intern(fieldEntry);
+		indexers.forEach(indexer -> indexer.indexField(canonical));
+		if (!canonical.getAccess().isSynthetic()) {
+			childrenByClass.put(canonical.getParent(), canonical);
 		}
 	}
 
@@ -122,13 +249,14 @@ public class JarIndex implements JarIndexer {
 			return;
 		}
 
-		indexers.forEach(indexer -> indexer.indexMethod(methodEntry));
-		if (!methodEntry.getAccess().isSynthetic() && !methodEntry.getName().equals("<clinit>")) {
-			childrenByClass.put(methodEntry.getParent(), methodEntry);
+		MethodDefEntry canonical = entryInterner.intern(methodEntry);
+		indexers.forEach(indexer -> indexer.indexMethod(canonical));
+		if (!canonical.getAccess().isSynthetic() && !canonical.getName().equals("<clinit>")) {
+			childrenByClass.put(canonical.getParent(), canonical);
 		}
 
-		if (!methodEntry.isConstructor()) {
-			methodImplementations.put(methodEntry.getParent().getFullName(), methodEntry);
+		if (!canonical.isConstructor()) {
+			methodImplementations.put(canonical.getParent().getFullName(), canonical);
 		}
 	}
 
@@ -138,7 +266,9 @@ public class JarIndex implements JarIndexer {
 			return;
 		}
 
-		indexers.forEach(indexer -> indexer.indexMethodReference(callerEntry, referencedEntry, targetType));
+		MethodDefEntry caller = entryInterner.intern(callerEntry);
+		MethodEntry referenced = entryInterner.intern(referencedEntry);
+		indexers.forEach(indexer -> indexer.indexMethodReference(caller, referenced, targetType));
 	}
 
 	@Override
@@ -147,7 +277,9 @@ public class JarIndex implements JarIndexer {
 			return;
 		}
 
-		indexers.forEach(indexer -> indexer.indexFieldReference(callerEntry, referencedEntry, targetType));
+		MethodDefEntry caller = entryInterner.intern(callerEntry);
+		FieldEntry referenced = entryInterner.intern(referencedEntry);
+		indexers.forEach(indexer -> indexer.indexFieldReference(caller, referenced, targetType));
 	}
 
 	@Override
@@ -156,7 +288,8 @@ public class JarIndex implements JarIndexer {
 			return;
 		}
 
-		indexers.forEach(indexer -> indexer.indexLambda(callerEntry, lambda, targetType));
+		MethodDefEntry caller = entryInterner.intern(callerEntry);
+		indexers.forEach(indexer -> indexer.indexLambda(caller, lambda, targetType));
 	}
 
 	public EntryIndex getEntryIndex() {
@@ -179,10 +312,25 @@ public class JarIndex implements JarIndexer {
 		return packageVisibilityIndex;
 	}
 
+	/**
+	 * @return the pool of canonical entries shared by the indices of this jar
+	 */
+	public EntryInterner getEntryInterner() {
+		return entryInterner;
+	}
+
 	public EntryResolver getEntryResolver() {
 		return entryResolver;
 	}
 
+	/**
+	 * Forgets the cached entry resolutions. Must be called after the index is changed once it has
+	 * been processed, such as by a {@link cuchaz.enigma.api.service.JarIndexerService}.
+	 */
+	public void invalidateCaches() {
+		entryResolver.invalidateCaches();
+	}
+
 	public ListMultimap<ClassEntry, ParentedEntry> getChildrenByClass() {
 		return this.childrenByClass;
 	}
@@ -0,0 +1,393 @@
+package cuchaz.enigma.analysis.index;
+
+import cuchaz.enigma.Enigma;
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.ReferenceTargetType;
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.Signature;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.*;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Reads and writes a compact binary snapshot of a processed {@link JarIndex}.
+ *
+ * <p>A snapshot starts with a header holding the format version, the version of Enigma that wrote
+ * it (whose indexing may differ from this one) and the SHA-1 of the jar it was built from, followed by a string table, an entry table (parents always precede the entries
+ * that refer to them) and the per-index sections, which refer to strings and entries by id.</p>
+ */
+public final class JarIndexSnapshot {
+	private static final int MAGIC = 0x454E4958; // "ENIX"
+	/**
+	 * The format version, which has to be bumped with every change to what the indexes record or how
+	 * they are written, since development builds all share the same {@link Enigma#VERSION}.
+	 */
+	private static final int VERSION = 2;
+
+	private static final byte CLASS = 0;
+	private static final byte CLASS_DEF = 1;
+	private static final byte FIELD = 2;
+	private static final byte FIELD_DEF = 3;
+	private static final byte METHOD = 4;
+	private static final byte METHOD_DEF = 5;
+
+	private JarIndexSnapshot() {
+	}
+
+	/**
+	 * Loads the snapshot at the given path.
+	 *
+	 * @return the index, or {@code null} if there is no snapshot, it is from another format version
+	 * or version of Enigma, or it was built from a jar with a different checksum
+	 * @throws IOException if the snapshot can't be read or is malformed
+	 */
+	@Nullable
+	public static JarIndex read(Path path, byte[] jarChecksum) throws IOException {
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+
+		// read onto the heap rather than mapped, since a mapping would keep the file from being
+		// replaced on some platforms until it is garbage collected
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		try {
+			if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+
+			byte[] enigmaVersion = new byte[Reader.length(buffer)];
+			buffer.get(enigmaVersion);
+			if (!Enigma.VERSION.equals(new String(enigmaVersion, StandardCharsets.UTF_8))) {
+				return null;
+			}
+
+			byte[] checksum = new byte[jarChecksum.length];
+			buffer.get(checksum);
+			if (!Arrays.equals(checksum, jarChecksum)) {
+				return null;
+			}
+
+			JarIndex index = JarIndex.empty();
+			index.readSnapshot(new Reader(buffer, index.getEntryInterner()));
+			return index;
+		} catch (RuntimeException e) {
+			// a truncated or corrupt snapshot can fail in many ways, all of which mean it has to be rebuilt
+			throw new IOException("Malformed jar index snapshot " + path, e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the given index. The file is replaced atomically so that concurrent
+	 * readers never observe a partially written snapshot.
+	 */
+	public static void write(JarIndex index, byte[] jarChecksum, Path path) throws IOException {
+		Writer writer = new Writer();
+		index.writeSnapshot(writer);
+
+		Files.createDirectories(path.toAbsolutePath().getParent());
+		Path tempPath = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				byte[] enigmaVersion = Enigma.VERSION.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(enigmaVersion.length);
+				out.write(enigmaVersion);
+				out.write(jarChecksum);
+				writer.writeTo(out);
+			}
+
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	static final class Writer {
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<Class<?>, Map<Entry<?>, Integer>> entries = new HashMap<>();
+		private int entryCount;
+
+		private final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+		private final DataOutputStream stringTable = new DataOutputStream(stringBytes);
+		private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+		private final DataOutputStream entryTable = new DataOutputStream(entryBytes);
+		private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		void writeInt(int value) throws IOException {
+			body.writeInt(value);
+		}
+
+		void writeBoolean(boolean value) throws IOException {
+			body.writeBoolean(value);
+		}
+
+		void writeString(String value) throws IOException {
+			body.writeInt(stringId(value));
+		}
+
+		void writeEntry(@Nullable Entry<?> entry) throws IOException {
+			body.writeInt(entryId(entry));
+		}
+
+		void writeReference(EntryReference<?, ?> reference) throws IOException {
+			writeEntry(reference.entry);
+			writeEntry(reference.context);
+			writeBoolean(reference.isNamed());
+
+			ReferenceTargetType targetType = reference.targetType;
+			body.writeByte(targetType.getKind().ordinal());
+			if (targetType.getKind() == ReferenceTargetType.Kind.CLASS_TYPE) {
+				writeEntry(((ReferenceTargetType.ClassType) targetType).getEntry());
+			}
+		}
+
+		private int stringId(@Nullable String value) throws IOException {
+			if (value == null) {
+				return -1;
+			}
+
+			Integer id = strings.get(value);
+			if (id == null) {
+				id = strings.size();
+				strings.put(value, id);
+
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				stringTable.writeInt(bytes.length);
+				stringTable.write(bytes);
+			}
+
+			return id;
+		}
+
+		private int entryId(@Nullable Entry<?> entry) throws IOException {
+			if (entry == null) {
+				return -1;
+			}
+
+			// entries of different types may be equal to each other (e.g. a class and its definition),
+			// so they are deduplicated per type to keep the definitions intact
+			Map<Entry<?>, Integer> ids = entries.computeIfAbsent(entry.getClass(), c -> new HashMap<>());
+			Integer id = ids.get(entry);
+			if (id != null) {
+				return id;
+			}
+
+			// parents and referenced classes are written first so that the reader can resolve them
+			int parent = entryId(entry.getParent());
+
+			if (entry.getClass() == ClassEntry.class) {
+				int name = stringId(entry.getName());
+				entryTable.writeByte(CLASS);
+				entryTable.writeInt(parent);
+				entryTable.writeInt(name);
+			} else if (entry.getClass() == ClassDefEntry.class) {
+				ClassDefEntry classDef = (ClassDefEntry) entry;
+				int name = stringId(classDef.getName());
+				int signature = stringId(classDef.getSignature().getSignature());
+				int superClass = entryId(classDef.getSuperClass());
+				int[] interfaces = new int[classDef.getInterfaces().length];
+				for (int i = 0; i < interfaces.length; i++) {
+					interfaces[i] = entryId(classDef.getInterfaces()[i]);
+				}
+
+				entryTable.writeByte(CLASS_DEF);
+				entryTable.writeInt(parent);
+				entryTable.writeInt(name);
+				entryTable.writeInt(signature);
+				entryTable.writeInt(classDef.getAccess().getFlags());
+				entryTable.writeInt(superClass);
+				entryTable.writeInt(interfaces.length);
+				for (int iface : interfaces) {
+					entryTable.writeInt(iface);
+				}
+			} else if (entry.getClass() == FieldEntry.class || entry.getClass() == FieldDefEntry.class) {
+				FieldEntry field = (FieldEntry) entry;
+				int name = stringId(field.getName());
+				int desc = stringId(field.getDesc().toString());
+
+				if (field instanceof FieldDefEntry) {
+					FieldDefEntry fieldDef = (FieldDefEntry) field;
+					int signature = stringId(fieldDef.getSignature().getSignature());
+					entryTable.writeByte(FIELD_DEF);
+					entryTable.writeInt(parent);
+					entryTable.writeInt(name);
+					entryTable.writeInt(desc);
+					entryTable.writeInt(signature);
+					entryTable.writeInt(fieldDef.getAccess().getFlags());
+				} else {
+					entryTable.writeByte(FIELD);
+					entryTable.writeInt(parent);
+					entryTable.writeInt(name);
+					entryTable.writeInt(desc);
+				}
+			} else if (entry.getClass() == MethodEntry.class || entry.getClass() == MethodDefEntry.class) {
+				MethodEntry method = (MethodEntry) entry;
+				int name = stringId(method.getName());
+				int desc = stringId(method.getDesc().toString());
+
+				if (method instanceof MethodDefEntry) {
+					MethodDefEntry methodDef = (MethodDefEntry) method;
+					int signature = stringId(methodDef.getSignature().getSignature());
+					entryTable.writeByte(METHOD_DEF);
+					entryTable.writeInt(parent);
+					entryTable.writeInt(name);
+					entryTable.writeInt(desc);
+					entryTable.writeInt(signature);
+					entryTable.writeInt(methodDef.getAccess().getFlags());
+				} else {
+					entryTable.writeByte(METHOD);
+					entryTable.writeInt(parent);
+					entryTable.writeInt(name);
+					entryTable.writeInt(desc);
+				}
+			} else {
+				throw new IllegalArgumentException("Cannot write entry of type " + entry.getClass().getName() + " to a snapshot: " + entry);
+			}
+
+			id = entryCount++;
+			ids.put(entry, id);
+			return id;
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			out.writeInt(strings.size());
+			stringBytes.writeTo(out);
+			out.writeInt(entryCount);
+			entryBytes.writeTo(out);
+			bodyBytes.writeTo(out);
+		}
+	}
+
+	static final class Reader {
+		private final ByteBuffer buffer;
+		private final String[] strings;
+		private final Entry<?>[] entries;
+
+		Reader(ByteBuffer buffer, EntryInterner interner) {
+			this.buffer = buffer;
+
+			strings = new String[length(buffer)];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[length(buffer)];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			entries = new Entry<?>[length(buffer)];
+			for (int i = 0; i < entries.length; i++) {
+				entries[i] = interner.intern(readEntryRecord());
+			}
+		}
+
+		private Entry<?> readEntryRecord() {
+			byte kind = buffer.get();
+			ClassEntry parent = (ClassEntry) entry(buffer.getInt());
+			String name = string(buffer.getInt());
+
+			switch (kind) {
+				case CLASS:
+					return new ClassEntry(parent, name);
+				case CLASS_DEF: {
+					Signature signature = Signature.createSignature(string(buffer.getInt()));
+					AccessFlags access = new AccessFlags(buffer.getInt());
+					ClassEntry superClass = (ClassEntry) entry(buffer.getInt());
+					ClassEntry[] interfaces = new ClassEntry[length(buffer)];
+					for (int i = 0; i < interfaces.length; i++) {
+						interfaces[i] = (ClassEntry) entry(buffer.getInt());
+					}
+
+					return new ClassDefEntry(parent, name, signature, access, superClass, interfaces);
+				}
+				case FIELD:
+					return new FieldEntry(parent, name, new TypeDescriptor(string(buffer.getInt())));
+				case FIELD_DEF: {
+					TypeDescriptor desc = new TypeDescriptor(string(buffer.getInt()));
+					Signature signature = Signature.createTypedSignature(string(buffer.getInt()));
+					return new FieldDefEntry(parent, name, desc, signature, new AccessFlags(buffer.getInt()));
+				}
+				case METHOD:
+					return new MethodEntry(parent, name, new MethodDescriptor(string(buffer.getInt())));
+				case METHOD_DEF: {
+					MethodDescriptor desc = new MethodDescriptor(string(buffer.getInt()));
+					Signature signature = Signature.createSignature(string(buffer.getInt()));
+					return new MethodDefEntry(parent, name, desc, signature, new AccessFlags(buffer.getInt()));
+				}
+				default:
+					throw new IllegalArgumentException("Unknown entry kind " + kind);
+			}
+		}
+
+		/**
+		 * Reads the length of an array, which can't be larger than the rest of the snapshot, so that
+		 * a corrupt length fails fast instead of allocating a huge array.
+		 */
+		static int length(ByteBuffer buffer) {
+			int length = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				throw new IllegalArgumentException("Invalid length " + length);
+			}
+
+			return length;
+		}
+
+		@Nullable
+		private String string(int id) {
+			return id == -1 ? null : strings[id];
+		}
+
+		@Nullable
+		private Entry<?> entry(int id) {
+			return id == -1 ? null : entries[id];
+		}
+
+		int readInt() {
+			return buffer.getInt();
+		}
+
+		boolean readBoolean() {
+			return buffer.get() != 0;
+		}
+
+		String readString() {
+			return string(buffer.getInt());
+		}
+
+		@SuppressWarnings("unchecked")
+		<E extends Entry<?>> E readEntry() {
+			return (E) entry(buffer.getInt());
+		}
+
+		<E extends Entry<?>, C extends Entry<?>> EntryReference<E, C> readReference() {
+			E entry = readEntry();
+			C context = readEntry();
+			boolean named = readBoolean();
+
+			ReferenceTargetType targetType;
+			switch (ReferenceTargetType.Kind.values()[buffer.get()]) {
+				case UNINITIALIZED:
+					targetType = ReferenceTargetType.uninitialized();
+					break;
+				case CLASS_TYPE:
+					targetType = ReferenceTargetType.classType(readEntry());
+					break;
+				default:
+					targetType = ReferenceTargetType.none();
+					break;
+			}
+
+			return new EntryReference<>(entry, named ? entry.getName() : null, context, targetType);
+		}
+	}
+}
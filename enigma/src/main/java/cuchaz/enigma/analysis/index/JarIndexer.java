@@ -25,4 +25,11 @@ public interface JarIndexer {
 
 	default void processIndex(JarIndex index) {
 	}
+
+	/**
+	 * @param parallel whether the work may be spread over the common fork-join pool
+	 */
+	default void processIndex(JarIndex index, boolean parallel) {
+		processIndex(index);
+	}
 }
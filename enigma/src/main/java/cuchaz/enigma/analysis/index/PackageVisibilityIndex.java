@@ -1,15 +1,14 @@
 package cuchaz.enigma.analysis.index;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.ReferenceTargetType;
 import cuchaz.enigma.translation.representation.AccessFlags;
 import cuchaz.enigma.translation.representation.entry.*;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public class PackageVisibilityIndex implements JarIndexer {
 	private static boolean requiresSamePackage(AccessFlags entryAcc, EntryReference ref, InheritanceIndex inheritanceIndex) {
@@ -21,7 +20,7 @@ public class PackageVisibilityIndex implements JarIndexer {
 			ClassEntry contextClass = ref.context.getContainingClass();
 			ClassEntry referencedClass = ref.entry.getContainingClass();
 
-			if (!inheritanceIndex.getAncestors(contextClass).contains(referencedClass)) {
+			if (!inheritanceIndex.isAncestor(contextClass, referencedClass)) {
 				return true; // access to protected member not in superclass
 			}
 
@@ -32,116 +31,330 @@ public class PackageVisibilityIndex implements JarIndexer {
 			// access to instance member only valid if target's class assignable to context class
 			return !(ref.targetType.getKind() == ReferenceTargetType.Kind.UNINITIALIZED ||
 					((ReferenceTargetType.ClassType) ref.targetType).getEntry().equals(contextClass) ||
-					inheritanceIndex.getAncestors(((ReferenceTargetType.ClassType) ref.targetType).getEntry()).contains(contextClass));
+					inheritanceIndex.isAncestor(((ReferenceTargetType.ClassType) ref.targetType).getEntry(), contextClass));
 		}
 
 		return true;
 	}
 
-	private final HashMultimap<ClassEntry, ClassEntry> connections = HashMultimap.create();
-	private final List<Set<ClassEntry>> partitions = Lists.newArrayList();
-	private final Map<ClassEntry, Set<ClassEntry>> classPartitions = Maps.newHashMap();
+	private static long connection(int classA, int classB) {
+		return ((long) classA << 32) | (classB & 0xFFFFFFFFL);
+	}
+
+	private Map<ClassEntry, Integer> classIds = Collections.emptyMap();
+	private ClassEntry[] classes = new ClassEntry[0];
+	private int[] classPartitions = new int[0];
+	private int[] partitionOffsets = new int[1];
+	private int[] partitionMembers = new int[0];
+	private List<Set<ClassEntry>> partitions = Collections.emptyList();
 
-	private void addConnection(ClassEntry classA, ClassEntry classB) {
-		if (classA != classB) {
-			connections.put(classA, classB);
-			connections.put(classB, classA);
+	private void assignIds(Collection<ClassEntry> classEntries) {
+		classes = classEntries.toArray(new ClassEntry[0]);
+		classIds = new HashMap<>(classes.length * 2);
+		for (int id = 0; id < classes.length; id++) {
+			classIds.put(classes[id], id);
 		}
 	}
 
-	private void buildPartition(Set<ClassEntry> unassignedClasses, Set<ClassEntry> partition, ClassEntry member) {
-		for (ClassEntry connected : connections.get(member)) {
-			if (unassignedClasses.remove(connected)) {
-				partition.add(connected);
-				buildPartition(unassignedClasses, partition, connected);
-			}
+	/**
+	 * Emits each connection between two indexed classes as a pair of class ids packed into a long.
+	 * Connections to classes outside the jar are dropped, since those classes are never partitioned.
+	 */
+	private void connect(LongStream.Builder connections, ClassEntry classA, ClassEntry classB) {
+		Integer idA = classIds.get(classA);
+		Integer idB = classIds.get(classB);
+		if (idA != null && idB != null && !idA.equals(idB)) {
+			connections.add(connection(idA, idB));
 		}
 	}
 
-	private void addConnections(EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex) {
-		for (FieldEntry entry : entryIndex.getFields()) {
-			AccessFlags entryAcc = entryIndex.getFieldAccess(entry);
-			if (!entryAcc.isPublic() && !entryAcc.isPrivate()) {
-				for (EntryReference<FieldEntry, MethodDefEntry> ref : referenceIndex.getReferencesToField(entry)) {
-					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
-					}
-				}
+	private <T extends Entry<?>, C extends Entry<?>> void connectReferences(LongStream.Builder connections, AccessFlags entryAcc, Collection<EntryReference<T, C>> references, InheritanceIndex inheritanceIndex) {
+		for (EntryReference<T, C> ref : references) {
+			if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
+				connect(connections, ref.entry.getContainingClass(), ref.context.getContainingClass());
 			}
 		}
+	}
 
-		for (MethodEntry entry : entryIndex.getMethods()) {
-			AccessFlags entryAcc = entryIndex.getMethodAccess(entry);
-			if (!entryAcc.isPublic() && !entryAcc.isPrivate()) {
-				for (EntryReference<MethodEntry, MethodDefEntry> ref : referenceIndex.getReferencesToMethod(entry)) {
-					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
-					}
-				}
-			}
+	private LongStream getFieldConnections(FieldEntry entry, EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex) {
+		AccessFlags entryAcc = entryIndex.getFieldAccess(entry);
+		if (entryAcc == null || entryAcc.isPublic() || entryAcc.isPrivate()) {
+			return LongStream.empty();
 		}
 
-		for (ClassEntry entry : entryIndex.getClasses()) {
-			AccessFlags entryAcc = entryIndex.getClassAccess(entry);
-			if (!entryAcc.isPublic() && !entryAcc.isPrivate()) {
-				for (EntryReference<ClassEntry, FieldDefEntry> ref : referenceIndex.getFieldTypeReferencesToClass(entry)) {
-					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
-					}
-				}
+		LongStream.Builder connections = LongStream.builder();
+		connectReferences(connections, entryAcc, referenceIndex.getReferencesToField(entry), inheritanceIndex);
+		return connections.build();
+	}
 
-				for (EntryReference<ClassEntry, MethodDefEntry> ref : referenceIndex.getMethodTypeReferencesToClass(entry)) {
-					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
-					}
-				}
-			}
+	private LongStream getMethodConnections(MethodEntry entry, EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex) {
+		AccessFlags entryAcc = entryIndex.getMethodAccess(entry);
+		if (entryAcc == null || entryAcc.isPublic() || entryAcc.isPrivate()) {
+			return LongStream.empty();
+		}
 
-			for (ClassEntry parent : inheritanceIndex.getParents(entry)) {
-				AccessFlags parentAcc = entryIndex.getClassAccess(parent);
-				if (parentAcc != null && !parentAcc.isPublic() && !parentAcc.isPrivate()) {
-					addConnection(entry, parent);
-				}
+		LongStream.Builder connections = LongStream.builder();
+		connectReferences(connections, entryAcc, referenceIndex.getReferencesToMethod(entry), inheritanceIndex);
+		return connections.build();
+	}
+
+	private LongStream getClassConnections(ClassEntry entry, EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex) {
+		LongStream.Builder connections = LongStream.builder();
+
+		AccessFlags entryAcc = entryIndex.getClassAccess(entry);
+		if (entryAcc != null && !entryAcc.isPublic() && !entryAcc.isPrivate()) {
+			connectReferences(connections, entryAcc, referenceIndex.getFieldTypeReferencesToClass(entry), inheritanceIndex);
+			connectReferences(connections, entryAcc, referenceIndex.getMethodTypeReferencesToClass(entry), inheritanceIndex);
+		}
+
+		for (ClassEntry parent : inheritanceIndex.getParents(entry)) {
+			AccessFlags parentAcc = entryIndex.getClassAccess(parent);
+			if (parentAcc != null && !parentAcc.isPublic() && !parentAcc.isPrivate()) {
+				connect(connections, entry, parent);
 			}
+		}
 
-			ClassEntry outerClass = entry.getOuterClass();
-			if (outerClass != null) {
-				addConnection(entry, outerClass);
+		ClassEntry outerClass = entry.getOuterClass();
+		if (outerClass != null) {
+			connect(connections, entry, outerClass);
+		}
+
+		return connections.build();
+	}
+
+	/**
+	 * Finds every pair of classes that have to stay in the same package. Each member is checked
+	 * independently, so with {@code parallel} set the members are spread over the common fork-join pool.
+	 */
+	private long[] findConnections(EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex, boolean parallel) {
+		Stream<LongStream> connections = Stream.of(
+				stream(entryIndex.getFields(), parallel).flatMapToLong(entry -> getFieldConnections(entry, entryIndex, referenceIndex, inheritanceIndex)),
+				stream(entryIndex.getMethods(), parallel).flatMapToLong(entry -> getMethodConnections(entry, entryIndex, referenceIndex, inheritanceIndex)),
+				stream(entryIndex.getClasses(), parallel).flatMapToLong(entry -> getClassConnections(entry, entryIndex, referenceIndex, inheritanceIndex))
+		);
+
+		return connections.flatMapToLong(stream -> stream).toArray();
+	}
+
+	private static <T> Stream<T> stream(Collection<T> collection, boolean parallel) {
+		return parallel ? collection.parallelStream() : collection.stream();
+	}
+
+	/**
+	 * Joins the connected classes with a union-find over their ids, then numbers the partitions
+	 * by their first class and lays their members out back to back.
+	 */
+	private void buildPartitions(long[] connections) {
+		UnionFind unionFind = new UnionFind(classes.length);
+		for (long connection : connections) {
+			unionFind.union((int) (connection >>> 32), (int) connection);
+		}
+
+		int[] rootPartitions = new int[classes.length];
+		Arrays.fill(rootPartitions, -1);
+
+		int partitionCount = 0;
+		int[] partitionOf = new int[classes.length];
+		for (int id = 0; id < classes.length; id++) {
+			int root = unionFind.find(id);
+			if (rootPartitions[root] == -1) {
+				rootPartitions[root] = partitionCount++;
 			}
+			partitionOf[id] = rootPartitions[root];
 		}
+
+		setPartitions(partitionOf, partitionCount);
 	}
 
-	private void addPartitions(EntryIndex entryIndex) {
-		Set<ClassEntry> unassignedClasses = Sets.newHashSet(entryIndex.getClasses());
-		while (!unassignedClasses.isEmpty()) {
-			Iterator<ClassEntry> iterator = unassignedClasses.iterator();
-			ClassEntry initialEntry = iterator.next();
-			iterator.remove();
+	private void setPartitions(int[] partitionOf, int partitionCount) {
+		int[] offsets = new int[partitionCount + 1];
+		for (int partition : partitionOf) {
+			offsets[partition + 1]++;
+		}
+		for (int partition = 0; partition < partitionCount; partition++) {
+			offsets[partition + 1] += offsets[partition];
+		}
+
+		int[] next = Arrays.copyOf(offsets, partitionCount);
+		int[] members = new int[partitionOf.length];
+		for (int id = 0; id < partitionOf.length; id++) {
+			members[next[partitionOf[id]]++] = id;
+		}
 
-			HashSet<ClassEntry> partition = Sets.newHashSet();
-			partition.add(initialEntry);
-			buildPartition(unassignedClasses, partition, initialEntry);
-			partitions.add(partition);
+		List<Set<ClassEntry>> views = new ArrayList<>(partitionCount);
+		for (int partition = 0; partition < partitionCount; partition++) {
+			views.add(new PartitionView(partition));
+		}
+
+		classPartitions = partitionOf;
+		partitionOffsets = offsets;
+		partitionMembers = members;
+		partitions = Collections.unmodifiableList(views);
+	}
+
+	void writeSnapshot(JarIndexSnapshot.Writer writer) throws IOException {
+		writer.writeInt(partitions.size());
+		for (Set<ClassEntry> partition : partitions) {
+			writer.writeInt(partition.size());
 			for (ClassEntry entry : partition) {
-				classPartitions.put(entry, partition);
+				writer.writeEntry(entry);
+			}
+		}
+	}
+
+	void readSnapshot(JarIndexSnapshot.Reader reader) {
+		List<ClassEntry> readClasses = new ArrayList<>();
+		List<Integer> readPartitions = new ArrayList<>();
+
+		int partitionCount = reader.readInt();
+		for (int partition = 0; partition < partitionCount; partition++) {
+			for (int j = reader.readInt(); j > 0; j--) {
+				readClasses.add(reader.readEntry());
+				readPartitions.add(partition);
 			}
 		}
+
+		assignIds(readClasses);
+		setPartitions(readPartitions.stream().mapToInt(Integer::intValue).toArray(), partitionCount);
 	}
 
 	public Collection<Set<ClassEntry>> getPartitions() {
 		return partitions;
 	}
 
+	/**
+	 * @return the classes that have to stay in the same package as the given class, including itself,
+	 * or {@code null} if the class is not in the jar
+	 */
 	public Set<ClassEntry> getPartition(ClassEntry classEntry) {
-		return classPartitions.get(classEntry);
+		int partition = getPartitionIndex(classEntry);
+		return partition == -1 ? null : partitions.get(partition);
+	}
+
+	public int getPartitionCount() {
+		return partitions.size();
+	}
+
+	/**
+	 * @return the index of the partition of the given class, or {@code -1} if the class is not in the jar
+	 */
+	public int getPartitionIndex(ClassEntry classEntry) {
+		Integer id = classIds.get(classEntry);
+		return id == null ? -1 : classPartitions[id];
+	}
+
+	/**
+	 * @return a new array of the classes in the partition at the given index
+	 */
+	public ClassEntry[] getPartitionClasses(int partition) {
+		int start = partitionOffsets[partition];
+		ClassEntry[] result = new ClassEntry[partitionOffsets[partition + 1] - start];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = classes[partitionMembers[start + i]];
+		}
+		return result;
 	}
 
 	@Override
 	public void processIndex(JarIndex index) {
+		processIndex(index, JarIndex.PARALLEL_INDEXING);
+	}
+
+	@Override
+	public void processIndex(JarIndex index, boolean parallel) {
 		EntryIndex entryIndex = index.getEntryIndex();
 		ReferenceIndex referenceIndex = index.getReferenceIndex();
 		InheritanceIndex inheritanceIndex = index.getInheritanceIndex();
-		addConnections(entryIndex, referenceIndex, inheritanceIndex);
-		addPartitions(entryIndex);
+		assignIds(entryIndex.getClasses());
+		buildPartitions(findConnections(entryIndex, referenceIndex, inheritanceIndex, parallel));
+	}
+
+	private final class PartitionView extends AbstractSet<ClassEntry> {
+		private final int partition;
+
+		PartitionView(int partition) {
+			this.partition = partition;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof ClassEntry && getPartitionIndex((ClassEntry) o) == partition;
+		}
+
+		@Override
+		public Iterator<ClassEntry> iterator() {
+			int end = partitionOffsets[partition + 1];
+			return new Iterator<ClassEntry>() {
+				private int index = partitionOffsets[partition];
+
+				@Override
+				public boolean hasNext() {
+					return index < end;
+				}
+
+				@Override
+				public ClassEntry next() {
+					if (index >= end) {
+						throw new NoSuchElementException();
+					}
+					return classes[partitionMembers[index++]];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return partitionOffsets[partition + 1] - partitionOffsets[partition];
+		}
+	}
+
+	/**
+	 * Disjoint sets of class ids, joined by size with path compression. Both operations are
+	 * iterative, so long chains of connected classes can't overflow the stack.
+	 */
+	private static final class UnionFind {
+		private final int[] parents;
+		private final int[] sizes;
+
+		UnionFind(int size) {
+			parents = new int[size];
+			sizes = new int[size];
+			for (int i = 0; i < size; i++) {
+				parents[i] = i;
+				sizes[i] = 1;
+			}
+		}
+
+		int find(int element) {
+			int root = element;
+			while (parents[root] != root) {
+				root = parents[root];
+			}
+
+			while (parents[element] != root) {
+				int next = parents[element];
+				parents[element] = root;
+				element = next;
+			}
+
+			return root;
+		}
+
+		void union(int a, int b) {
+			int rootA = find(a);
+			int rootB = find(b);
+			if (rootA == rootB) {
+				return;
+			}
+
+			if (sizes[rootA] < sizes[rootB]) {
+				int swap = rootA;
+				rootA = rootB;
+				rootB = swap;
+			}
+
+			parents[rootB] = rootA;
+			sizes[rootA] += sizes[rootB];
+		}
 	}
 }
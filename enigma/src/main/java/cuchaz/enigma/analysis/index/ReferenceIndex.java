@@ -1,7 +1,5 @@
 package cuchaz.enigma.analysis.index;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.ReferenceTargetType;
 import cuchaz.enigma.translation.mapping.ResolutionStrategy;
@@ -10,17 +8,21 @@ import cuchaz.enigma.translation.representation.MethodDescriptor;
 import cuchaz.enigma.translation.representation.TypeDescriptor;
 import cuchaz.enigma.translation.representation.entry.*;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Map;
+import java.util.function.IntUnaryOperator;
 
 public class ReferenceIndex implements JarIndexer {
-	private Multimap<MethodEntry, MethodEntry> methodReferences = HashMultimap.create();
+	private final EntryIds ids = new EntryIds();
 
-	private Multimap<MethodEntry, EntryReference<MethodEntry, MethodDefEntry>> referencesToMethods = HashMultimap.create();
-	private Multimap<ClassEntry, EntryReference<ClassEntry, MethodDefEntry>> referencesToClasses = HashMultimap.create();
-	private Multimap<FieldEntry, EntryReference<FieldEntry, MethodDefEntry>> referencesToFields = HashMultimap.create();
-	private Multimap<ClassEntry, EntryReference<ClassEntry, FieldDefEntry>> fieldTypeReferences = HashMultimap.create();
-	private Multimap<ClassEntry, EntryReference<ClassEntry, MethodDefEntry>> methodTypeReferences = HashMultimap.create();
+	private final ReferenceTable<MethodEntry, MethodEntry> methodReferences = new ReferenceTable<>(ids);
+
+	private final ReferenceTable<MethodEntry, MethodDefEntry> referencesToMethods = new ReferenceTable<>(ids);
+	private final ReferenceTable<ClassEntry, MethodDefEntry> referencesToClasses = new ReferenceTable<>(ids);
+	private final ReferenceTable<FieldEntry, MethodDefEntry> referencesToFields = new ReferenceTable<>(ids);
+	private final ReferenceTable<ClassEntry, FieldDefEntry> fieldTypeReferences = new ReferenceTable<>(ids);
+	private final ReferenceTable<ClassEntry, MethodDefEntry> methodTypeReferences = new ReferenceTable<>(ids);
 
 	@Override
 	public void indexMethod(MethodDefEntry methodEntry) {
@@ -37,7 +39,7 @@ public class ReferenceIndex implements JarIndexer {
 	private void indexMethodTypeDescriptor(MethodDefEntry method, TypeDescriptor typeDescriptor) {
 		if (typeDescriptor.isType()) {
 			ClassEntry referencedClass = typeDescriptor.getTypeEntry();
-			methodTypeReferences.put(referencedClass, new EntryReference<>(referencedClass, referencedClass.getName(), method));
+			methodTypeReferences.put(referencedClass, method, ReferenceTargetType.none(), true);
 		} else if (typeDescriptor.isArray()) {
 			indexMethodTypeDescriptor(method, typeDescriptor.getArrayType());
 		}
@@ -51,7 +53,7 @@ public class ReferenceIndex implements JarIndexer {
 	private void indexFieldTypeDescriptor(FieldDefEntry field, TypeDescriptor typeDescriptor) {
 		if (typeDescriptor.isType()) {
 			ClassEntry referencedClass = typeDescriptor.getTypeEntry();
-			fieldTypeReferences.put(referencedClass, new EntryReference<>(referencedClass, referencedClass.getName(), field));
+			fieldTypeReferences.put(referencedClass, field, ReferenceTargetType.none(), true);
 		} else if (typeDescriptor.isArray()) {
 		    indexFieldTypeDescriptor(field, typeDescriptor.getArrayType());
 		}
@@ -59,18 +61,18 @@ public class ReferenceIndex implements JarIndexer {
 
 	@Override
 	public void indexMethodReference(MethodDefEntry callerEntry, MethodEntry referencedEntry, ReferenceTargetType targetType) {
-		referencesToMethods.put(referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
+		referencesToMethods.put(referencedEntry, callerEntry, targetType, true);
 		methodReferences.put(callerEntry, referencedEntry);
 
 		if (referencedEntry.isConstructor()) {
 			ClassEntry referencedClass = referencedEntry.getParent();
-			referencesToClasses.put(referencedClass, new EntryReference<>(referencedClass, referencedEntry.getName(), callerEntry, targetType));
+			referencesToClasses.put(referencedClass, callerEntry, targetType, true);
 		}
 	}
 
 	@Override
 	public void indexFieldReference(MethodDefEntry callerEntry, FieldEntry referencedEntry, ReferenceTargetType targetType) {
-		referencesToFields.put(referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
+		referencesToFields.put(referencedEntry, callerEntry, targetType, true);
 	}
 
 	@Override
@@ -86,63 +88,96 @@ public class ReferenceIndex implements JarIndexer {
 		indexMethodDescriptor(callerEntry, lambda.getInstantiatedMethodType());
 	}
 
+	/**
+	 * Resolves every referenced entry and every context to its closest declaration. Each distinct
+	 * entry is resolved once, and the tables are rewritten in place.
+	 */
 	@Override
 	public void processIndex(JarIndex index) {
-		methodReferences = remapReferences(index, methodReferences);
-		referencesToMethods = remapReferencesTo(index, referencesToMethods);
-		referencesToClasses = remapReferencesTo(index, referencesToClasses);
-		referencesToFields = remapReferencesTo(index, referencesToFields);
-		fieldTypeReferences = remapReferencesTo(index, fieldTypeReferences);
-		methodTypeReferences = remapReferencesTo(index, methodTypeReferences);
-	}
-
-	private <K extends Entry<?>, V extends Entry<?>> Multimap<K, V> remapReferences(JarIndex index, Multimap<K, V> multimap) {
-		final int keySetSize = multimap.keySet().size();
-		Multimap<K, V> resolved = HashMultimap.create(multimap.keySet().size(), keySetSize == 0 ? 0 : multimap.size() / keySetSize);
-		for (Map.Entry<K, V> entry : multimap.entries()) {
-			resolved.put(remap(index, entry.getKey()), remap(index, entry.getValue()));
+		int[] resolved = new int[ids.size()];
+		Arrays.fill(resolved, -1);
+
+		IntUnaryOperator resolver = id -> {
+			if (resolved[id] == -1) {
+				Entry<?> entry = index.getEntryResolver().resolveFirstEntry(ids.get(id), ResolutionStrategy.RESOLVE_CLOSEST);
+				resolved[id] = ids.getId(index.getEntryInterner().intern(entry));
+			}
+			return resolved[id];
+		};
+
+		methodReferences.remap(resolver);
+		referencesToMethods.remap(resolver);
+		referencesToClasses.remap(resolver);
+		referencesToFields.remap(resolver);
+		fieldTypeReferences.remap(resolver);
+		methodTypeReferences.remap(resolver);
+	}
+
+	void writeSnapshot(JarIndexSnapshot.Writer writer) throws IOException {
+		writer.writeInt(methodReferences.size());
+		for (MethodEntry caller : methodReferences.keys()) {
+			for (MethodEntry referenced : methodReferences.getValues(caller)) {
+				writer.writeEntry(caller);
+				writer.writeEntry(referenced);
+			}
 		}
-		return resolved;
+
+		writeReferences(writer, referencesToMethods);
+		writeReferences(writer, referencesToClasses);
+		writeReferences(writer, referencesToFields);
+		writeReferences(writer, fieldTypeReferences);
+		writeReferences(writer, methodTypeReferences);
 	}
 
-	private <E extends Entry<?>, C extends Entry<?>> Multimap<E, EntryReference<E, C>> remapReferencesTo(JarIndex index, Multimap<E, EntryReference<E, C>> multimap) {
-		final int keySetSize = multimap.keySet().size();
-		Multimap<E, EntryReference<E, C>> resolved = HashMultimap.create(keySetSize, keySetSize == 0 ? 0 : multimap.size() / keySetSize);
-		for (Map.Entry<E, EntryReference<E, C>> entry : multimap.entries()) {
-			resolved.put(remap(index, entry.getKey()), remap(index, entry.getValue()));
+	private static <E extends Entry<?>, C extends Entry<?>> void writeReferences(JarIndexSnapshot.Writer writer, ReferenceTable<E, C> references) throws IOException {
+		writer.writeInt(references.size());
+		for (E entry : references.keys()) {
+			for (EntryReference<E, C> reference : references.getReferences(entry)) {
+				writer.writeEntry(entry);
+				writer.writeReference(reference);
+			}
 		}
-		return resolved;
 	}
 
-	private <E extends Entry<?>> E remap(JarIndex index, E entry) {
-		return index.getEntryResolver().resolveFirstEntry(entry, ResolutionStrategy.RESOLVE_CLOSEST);
+	void readSnapshot(JarIndexSnapshot.Reader reader) {
+		for (int i = reader.readInt(); i > 0; i--) {
+			methodReferences.put(reader.readEntry(), reader.readEntry());
+		}
+
+		readReferences(reader, referencesToMethods);
+		readReferences(reader, referencesToClasses);
+		readReferences(reader, referencesToFields);
+		readReferences(reader, fieldTypeReferences);
+		readReferences(reader, methodTypeReferences);
 	}
 
-	private <E extends Entry<?>, C extends Entry<?>> EntryReference<E, C> remap(JarIndex index, EntryReference<E, C> reference) {
-		return index.getEntryResolver().resolveFirstReference(reference, ResolutionStrategy.RESOLVE_CLOSEST);
+	private static <E extends Entry<?>, C extends Entry<?>> void readReferences(JarIndexSnapshot.Reader reader, ReferenceTable<E, C> references) {
+		for (int i = reader.readInt(); i > 0; i--) {
+			references.putReference(reader.readEntry(), reader.readReference());
+		}
 	}
 
 	public Collection<MethodEntry> getMethodsReferencedBy(MethodEntry entry) {
-		return methodReferences.get(entry);
+		return methodReferences.getValues(entry);
 	}
 
 	public Collection<EntryReference<FieldEntry, MethodDefEntry>> getReferencesToField(FieldEntry entry) {
-		return referencesToFields.get(entry);
+		return referencesToFields.getReferences(entry);
 	}
 
 	public Collection<EntryReference<ClassEntry, MethodDefEntry>> getReferencesToClass(ClassEntry entry) {
-		return referencesToClasses.get(entry);
+		return referencesToClasses.getReferences(entry);
 	}
 
 	public Collection<EntryReference<MethodEntry, MethodDefEntry>> getReferencesToMethod(MethodEntry entry) {
-		return referencesToMethods.get(entry);
+		return referencesToMethods.getReferences(entry);
 	}
 
 	public Collection<EntryReference<ClassEntry, FieldDefEntry>> getFieldTypeReferencesToClass(ClassEntry entry) {
-		return fieldTypeReferences.get(entry);
+		return fieldTypeReferences.getReferences(entry);
 	}
 
 	public Collection<EntryReference<ClassEntry, MethodDefEntry>> getMethodTypeReferencesToClass(ClassEntry entry) {
-		return methodTypeReferences.get(entry);
+		return methodTypeReferences.getReferences(entry);
 	}
 }
@@ -0,0 +1,302 @@
+package cuchaz.enigma.analysis.index;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.ReferenceTargetType;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A multimap from entries to entries, stored as a compressed sparse row table: every distinct key
+ * gets a row, and the values of all rows are kept back to back in an int array of {@link EntryIds},
+ * with an offset array marking where each row starts. Each value also records the target type and
+ * naming of the reference it came from, so that the {@link EntryReference}s can be rebuilt on demand.
+ * <p>
+ * Values are appended in insertion order and grouped into rows on the first lookup after a change.
+ * Like a {@link com.google.common.collect.HashMultimap}, a row holds each value once; when a value is
+ * added twice, the first one is kept.
+ */
+final class ReferenceTable<K extends Entry<?>, V extends Entry<?>> {
+	private static final byte NAMED = (byte) 0x80;
+	private static final byte KIND_MASK = 0x7F;
+	private static final ReferenceTargetType.Kind[] KINDS = ReferenceTargetType.Kind.values();
+
+	private final EntryIds ids;
+
+	private Map<Entry<?>, Integer> rows = new HashMap<>();
+	private int[] rowKeys = new int[16];
+	private int rowCount;
+	private int[] offsets = new int[1];
+
+	private int[] edgeRows = new int[16];
+	private int[] edgeValues = new int[16];
+	private byte[] edgeTypes = new byte[16];
+	private int[] edgeTargetClasses = new int[16];
+	private int size;
+
+	private volatile boolean grouped = true;
+
+	ReferenceTable(EntryIds ids) {
+		this.ids = ids;
+	}
+
+	void put(K key, V value) {
+		put(key, value, ReferenceTargetType.none(), false);
+	}
+
+	void put(K key, V value, ReferenceTargetType targetType, boolean named) {
+		if (size == edgeRows.length) {
+			int capacity = size * 2;
+			edgeRows = Arrays.copyOf(edgeRows, capacity);
+			edgeValues = Arrays.copyOf(edgeValues, capacity);
+			edgeTypes = Arrays.copyOf(edgeTypes, capacity);
+			edgeTargetClasses = Arrays.copyOf(edgeTargetClasses, capacity);
+		}
+
+		ReferenceTargetType.Kind kind = targetType.getKind();
+		edgeRows[size] = getRow(ids.getId(key), key);
+		edgeValues[size] = ids.getId(value);
+		edgeTypes[size] = (byte) (kind.ordinal() | (named ? NAMED : 0));
+		edgeTargetClasses[size] = kind == ReferenceTargetType.Kind.CLASS_TYPE ? ids.getId(((ReferenceTargetType.ClassType) targetType).getEntry()) : -1;
+		size++;
+
+		grouped = false;
+	}
+
+	void putReference(K key, EntryReference<K, V> reference) {
+		put(key, reference.context, reference.targetType, reference.isNamed());
+	}
+
+	private int getRow(int keyId, Entry<?> key) {
+		Integer row = rows.get(key);
+		if (row == null) {
+			row = rowCount;
+			rows.put(key, row);
+
+			if (rowCount == rowKeys.length) {
+				rowKeys = Arrays.copyOf(rowKeys, rowCount * 2);
+			}
+			rowKeys[rowCount++] = keyId;
+		}
+
+		return row;
+	}
+
+	/**
+	 * Replaces every key and value id with the id it resolves to. The values are rewritten in
+	 * place; rows whose keys resolve to the same entry are merged.
+	 */
+	synchronized void remap(IntUnaryOperator resolver) {
+		Map<Entry<?>, Integer> resolvedRows = new HashMap<>(rows.size());
+		int[] resolvedRowKeys = new int[Math.max(rowCount, 1)];
+		int resolvedRowCount = 0;
+
+		int[] rowMapping = new int[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			int keyId = resolver.applyAsInt(rowKeys[row]);
+			Entry<?> key = ids.get(keyId);
+
+			Integer resolvedRow = resolvedRows.get(key);
+			if (resolvedRow == null) {
+				resolvedRow = resolvedRowCount;
+				resolvedRows.put(key, resolvedRow);
+				resolvedRowKeys[resolvedRowCount++] = keyId;
+			}
+			rowMapping[row] = resolvedRow;
+		}
+
+		for (int i = 0; i < size; i++) {
+			edgeRows[i] = rowMapping[edgeRows[i]];
+			edgeValues[i] = resolver.applyAsInt(edgeValues[i]);
+		}
+
+		rows = resolvedRows;
+		rowKeys = resolvedRowKeys;
+		rowCount = resolvedRowCount;
+		grouped = false;
+		group();
+	}
+
+	/**
+	 * Sorts the values by row, keeping their insertion order within each row, and drops repeated values.
+	 */
+	private synchronized void group() {
+		if (grouped) {
+			return;
+		}
+
+		int[] starts = new int[rowCount + 1];
+		for (int i = 0; i < size; i++) {
+			starts[edgeRows[i] + 1]++;
+		}
+		for (int row = 0; row < rowCount; row++) {
+			starts[row + 1] += starts[row];
+		}
+
+		int[] next = Arrays.copyOf(starts, rowCount);
+		int[] sortedValues = new int[size];
+		byte[] sortedTypes = new byte[size];
+		int[] sortedTargetClasses = new int[size];
+		for (int i = 0; i < size; i++) {
+			int position = next[edgeRows[i]]++;
+			sortedValues[position] = edgeValues[i];
+			sortedTypes[position] = edgeTypes[i];
+			sortedTargetClasses[position] = edgeTargetClasses[i];
+		}
+
+		int[] lastRow = new int[ids.size()];
+		Arrays.fill(lastRow, -1);
+
+		int[] groupedOffsets = new int[rowCount + 1];
+		int count = 0;
+		for (int row = 0; row < rowCount; row++) {
+			groupedOffsets[row] = count;
+			for (int i = starts[row]; i < starts[row + 1]; i++) {
+				int value = sortedValues[i];
+				if (lastRow[value] == row) {
+					continue;
+				}
+
+				lastRow[value] = row;
+				edgeRows[count] = row;
+				sortedValues[count] = value;
+				sortedTypes[count] = sortedTypes[i];
+				sortedTargetClasses[count] = sortedTargetClasses[i];
+				count++;
+			}
+		}
+		groupedOffsets[rowCount] = count;
+
+		edgeValues = sortedValues;
+		edgeTypes = sortedTypes;
+		edgeTargetClasses = sortedTargetClasses;
+		offsets = groupedOffsets;
+		size = count;
+		grouped = true;
+	}
+
+	private void ensureGrouped() {
+		if (!grouped) {
+			group();
+		}
+	}
+
+	int size() {
+		ensureGrouped();
+		return size;
+	}
+
+	/**
+	 * @return the keys that have at least one value
+	 */
+	List<K> keys() {
+		ensureGrouped();
+
+		List<K> keys = new ArrayList<>(rowCount);
+		for (int row = 0; row < rowCount; row++) {
+			if (offsets[row] < offsets[row + 1]) {
+				keys.add(ids.get(rowKeys[row]));
+			}
+		}
+
+		return keys;
+	}
+
+	/**
+	 * @return a read-only view of the values of the key
+	 */
+	Set<V> getValues(Entry<?> key) {
+		return getRowView(key, i -> ids.get(edgeValues[i]));
+	}
+
+	/**
+	 * @return a read-only view of the references to or from the key, created as they are iterated
+	 */
+	Set<EntryReference<K, V>> getReferences(Entry<?> key) {
+		return getRowView(key, this::createReference);
+	}
+
+	private <T> Set<T> getRowView(Entry<?> key, IntFunction<T> factory) {
+		ensureGrouped();
+
+		Integer row = rows.get(key);
+		if (row == null) {
+			return Collections.emptySet();
+		}
+
+		return new RowView<>(row, factory);
+	}
+
+	private EntryReference<K, V> createReference(int index) {
+		K key = ids.get(rowKeys[edgeRows[index]]);
+		V context = ids.get(edgeValues[index]);
+		boolean named = (edgeTypes[index] & NAMED) != 0;
+
+		ReferenceTargetType targetType;
+		switch (KINDS[edgeTypes[index] & KIND_MASK]) {
+			case UNINITIALIZED:
+				targetType = ReferenceTargetType.uninitialized();
+				break;
+			case CLASS_TYPE:
+				targetType = ReferenceTargetType.classType((ClassEntry) ids.get(edgeTargetClasses[index]));
+				break;
+			default:
+				targetType = ReferenceTargetType.none();
+				break;
+		}
+
+		return new EntryReference<>(key, named ? key.getName() : null, context, targetType);
+	}
+
+	private final class RowView<T> extends AbstractSet<T> {
+		private final int row;
+		private final IntFunction<T> factory;
+
+		RowView(int row, IntFunction<T> factory) {
+			this.row = row;
+			this.factory = factory;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			ensureGrouped();
+
+			int start = offsets[row];
+			int end = offsets[row + 1];
+			return new Iterator<T>() {
+				private int index = start;
+
+				@Override
+				public boolean hasNext() {
+					return index < end;
+				}
+
+				@Override
+				public T next() {
+					if (index >= end) {
+						throw new NoSuchElementException();
+					}
+					return factory.apply(index++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			ensureGrouped();
+			return offsets[row + 1] - offsets[row];
+		}
+	}
+}
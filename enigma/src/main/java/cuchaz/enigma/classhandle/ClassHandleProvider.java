@@ -2,17 +2,19 @@ package cuchaz.enigma.classhandle;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
 
 import javax.annotation.Nullable;
 
 import cuchaz.enigma.EnigmaProject;
+import cuchaz.enigma.classhandle.DecompileScheduler.Priority;
 import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.ClassCacheParameters;
 import cuchaz.enigma.classprovider.ObfuscationFixClassProvider;
 import cuchaz.enigma.events.ClassHandleListener;
 import cuchaz.enigma.events.ClassHandleListener.InvalidationType;
@@ -24,20 +26,46 @@ import static cuchaz.enigma.utils.Utils.withLock;
 
 public final class ClassHandleProvider {
 
+	private static final SourceSettings SOURCE_SETTINGS = new SourceSettings(true, true);
+
+	/**
+	 * The number of classes decompiled at the same time by default.
+	 */
+	public static final int DEFAULT_THREADS = Integer.getInteger("enigma.decompilerThreads", Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The number of neighbors of the focused class decompiled ahead of time by
+	 * default. Zero disables prefetching.
+	 */
+	public static final int DEFAULT_PREFETCH_LIMIT = Integer.getInteger("enigma.prefetchClasses", 8);
+
 	private final EnigmaProject project;
 
-	private final ExecutorService pool = Executors.newWorkStealingPool();
+	private final DecompileScheduler scheduler;
+	private final Prefetcher prefetcher;
+	private final AtomicInteger prefetchVersion = new AtomicInteger();
+	private volatile int prefetchLimit = DEFAULT_PREFETCH_LIMIT;
 	private DecompilerService ds;
 	private Decompiler decompiler;
 
 	private final Map<ClassEntry, Entry> handles = new HashMap<>();
+	private volatile ClassEntry focused;
 
 	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
 	public ClassHandleProvider(EnigmaProject project, DecompilerService ds) {
+		this(project, ds, DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param threads the number of classes to decompile at the same time
+	 */
+	public ClassHandleProvider(EnigmaProject project, DecompilerService ds, int threads) {
 		this.project = project;
 		this.ds = ds;
 		this.decompiler = createDecompiler();
+		this.scheduler = new DecompileScheduler(threads);
+		this.prefetcher = new Prefetcher(project.getJarIndex());
 	}
 
 	/**
@@ -52,12 +80,86 @@ public final class ClassHandleProvider {
 	public ClassHandle openClass(ClassEntry entry) {
 		if (!project.getJarIndex().getEntryIndex().hasClass(entry)) return null;
 
+		prefetcher.onOpened(entry);
 		return withLock(lock.writeLock(), () -> {
 			Entry e = handles.computeIfAbsent(entry, entry1 -> new Entry(this, entry1));
 			return e.createHandle();
 		});
 	}
 
+	/**
+	 * Sets the class shown in the focused editor. Its pending work runs before
+	 * that of every other class, and the classes it is most closely related to
+	 * are prefetched into the source cache while there is nothing else to do.
+	 * Prefetches for the previously focused class that haven't started yet are
+	 * dropped.
+	 *
+	 * @param entry the focused class, or {@code null} if no editor is focused
+	 */
+	public void setFocusedClass(@Nullable ClassEntry entry) {
+		if (Objects.equals(this.focused, entry)) return;
+
+		this.focused = entry;
+		int v = prefetchVersion.incrementAndGet();
+		if (entry != null) {
+			prefetch(entry, v);
+		}
+	}
+
+	/**
+	 * Sets the number of neighbors of the focused class to prefetch.
+	 *
+	 * @param limit the number of classes, or {@code 0} to disable prefetching
+	 */
+	public void setPrefetchLimit(int limit) {
+		this.prefetchLimit = limit;
+	}
+
+	/**
+	 * Gets the number of classes prefetched so far, and how many of them were
+	 * opened afterwards.
+	 *
+	 * @return the prefetch statistics
+	 */
+	public PrefetchStats getPrefetchStats() {
+		return prefetcher.getStats();
+	}
+
+	/**
+	 * Schedules the prefetches for a focused class. Finding the neighbors and
+	 * checking the source cache, which may touch the disk, is a prefetch task
+	 * itself, so that it doesn't run on the caller's thread.
+	 */
+	private void prefetch(ClassEntry entry, int v) {
+		scheduler.submit(() -> Priority.PREFETCH, () -> prefetchVersion.get() == v, () -> {
+			String decompilerId = Decompilers.getId(ds);
+			if (decompilerId == null) return null;
+
+			SourceCache cache = project.getEnigma().getSourceCache();
+			for (ClassEntry neighbor : prefetcher.getNeighbors(entry, prefetchLimit)) {
+				if (prefetchVersion.get() != v) break;
+
+				SourceCache.Key key = new SourceCache.Key(project.getJarChecksum(), project.getClasspathChecksum(), neighbor.getFullName(), decompilerId, SOURCE_SETTINGS);
+				if (cache.contains(key)) continue;
+
+				// whether the class is open is checked by the task itself, since that takes the handle lock
+				scheduler.submit(() -> Priority.PREFETCH, () -> prefetchVersion.get() == v, () -> {
+					if (isOpen(neighbor)) return null;
+
+					getUncommentedSource(neighbor);
+					prefetcher.onPrefetched(neighbor);
+					return null;
+				});
+			}
+
+			return null;
+		});
+	}
+
+	private boolean isOpen(ClassEntry entry) {
+		return withLock(lock.readLock(), () -> handles.containsKey(entry));
+	}
+
 	/**
 	 * Set the decompiler service to use when decompiling classes. Invalidates
 	 * all currently open classes.
@@ -87,7 +189,31 @@ public final class ClassHandleProvider {
 	}
 
 	private Decompiler createDecompiler() {
-		return ds.create(new CachingClassProvider(new ObfuscationFixClassProvider(project.getClassProvider(), project.getJarIndex())), new SourceSettings(true, true));
+		ClassCacheParameters cacheParameters = project.getEnigma().getProfile().getClassCacheParameters();
+		return ds.create(new CachingClassProvider(new ObfuscationFixClassProvider(project.getClassProvider(), project.getJarIndex(), cacheParameters), cacheParameters), SOURCE_SETTINGS);
+	}
+
+	/**
+	 * Gets the uncommented source of a class from the project's source cache, or decompiles it and
+	 * caches the result. Sources of decompilers other than the built-in ones are never cached.
+	 */
+	private Source getUncommentedSource(ClassEntry entry) {
+		DecompilerService ds = this.ds;
+		Decompiler decompiler = this.decompiler;
+		String decompilerId = Decompilers.getId(ds);
+		if (decompilerId == null) {
+			return decompiler.getSource(entry.getFullName());
+		}
+
+		SourceCache cache = project.getEnigma().getSourceCache();
+		SourceCache.Key key = new SourceCache.Key(project.getJarChecksum(), project.getClasspathChecksum(), entry.getFullName(), decompilerId, SOURCE_SETTINGS);
+		Source source = cache.get(key, decompiler);
+		if (source == null) {
+			source = decompiler.getSource(entry.getFullName());
+			cache.put(key, source);
+		}
+
+		return source;
 	}
 
 	/**
@@ -100,6 +226,22 @@ public final class ClassHandleProvider {
 		});
 	}
 
+	/**
+	 * Invalidates the mappings of some entries. Only the open classes whose
+	 * sources refer to one of the entries are re-remapped, and only the tokens
+	 * that depend on them are renamed.
+	 *
+	 * @param entries the obfuscated entries whose mappings have changed, as
+	 *                they are stored in the mappings
+	 */
+	public void invalidateMapped(Collection<? extends cuchaz.enigma.translation.representation.entry.Entry<?>> entries) {
+		if (entries.isEmpty()) return;
+
+		withLock(lock.readLock(), () -> {
+			handles.values().forEach(e -> e.invalidateMapped(entries));
+		});
+	}
+
 	/**
 	 * Invalidates mappings for a single class. Note that this does not
 	 * invalidate any mappings of other classes where this class is used, so
@@ -162,9 +304,9 @@ public final class ClassHandleProvider {
 	 * be used.
 	 */
 	public void destroy() {
-		pool.shutdown();
+		scheduler.shutdown();
 		try {
-			pool.awaitTermination(30, TimeUnit.SECONDS);
+			scheduler.awaitTermination(30, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
 		}
@@ -192,7 +334,13 @@ public final class ClassHandleProvider {
 		private final AtomicInteger indexVersion = new AtomicInteger();
 		private final AtomicInteger mappedVersion = new AtomicInteger();
 
+		/**
+		 * Entries whose mappings have changed since the source was last remapped.
+		 */
+		private final Set<cuchaz.enigma.translation.representation.entry.Entry<?>> changedEntries = ConcurrentHashMap.newKeySet();
+
 		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		private volatile boolean deleted;
 
 		private Entry(ClassHandleProvider p, ClassEntry entry) {
 			this.p = p;
@@ -223,6 +371,18 @@ public final class ClassHandleProvider {
 			}
 		}
 
+		private Priority getPriority() {
+			return entry.equals(p.focused) ? Priority.FOCUSED : Priority.OPEN;
+		}
+
+		/**
+		 * Whether work for the given version of a stage is still wanted, which it
+		 * isn't once a newer version was started or the last handle was closed.
+		 */
+		private boolean isCurrent(AtomicInteger version, int v) {
+			return !deleted && version.get() == v;
+		}
+
 		public void invalidate() {
 			checkDeobfRefForUpdate();
 			withLock(lock.readLock(), () -> new ArrayList<>(handles)).forEach(h -> h.onInvalidate(InvalidationType.FULL));
@@ -241,14 +401,46 @@ public final class ClassHandleProvider {
 			continueMapSource(CompletableFuture.completedFuture(source));
 		}
 
+		public void invalidateMapped(Collection<? extends cuchaz.enigma.translation.representation.entry.Entry<?>> entries) {
+			Result<DecompiledClassSource, ClassHandleError> source = this.source;
+			if (source == null || source.isErr()) {
+				invalidateMapped();
+				return;
+			}
+
+			if (!source.unwrap().dependsOn(entries) && !isRenamed(entries)) return;
+
+			checkDeobfRefForUpdate();
+			changedEntries.addAll(entries);
+			withLock(lock.readLock(), () -> new ArrayList<>(handles)).forEach(h -> h.onInvalidate(InvalidationType.MAPPINGS));
+
+			// remap the latest source once it is this stage's turn, which has all changes up to then
+			continueMapSource(CompletableFuture.completedFuture(source), s -> {
+				DecompiledClassSource latest = Entry.this.source.ok().orElse(s);
+				Set<cuchaz.enigma.translation.representation.entry.Entry<?>> changed = new HashSet<>(changedEntries);
+				changedEntries.removeAll(changed);
+				return latest.remapEntries(p.project, p.project.getMapper().getDeobfuscator(), changed);
+			});
+		}
+
+		/**
+		 * Whether the name of this class changes with the mappings of any of the
+		 * entries, even if its source doesn't refer to them.
+		 */
+		private boolean isRenamed(Collection<? extends cuchaz.enigma.translation.representation.entry.Entry<?>> entries) {
+			for (ClassEntry c = entry; c != null; c = c.getOuterClass()) {
+				if (entries.contains(c)) return true;
+			}
+
+			return false;
+		}
+
 		private CompletableFuture<Result<Source, ClassHandleError>> decompile() {
 			int v = decompileVersion.incrementAndGet();
-			return CompletableFuture.supplyAsync(() -> {
-				if (decompileVersion.get() != v) return null;
-
+			return p.scheduler.submit(this::getPriority, () -> isCurrent(decompileVersion, v), () -> {
 				Result<Source, ClassHandleError> _uncommentedSource;
 				try {
-					_uncommentedSource = Result.ok(p.decompiler.getSource(entry.getFullName()));
+					_uncommentedSource = Result.ok(p.getUncommentedSource(entry));
 				} catch (Throwable e) {
 					return Result.err(ClassHandleError.decompile(e));
 				}
@@ -258,49 +450,53 @@ public final class ClassHandleProvider {
 				Entry.this.waitingUncommentedSources.clear();
 				withLock(lock.readLock(), () -> new ArrayList<>(handles)).forEach(h -> h.onUncommentedSourceChanged(uncommentedSource));
 				return uncommentedSource;
-			}, p.pool);
+			});
 		}
 
 		private CompletableFuture<Result<Source, ClassHandleError>> continueInsertJavadoc(CompletableFuture<Result<Source, ClassHandleError>> f) {
 			int v = javadocVersion.incrementAndGet();
-			return f.thenApplyAsync(res -> {
-				if (res == null || javadocVersion.get() != v) return null;
+			return f.thenCompose(res -> p.scheduler.submit(this::getPriority, () -> res != null && isCurrent(javadocVersion, v), () -> {
 				Result<Source, ClassHandleError> jdSource = res.map(s -> s.withJavadocs(p.project.getMapper()));
 				withLock(lock.readLock(), () -> new ArrayList<>(handles)).forEach(h -> h.onDocsChanged(jdSource));
 				return jdSource;
-			}, p.pool);
+			}));
 		}
 
 		private CompletableFuture<Result<DecompiledClassSource, ClassHandleError>> continueIndexSource(CompletableFuture<Result<Source, ClassHandleError>> f) {
 			int v = indexVersion.incrementAndGet();
-			return f.thenApplyAsync(res -> {
-				if (res == null || indexVersion.get() != v) return null;
-				return res.andThen(jdSource -> {
-					SourceIndex index = jdSource.index();
-					index.resolveReferences(p.project.getMapper().getObfResolver());
-					DecompiledClassSource source = new DecompiledClassSource(entry, index);
-					return Result.ok(source);
-				});
-			}, p.pool);
+			return f.thenCompose(res -> p.scheduler.submit(this::getPriority, () -> res != null && isCurrent(indexVersion, v), () -> res.andThen(jdSource -> {
+				SourceIndex index = jdSource.index();
+				index.resolveReferences(p.project.getMapper().getObfResolver());
+				DecompiledClassSource source = new DecompiledClassSource(entry, index);
+				return Result.ok(source);
+			})));
 		}
 
 		private void continueMapSource(CompletableFuture<Result<DecompiledClassSource, ClassHandleError>> f) {
+			continueMapSource(f, source -> {
+				// a full remap includes every change made so far
+				changedEntries.clear();
+				return source.remapSource(p.project, p.project.getMapper().getDeobfuscator());
+			});
+		}
+
+		private void continueMapSource(CompletableFuture<Result<DecompiledClassSource, ClassHandleError>> f, UnaryOperator<DecompiledClassSource> remap) {
 			int v = mappedVersion.incrementAndGet();
-			f.thenAcceptAsync(res -> {
-				if (res == null || mappedVersion.get() != v) return;
-				res = res.andThen(source -> {
+			f.thenCompose(res -> p.scheduler.submit(this::getPriority, () -> res != null && isCurrent(mappedVersion, v), () -> {
+				Result<DecompiledClassSource, ClassHandleError> mappedSource = res.andThen(source -> {
 					try {
-						DecompiledClassSource remappedSource = source.remapSource(p.project, p.project.getMapper().getDeobfuscator());
+						DecompiledClassSource remappedSource = remap.apply(source);
 						return Result.ok(remappedSource);
 					} catch (Throwable e) {
 						return Result.err(ClassHandleError.remap(e));
 					}
 				});
-				Entry.this.source = res;
-				Entry.this.waitingSources.forEach(s -> s.complete(source));
+				Entry.this.source = mappedSource;
+				Entry.this.waitingSources.forEach(s -> s.complete(mappedSource));
 				Entry.this.waitingSources.clear();
-				withLock(lock.readLock(), () -> new ArrayList<>(handles)).forEach(h -> h.onMappedSourceChanged(source));
-			}, p.pool);
+				withLock(lock.readLock(), () -> new ArrayList<>(handles)).forEach(h -> h.onMappedSourceChanged(mappedSource));
+				return null;
+			}));
 		}
 
 		public void closeHandle(ClassHandleImpl classHandle) {
@@ -308,6 +504,7 @@ public final class ClassHandleProvider {
 			withLock(lock.writeLock(), () -> {
 				handles.remove(classHandle);
 				if (handles.isEmpty()) {
+					deleted = true;
 					p.deleteEntry(this);
 				}
 			});
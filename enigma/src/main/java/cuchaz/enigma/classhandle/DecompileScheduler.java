@@ -0,0 +1,251 @@
+package cuchaz.enigma.classhandle;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs the stages of class handles on a fixed number of threads, most important class first.
+ *
+ * <p>The priority of a task is read again every time a thread looks for work, so a class that gets
+ * focused while its tasks are waiting moves ahead of the others. Tasks of the same priority run in
+ * the order they were submitted. A task that has been superseded by the time it would start is not
+ * run at all, and its future is completed with {@code null}, which the stages already treat as a
+ * stale result.</p>
+ *
+ * <p>Prefetch tasks only run while no other task is running, and on at most half of the threads,
+ * so that work for the classes the user is looking at can start right away.</p>
+ */
+final class DecompileScheduler {
+	private final Lock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final List<Task<?>> pending = new ArrayList<>();
+	private final Thread[] workers;
+	private final int prefetchLimit;
+	private int runningPrefetches;
+	private int runningOthers;
+	private long nextSequence;
+	private boolean shutdown;
+
+	DecompileScheduler(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Decompiler needs at least one thread, got " + threads);
+		}
+
+		prefetchLimit = Math.max(1, threads / 2);
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(this::work, "Decompiler-" + i);
+			worker.setDaemon(true);
+			workers[i] = worker;
+			worker.start();
+		}
+	}
+
+	/**
+	 * Schedules a task.
+	 *
+	 * <p>Both suppliers are called while the scheduler holds its lock, so they must not take any
+	 * other lock; anything that submits tasks may be holding that one.</p>
+	 *
+	 * @param priority the priority of the task, which may change while it waits
+	 * @param current whether the task is still wanted; checked right before it starts
+	 * @param work the task itself
+	 * @return the result of the task, or {@code null} if it was superseded or the scheduler was shut down
+	 */
+	<T> CompletableFuture<T> submit(Supplier<Priority> priority, BooleanSupplier current, Supplier<T> work) {
+		Task<T> task = new Task<>(priority, current, work);
+
+		lock.lock();
+		try {
+			if (!shutdown) {
+				task.sequence = nextSequence++;
+				pending.add(task);
+				available.signal();
+				return task.future;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		task.future.complete(null);
+		return task.future;
+	}
+
+	/**
+	 * Stops accepting tasks. Prefetch tasks that haven't started are dropped and their futures
+	 * completed with {@code null}; the other tasks that are already waiting still run.
+	 */
+	void shutdown() {
+		List<Task<?>> dropped = new ArrayList<>();
+
+		lock.lock();
+		try {
+			shutdown = true;
+			for (Iterator<Task<?>> iterator = pending.iterator(); iterator.hasNext(); ) {
+				Task<?> task = iterator.next();
+				if (task.priority.get() == Priority.PREFETCH) {
+					iterator.remove();
+					dropped.add(task);
+				}
+			}
+
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		for (Task<?> task : dropped) {
+			task.future.complete(null);
+		}
+	}
+
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread worker : workers) {
+			long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remaining <= 0) {
+				return false;
+			}
+
+			worker.join(remaining);
+			if (worker.isAlive()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void work() {
+		while (true) {
+			List<Task<?>> superseded = new ArrayList<>();
+			Task<?> task;
+
+			lock.lock();
+			try {
+				while ((task = take(superseded)) == null && superseded.isEmpty()) {
+					if (shutdown && pending.isEmpty()) {
+						return;
+					}
+
+					available.awaitUninterruptibly();
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			// completed without holding the lock, since that runs the stages that follow them
+			for (Task<?> t : superseded) {
+				t.future.complete(null);
+			}
+
+			if (task != null) {
+				task.run();
+				finish(task);
+			}
+		}
+	}
+
+	private void finish(Task<?> task) {
+		lock.lock();
+		try {
+			if (task.runningPriority == Priority.PREFETCH) {
+				runningPrefetches--;
+			} else {
+				runningOthers--;
+			}
+
+			// waiting prefetches may be allowed to start now
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the most important task that is still current and may start now, and all tasks that
+	 * aren't current.
+	 */
+	private Task<?> take(List<Task<?>> superseded) {
+		Task<?> best = null;
+		Priority bestPriority = null;
+
+		for (Iterator<Task<?>> iterator = pending.iterator(); iterator.hasNext(); ) {
+			Task<?> task = iterator.next();
+			if (!task.current.getAsBoolean()) {
+				iterator.remove();
+				superseded.add(task);
+				continue;
+			}
+
+			Priority priority = task.priority.get();
+			if (best == null || priority.compareTo(bestPriority) < 0 || (priority == bestPriority && task.sequence < best.sequence)) {
+				best = task;
+				bestPriority = priority;
+			}
+		}
+
+		if (best == null) {
+			return null;
+		}
+
+		if (bestPriority == Priority.PREFETCH) {
+			if (runningOthers > 0 || runningPrefetches >= prefetchLimit) {
+				return null;
+			}
+			runningPrefetches++;
+		} else {
+			runningOthers++;
+		}
+
+		pending.remove(best);
+		best.runningPriority = bestPriority;
+		return best;
+	}
+
+	enum Priority {
+		/**
+		 * The class shown in the focused editor.
+		 */
+		FOCUSED,
+		/**
+		 * Any other class with an open handle.
+		 */
+		OPEN,
+		/**
+		 * A class that is only decompiled in case it gets opened.
+		 */
+		PREFETCH
+	}
+
+	private static final class Task<T> {
+		private final Supplier<Priority> priority;
+		private final BooleanSupplier current;
+		private final Supplier<T> work;
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		private long sequence;
+		private Priority runningPriority;
+
+		Task(Supplier<Priority> priority, BooleanSupplier current, Supplier<T> work) {
+			this.priority = priority;
+			this.current = current;
+			this.work = work;
+		}
+
+		void run() {
+			try {
+				future.complete(work.get());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		}
+	}
+}
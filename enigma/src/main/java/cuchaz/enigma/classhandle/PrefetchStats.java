@@ -0,0 +1,40 @@
+package cuchaz.enigma.classhandle;
+
+/**
+ * How well prefetching has worked so far for a {@link ClassHandleProvider}.
+ */
+public final class PrefetchStats {
+	private final long prefetched;
+	private final long used;
+
+	PrefetchStats(long prefetched, long used) {
+		this.prefetched = prefetched;
+		this.used = used;
+	}
+
+	/**
+	 * @return the number of classes that were decompiled ahead of time
+	 */
+	public long getPrefetched() {
+		return prefetched;
+	}
+
+	/**
+	 * @return the number of prefetched classes that were opened afterwards
+	 */
+	public long getUsed() {
+		return used;
+	}
+
+	/**
+	 * @return the share of prefetched classes that were opened afterwards, or {@code 0} if nothing was prefetched
+	 */
+	public double getHitRate() {
+		return prefetched == 0 ? 0 : (double) used / prefetched;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d prefetched, %d used (%.1f%%)", prefetched, used, getHitRate() * 100);
+	}
+}
@@ -0,0 +1,136 @@
+package cuchaz.enigma.classhandle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+import cuchaz.enigma.analysis.index.EntryIndex;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.translation.representation.entry.ParentedEntry;
+
+/**
+ * Picks the classes that are likely to be opened next from the one being looked at, and keeps
+ * track of how many of the prefetched classes actually get opened.
+ *
+ * <p>Classes are decompiled as a whole with their inner classes, so neighbors are always outermost
+ * classes. They are ranked as follows: the superclasses and interfaces of the class and its inner
+ * classes, then the classes its methods call or its members have as types, most used first, and
+ * finally its subclasses.</p>
+ */
+final class Prefetcher {
+	private final JarIndex index;
+
+	private final Set<ClassEntry> prefetched = ConcurrentHashMap.newKeySet();
+	private final AtomicLong prefetchCount = new AtomicLong();
+	private final AtomicLong usedCount = new AtomicLong();
+
+	Prefetcher(JarIndex index) {
+		this.index = index;
+	}
+
+	List<ClassEntry> getNeighbors(ClassEntry entry, int limit) {
+		if (limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		ClassEntry outermost = entry.getOutermostClass();
+		List<ClassEntry> classes = new ArrayList<>();
+		collectClasses(outermost, classes);
+
+		Set<ClassEntry> neighbors = new LinkedHashSet<>();
+		for (ClassEntry c : classes) {
+			for (ClassEntry parent : index.getInheritanceIndex().getParents(c)) {
+				addNeighbor(neighbors, outermost, parent);
+			}
+		}
+
+		EntryIndex entryIndex = index.getEntryIndex();
+		Multiset<ClassEntry> uses = HashMultiset.create();
+		for (ClassEntry c : classes) {
+			for (MethodEntry method : entryIndex.getMethods(c)) {
+				for (MethodEntry called : index.getReferenceIndex().getMethodsReferencedBy(method)) {
+					uses.add(called.getParent());
+				}
+
+				addType(uses, method.getDesc().getReturnDesc());
+				for (TypeDescriptor argument : method.getDesc().getArgumentDescs()) {
+					addType(uses, argument);
+				}
+			}
+
+			for (FieldEntry field : entryIndex.getFields(c)) {
+				addType(uses, field.getDesc());
+			}
+		}
+
+		for (ClassEntry used : Multisets.copyHighestCountFirst(uses).elementSet()) {
+			addNeighbor(neighbors, outermost, used);
+		}
+
+		for (ClassEntry c : classes) {
+			for (ClassEntry child : index.getInheritanceIndex().getChildren(c)) {
+				addNeighbor(neighbors, outermost, child);
+			}
+		}
+
+		List<ClassEntry> result = new ArrayList<>(Math.min(limit, neighbors.size()));
+		for (ClassEntry neighbor : neighbors) {
+			if (result.size() == limit) {
+				break;
+			}
+			result.add(neighbor);
+		}
+
+		return result;
+	}
+
+	private void collectClasses(ClassEntry entry, List<ClassEntry> classes) {
+		classes.add(entry);
+		for (ParentedEntry<?> child : index.getChildrenByClass().get(entry)) {
+			if (child instanceof ClassEntry) {
+				collectClasses((ClassEntry) child, classes);
+			}
+		}
+	}
+
+	private void addNeighbor(Set<ClassEntry> neighbors, ClassEntry outermost, ClassEntry entry) {
+		ClassEntry neighbor = entry.getOutermostClass();
+		if (!neighbor.equals(outermost) && index.getEntryIndex().hasClass(neighbor)) {
+			neighbors.add(neighbor);
+		}
+	}
+
+	private static void addType(Multiset<ClassEntry> uses, TypeDescriptor type) {
+		if (type.containsType()) {
+			uses.add(type.getTypeEntry());
+		}
+	}
+
+	void onPrefetched(ClassEntry entry) {
+		if (prefetched.add(entry)) {
+			prefetchCount.incrementAndGet();
+		}
+	}
+
+	void onOpened(ClassEntry entry) {
+		if (prefetched.remove(entry)) {
+			usedCount.incrementAndGet();
+		}
+	}
+
+	PrefetchStats getStats() {
+		return new PrefetchStats(prefetchCount.get(), usedCount.get());
+	}
+}
@@ -2,7 +2,9 @@ package cuchaz.enigma.classprovider;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import javax.annotation.Nullable;
 import java.util.Optional;
@@ -11,17 +13,60 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Wraps a ClassProvider to provide caching and synchronization.
+ * <p>
+ * The cache is bounded by the approximate memory retained by the cached {@linkplain ClassNode}s
+ * rather than by their number, so that a few huge classes can't push the whole budget out and
+ * many small ones don't thrash it.
  */
 public class CachingClassProvider implements ClassProvider {
+    private static final int BASE_WEIGHT = 512;
+    private static final int FIELD_WEIGHT = 128;
+    private static final int METHOD_WEIGHT = 256;
+    private static final int INSTRUCTION_WEIGHT = 48;
+    private static final int LOCAL_VARIABLE_WEIGHT = 64;
+
     private final ClassProvider classProvider;
-    private final Cache<String, Optional<ClassNode>> cache = CacheBuilder.newBuilder()
-            .maximumSize(128)
-            .expireAfterAccess(1, TimeUnit.MINUTES)
-            .concurrencyLevel(1)
-            .build();
+    private final Cache<String, Optional<ClassNode>> cache;
 
     public CachingClassProvider(ClassProvider classProvider) {
+        this(classProvider, ClassCacheParameters.DEFAULT);
+    }
+
+    public CachingClassProvider(ClassProvider classProvider, ClassCacheParameters parameters) {
         this.classProvider = classProvider;
+
+        CacheBuilder<String, Optional<ClassNode>> builder = CacheBuilder.newBuilder()
+                .maximumWeight(parameters.getMaximumWeight())
+                .weigher((String name, Optional<ClassNode> node) -> node.map(CachingClassProvider::estimateWeight).orElse(BASE_WEIGHT))
+                .concurrencyLevel(parameters.getConcurrencyLevel());
+
+        if (parameters.getExpireAfterAccessSeconds() > 0) {
+            builder.expireAfterAccess(parameters.getExpireAfterAccessSeconds(), TimeUnit.SECONDS);
+        }
+
+        if (parameters.isRecordStats()) {
+            builder.recordStats();
+        }
+
+        this.cache = builder.build();
+    }
+
+    /**
+     * Estimates the number of bytes retained by a class node from the number of members and
+     * instructions it holds.
+     */
+    static int estimateWeight(ClassNode node) {
+        long weight = BASE_WEIGHT + (long) node.fields.size() * FIELD_WEIGHT;
+
+        for (MethodNode method : node.methods) {
+            weight += METHOD_WEIGHT + (long) method.instructions.size() * INSTRUCTION_WEIGHT;
+
+            if (method.localVariables != null) {
+                weight += (long) method.localVariables.size() * LOCAL_VARIABLE_WEIGHT;
+            }
+        }
+
+        return (int) Math.min(weight, Integer.MAX_VALUE);
     }
 
     @Override
@@ -33,4 +78,29 @@ public class CachingClassProvider implements ClassProvider {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Reads the bytes straight from the wrapped provider, bypassing the cache so that one-off
+     * scans over a whole jar don't evict the classes that are actually in use.
+     */
+    @Override
+    @Nullable
+    public byte[] getBytes(String name) {
+        return classProvider.getBytes(name);
+    }
+
+    /**
+     * Gets the hit, miss, load time and eviction counts of this cache. The counts are all zero
+     * unless {@link ClassCacheParameters#isRecordStats()} was set.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of classes currently cached
+     */
+    public long size() {
+        return cache.size();
+    }
 }
@@ -0,0 +1,57 @@
+package cuchaz.enigma.classprovider;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Sizing and eviction settings for a {@link CachingClassProvider}, read from the
+ * {@code class_cache} object of the profile. Settings that are left out use their defaults.
+ */
+public class ClassCacheParameters {
+    public static final ClassCacheParameters DEFAULT = new ClassCacheParameters(null, null, null, null);
+
+    private static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+    @SerializedName("maximum_weight")
+    private final Long maximumWeight;
+
+    @SerializedName("expire_after_access_seconds")
+    private final Long expireAfterAccessSeconds;
+
+    @SerializedName("concurrency_level")
+    private final Integer concurrencyLevel;
+
+    @SerializedName("record_stats")
+    private final Boolean recordStats;
+
+    public ClassCacheParameters(Long maximumWeight, Long expireAfterAccessSeconds, Integer concurrencyLevel, Boolean recordStats) {
+        this.maximumWeight = maximumWeight;
+        this.expireAfterAccessSeconds = expireAfterAccessSeconds;
+        this.concurrencyLevel = concurrencyLevel;
+        this.recordStats = recordStats;
+    }
+
+    /**
+     * @return the approximate number of bytes the cached classes may retain
+     */
+    public long getMaximumWeight() {
+        return maximumWeight != null ? maximumWeight : DEFAULT_MAXIMUM_WEIGHT;
+    }
+
+    /**
+     * @return how long a class stays cached after it was last read, or {@code 0} to only evict by weight
+     */
+    public long getExpireAfterAccessSeconds() {
+        return expireAfterAccessSeconds != null ? expireAfterAccessSeconds : 0;
+    }
+
+    /**
+     * @return the number of threads expected to load classes at the same time
+     */
+    public int getConcurrencyLevel() {
+        return concurrencyLevel != null ? concurrencyLevel : Runtime.getRuntime().availableProcessors();
+    }
+
+    public boolean isRecordStats() {
+        return recordStats != null ? recordStats : true;
+    }
+}
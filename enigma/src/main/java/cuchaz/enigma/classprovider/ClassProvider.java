@@ -1,5 +1,6 @@
 package cuchaz.enigma.classprovider;
 
+import cuchaz.enigma.utils.AsmUtil;
 import org.objectweb.asm.tree.ClassNode;
 
 import javax.annotation.Nullable;
@@ -14,4 +15,18 @@ public interface ClassProvider {
      */
     @Nullable
     ClassNode get(String name);
+
+    /**
+     * Gets the raw class file bytes for a class. Callers that only need to visit the class once
+     * can use this to avoid building a {@linkplain ClassNode}. The default implementation
+     * serializes the result of {@link #get(String)}.
+     *
+     * @param name the internal name of the class
+     * @return the class file bytes for that class, or {@code null} if it was not found
+     */
+    @Nullable
+    default byte[] getBytes(String name) {
+        ClassNode node = get(name);
+        return node != null ? AsmUtil.nodeToBytes(node) : null;
+    }
 }
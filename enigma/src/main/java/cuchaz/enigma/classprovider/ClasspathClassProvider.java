@@ -1,5 +1,6 @@
 package cuchaz.enigma.classprovider;
 
+import com.google.common.io.ByteStreams;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
 
@@ -24,4 +25,16 @@ public class ClasspathClassProvider implements ClassProvider {
             return null;
         }
     }
+
+    @Nullable @Override public byte[] getBytes(String name) {
+        try (InputStream in = ClasspathClassProvider.class.getResourceAsStream("/" + name + ".class")) {
+            if (in == null) {
+                return null;
+            }
+
+            return ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
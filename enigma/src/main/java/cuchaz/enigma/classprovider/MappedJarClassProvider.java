@@ -0,0 +1,337 @@
+package cuchaz.enigma.classprovider;
+
+import com.google.common.collect.ImmutableMap;
+import cuchaz.enigma.utils.AsmUtil;
+import org.objectweb.asm.tree.ClassNode;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Provides classes by loading them from a memory-mapped JAR file.
+ * <p>
+ * The central directory is read once when the provider is created, so a lookup only has to
+ * locate the entry data in the mapped buffer and copy (stored entries) or inflate (deflated
+ * entries) it into a new array. Reads never change the shared buffer's state, so the provider
+ * can be used from many threads at once; they only share a read lock, which {@link #close()}
+ * waits for before unmapping the file.
+ */
+public class MappedJarClassProvider implements Closeable, ClassProvider {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int END_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final ByteBuffer buffer;
+    private final ImmutableMap<String, Entry> entries;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public MappedJarClassProvider(Path jarPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(jarPath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("JAR file is too large to map: " + jarPath);
+            }
+
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        try {
+            this.entries = readCentralDirectory(buffer);
+        } catch (IOException | RuntimeException e) {
+            unmap(buffer);
+            throw e;
+        }
+    }
+
+    private static ImmutableMap<String, Entry> readCentralDirectory(ByteBuffer buffer) throws IOException {
+        int end = findEnd(buffer);
+        long entryCount = buffer.getShort(end + 10) & 0xFFFF;
+        long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+
+        int locator = end - ZIP64_LOCATOR_LENGTH;
+        if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            int zip64End = checkedOffset(buffer, buffer.getLong(locator + 8));
+            if (buffer.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("Invalid ZIP64 end of central directory record");
+            }
+
+            entryCount = buffer.getLong(zip64End + 32);
+            directoryOffset = buffer.getLong(zip64End + 48);
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int offset = checkedOffset(buffer, directoryOffset);
+
+        for (long i = 0; i < entryCount; i++) {
+            if (buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header at " + offset);
+            }
+
+            int method = buffer.getShort(offset + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(offset + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(offset + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(offset + 42) & 0xFFFFFFFFL;
+
+            int nameOffset = offset + 46;
+            String name = readString(buffer, nameOffset, nameLength);
+
+            // ZIP64 sizes and offsets are only present for the fields that overflowed, in this order
+            int extra = findExtra(buffer, nameOffset + nameLength, extraLength, ZIP64_EXTRA_ID);
+            if (extra >= 0) {
+                if (size == 0xFFFFFFFFL) {
+                    size = buffer.getLong(extra);
+                    extra += 8;
+                }
+                if (compressedSize == 0xFFFFFFFFL) {
+                    compressedSize = buffer.getLong(extra);
+                    extra += 8;
+                }
+                if (localHeaderOffset == 0xFFFFFFFFL) {
+                    localHeaderOffset = buffer.getLong(extra);
+                }
+            }
+
+            if (name.endsWith(".class")) {
+                String className = name.charAt(0) == '/' ? name.substring(1) : name;
+                className = className.substring(0, className.length() - ".class".length());
+                entries.put(className, new Entry(method, checkedOffset(buffer, localHeaderOffset), checkedSize(compressedSize), checkedSize(size)));
+            }
+
+            offset = nameOffset + nameLength + extraLength + commentLength;
+        }
+
+        return ImmutableMap.copyOf(entries);
+    }
+
+    private static int findEnd(ByteBuffer buffer) throws ZipException {
+        int minOffset = Math.max(0, buffer.limit() - END_LENGTH - MAX_COMMENT_LENGTH);
+        for (int offset = buffer.limit() - END_LENGTH; offset >= minOffset; offset--) {
+            if (buffer.getInt(offset) == END_SIGNATURE) {
+                return offset;
+            }
+        }
+
+        throw new ZipException("Missing end of central directory record");
+    }
+
+    private static int findExtra(ByteBuffer buffer, int offset, int length, int id) {
+        int end = offset + length;
+        while (offset + 4 <= end) {
+            int headerId = buffer.getShort(offset) & 0xFFFF;
+            int dataLength = buffer.getShort(offset + 2) & 0xFFFF;
+            if (headerId == id) {
+                return offset + 4;
+            }
+
+            offset += 4 + dataLength;
+        }
+
+        return -1;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkedOffset(ByteBuffer buffer, long offset) throws ZipException {
+        if (offset < 0 || offset >= buffer.limit()) {
+            throw new ZipException("Offset out of bounds: " + offset);
+        }
+
+        return (int) offset;
+    }
+
+    private static int checkedSize(long size) throws ZipException {
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new ZipException("Entry too large: " + size);
+        }
+
+        return (int) size;
+    }
+
+    public Set<String> getClassNames() {
+        return entries.keySet();
+    }
+
+    @Nullable
+    @Override
+    public ClassNode get(String name) {
+        byte[] bytes = getBytes(name);
+        return bytes != null ? AsmUtil.bytesToNode(bytes) : null;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getBytes(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Class provider is closed");
+            }
+
+            return read(entry);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Unmaps the JAR file once the reads in progress are done. Classes can't be loaded afterwards.
+     */
+    @Override
+    public void close() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                unmap(buffer);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Releases the mapping right away instead of when the buffer is garbage collected, which keeps
+     * the file locked on some platforms until then. If the JDK doesn't allow it, the buffer is left
+     * for the garbage collector.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            // Java 8
+            try {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object bufferCleaner = cleaner.invoke(buffer);
+                if (bufferCleaner != null) {
+                    bufferCleaner.getClass().getMethod("clean").invoke(bufferCleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+    }
+
+    private byte[] read(Entry entry) throws IOException {
+        if (buffer.getInt(entry.localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local file header at " + entry.localHeaderOffset);
+        }
+
+        // the local header's name and extra field may differ from the central directory's
+        int nameLength = buffer.getShort(entry.localHeaderOffset + 26) & 0xFFFF;
+        int extraLength = buffer.getShort(entry.localHeaderOffset + 28) & 0xFFFF;
+        int dataOffset = entry.localHeaderOffset + 30 + nameLength + extraLength;
+
+        if (dataOffset + (long) entry.compressedSize > buffer.limit()) {
+            throw new ZipException("Entry data out of bounds at " + dataOffset);
+        }
+
+        ByteBuffer data = buffer.duplicate();
+        data.position(dataOffset);
+
+        switch (entry.method) {
+            case STORED: {
+                byte[] bytes = new byte[entry.size];
+                data.get(bytes);
+                return bytes;
+            }
+            case DEFLATED: {
+                // raw inflation may need one byte of padding after the compressed data
+                byte[] input = new byte[entry.compressedSize + 1];
+                data.get(input, 0, entry.compressedSize);
+                return inflate(input, entry.size);
+            }
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method);
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int size) throws ZipException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+
+            byte[] output = new byte[size];
+            int length = 0;
+            while (length < size) {
+                int inflated = inflater.inflate(output, length, size - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated deflated entry");
+                }
+
+                length += inflated;
+            }
+
+            return output;
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Entry {
+        final int method;
+        final int localHeaderOffset;
+        final int compressedSize;
+        final int size;
+
+        Entry(int method, int localHeaderOffset, int compressedSize, int size) {
+            this.method = method;
+            this.localHeaderOffset = localHeaderOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package cuchaz.enigma.classprovider;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import cuchaz.enigma.Enigma;
 import cuchaz.enigma.analysis.index.JarIndex;
 import cuchaz.enigma.bytecode.translators.LocalVariableFixVisitor;
 import cuchaz.enigma.bytecode.translators.SourceFixVisitor;
-import cuchaz.enigma.classprovider.ClassProvider;
+import cuchaz.enigma.utils.AsmUtil;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -13,6 +15,8 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Wraps a ClassProvider to apply fixes to the following problems introduced by the obfuscator,
@@ -28,14 +32,27 @@ import javax.annotation.Nullable;
  * </ul>
  * <p>
  * These fixes are only applied to classes that were indexed by the JarIndex provided, and not library classes.
+ * <p>
+ * The fixed class files returned by {@link #getBytes(String)} are cached up to the byte budget of the
+ * given {@link ClassCacheParameters}, so decompilers that load a class repeatedly only pay for the fixes once.
  */
 public class ObfuscationFixClassProvider implements ClassProvider {
     private final ClassProvider classProvider;
     private final JarIndex jarIndex;
+    private final Cache<String, Optional<byte[]>> fixedBytes;
 
     public ObfuscationFixClassProvider(ClassProvider classProvider, JarIndex jarIndex) {
+        this(classProvider, jarIndex, ClassCacheParameters.DEFAULT);
+    }
+
+    public ObfuscationFixClassProvider(ClassProvider classProvider, JarIndex jarIndex, ClassCacheParameters parameters) {
         this.classProvider = classProvider;
         this.jarIndex = jarIndex;
+        this.fixedBytes = CacheBuilder.newBuilder()
+                .maximumWeight(parameters.getMaximumWeight())
+                .weigher((String name, Optional<byte[]> bytes) -> bytes.map(b -> b.length).orElse(0))
+                .concurrencyLevel(parameters.getConcurrencyLevel())
+                .build();
     }
 
     @Override
@@ -47,6 +64,27 @@ public class ObfuscationFixClassProvider implements ClassProvider {
             return node;
         }
 
+        return fix(node);
+    }
+
+    @Override
+    @Nullable
+    public byte[] getBytes(String name) {
+        if (!jarIndex.isIndexed(name)) {
+            return classProvider.getBytes(name);
+        }
+
+        try {
+            return fixedBytes.get(name, () -> {
+                ClassNode node = classProvider.get(name);
+                return Optional.ofNullable(node != null ? AsmUtil.nodeToBytes(fix(node)) : null);
+            }).orElse(null);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ClassNode fix(ClassNode node) {
         ClassNode fixedNode = new ClassNode();
         ClassVisitor visitor = fixedNode;
         visitor = new LocalVariableFixVisitor(Enigma.ASM_VERSION, visitor);
@@ -0,0 +1,92 @@
+package cuchaz.enigma.classprovider;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import cuchaz.enigma.Enigma;
+import cuchaz.enigma.bytecode.translators.TranslationClassVisitor;
+import cuchaz.enigma.translation.Translator;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.utils.AsmUtil;
+import org.objectweb.asm.tree.ClassNode;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Provides the translated versions of a set of obfuscated classes, looked up by their translated
+ * names. Classes are translated on demand, so only the ones that are actually requested are held
+ * in memory; the translated class files are cached up to the byte budget of the given
+ * {@link ClassCacheParameters}.
+ */
+public class TranslatingClassProvider implements ClassProvider {
+    private final ClassProvider classProvider;
+    private final Translator translator;
+    private final ImmutableMap<String, ClassEntry> obfEntries;
+    private final Cache<String, Optional<byte[]>> translatedBytes;
+
+    /**
+     * @param classProvider the provider of the obfuscated classes
+     * @param translator    the translator to apply to the classes
+     * @param classes       the obfuscated classes to provide
+     * @param parameters    the settings of the translated class file cache
+     */
+    public TranslatingClassProvider(ClassProvider classProvider, Translator translator, Collection<ClassEntry> classes, ClassCacheParameters parameters) {
+        this.classProvider = classProvider;
+        this.translator = translator;
+
+        ImmutableMap.Builder<String, ClassEntry> obfEntries = ImmutableMap.builder();
+        for (ClassEntry entry : classes) {
+            obfEntries.put(translator.translate(entry).getFullName(), entry);
+        }
+        this.obfEntries = obfEntries.build();
+
+        this.translatedBytes = CacheBuilder.newBuilder()
+                .maximumWeight(parameters.getMaximumWeight())
+                .weigher((String name, Optional<byte[]> bytes) -> bytes.map(b -> b.length).orElse(0))
+                .concurrencyLevel(parameters.getConcurrencyLevel())
+                .build();
+    }
+
+    /**
+     * @return the translated names of all provided classes
+     */
+    public Set<String> getClassNames() {
+        return obfEntries.keySet();
+    }
+
+    @Nullable
+    @Override
+    public ClassNode get(String name) {
+        ClassEntry obfEntry = obfEntries.get(name);
+        if (obfEntry == null) {
+            return null;
+        }
+
+        ClassNode node = classProvider.get(obfEntry.getFullName());
+        if (node == null) {
+            return null;
+        }
+
+        ClassNode translatedNode = new ClassNode();
+        node.accept(new TranslationClassVisitor(translator, Enigma.ASM_VERSION, translatedNode));
+        return translatedNode;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getBytes(String name) {
+        if (!obfEntries.containsKey(name)) {
+            return null;
+        }
+
+        try {
+            return translatedBytes.get(name, () -> Optional.ofNullable(get(name)).map(AsmUtil::nodeToBytes)).orElse(null);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
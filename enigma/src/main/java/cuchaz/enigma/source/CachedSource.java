@@ -0,0 +1,83 @@
+package cuchaz.enigma.source;
+
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.mapping.tree.EntryTreeNode;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The uncommented source of a class as stored in a {@link SourceCache}.
+ * <p>
+ * The cache only has the text and the index, not the syntax tree javadocs are inserted into, so
+ * the class is decompiled again the first time any of its mappings has javadocs. That source is
+ * kept with this one, which class handles hold on to, so later javadoc edits reuse it. Each call to
+ * {@link #index()} reads a fresh index, since callers resolve its references in place.
+ */
+final class CachedSource implements Source {
+    private final ClassEntry entry;
+    private final String string;
+    private final byte[] index;
+    private final Decompiler decompiler;
+    @Nullable
+    private Source decompiled;
+
+    CachedSource(ClassEntry entry, String string, byte[] index, Decompiler decompiler) {
+        this.entry = entry;
+        this.string = string;
+        this.index = index;
+        this.decompiler = decompiler;
+    }
+
+    @Override
+    public String asString() {
+        return string;
+    }
+
+    @Override
+    public Source withJavadocs(EntryRemapper remapper) {
+        if (!hasJavadocs(remapper)) {
+            return this;
+        }
+
+        return getDecompiled().withJavadocs(remapper);
+    }
+
+    private synchronized Source getDecompiled() {
+        if (decompiled == null) {
+            decompiled = decompiler.getSource(entry.getFullName(), null);
+        }
+
+        return decompiled;
+    }
+
+    private boolean hasJavadocs(EntryRemapper remapper) {
+        EntryTreeNode<EntryMapping> node = remapper.getObfToDeobf().findNode(entry);
+        if (node == null) {
+            return false;
+        }
+
+        for (EntryTreeNode<EntryMapping> child : node.getNodesRecursively()) {
+            EntryMapping mapping = child.getValue();
+            if (mapping != null && mapping.getJavadoc() != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public SourceIndex index() {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index))) {
+            return SourceIndexSerializer.read(string, in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
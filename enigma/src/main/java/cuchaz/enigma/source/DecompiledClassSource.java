@@ -4,6 +4,10 @@ import java.util.*;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+
 import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.EnigmaServices;
 import cuchaz.enigma.analysis.EntryReference;
@@ -12,6 +16,7 @@ import cuchaz.enigma.translation.LocalNameGenerator;
 import cuchaz.enigma.translation.TranslateResult;
 import cuchaz.enigma.translation.Translator;
 import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.mapping.EntryResolver;
 import cuchaz.enigma.translation.mapping.ResolutionStrategy;
 import cuchaz.enigma.translation.representation.TypeDescriptor;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
@@ -26,15 +31,33 @@ public class DecompiledClassSource {
 
 	private final TokenStore highlightedTokens;
 
-	private DecompiledClassSource(ClassEntry classEntry, SourceIndex obfuscatedIndex, SourceIndex remappedIndex, TokenStore highlightedTokens) {
+	/**
+	 * The reference tokens of the obfuscated source in order, and what each of them became in the
+	 * remapped source. Empty until the source is remapped.
+	 */
+	private final List<Token> tokens;
+	private final List<Token> remappedTokens;
+	private final List<RenamableTokenType> tokenTypes;
+
+	/**
+	 * The positions in {@link #tokens} of the tokens whose remapped name depends on the mapping of
+	 * an obfuscated entry, keyed by that entry as it is stored in the mappings.
+	 */
+	private final ListMultimap<Entry<?>, Integer> tokensByEntry;
+
+	private DecompiledClassSource(ClassEntry classEntry, SourceIndex obfuscatedIndex, SourceIndex remappedIndex, TokenStore highlightedTokens, List<Token> tokens, List<Token> remappedTokens, List<RenamableTokenType> tokenTypes, ListMultimap<Entry<?>, Integer> tokensByEntry) {
 		this.classEntry = classEntry;
 		this.obfuscatedIndex = obfuscatedIndex;
 		this.remappedIndex = remappedIndex;
 		this.highlightedTokens = highlightedTokens;
+		this.tokens = tokens;
+		this.remappedTokens = remappedTokens;
+		this.tokenTypes = tokenTypes;
+		this.tokensByEntry = tokensByEntry;
 	}
 
 	public DecompiledClassSource(ClassEntry classEntry, SourceIndex index) {
-		this(classEntry, index, index, TokenStore.empty());
+		this(classEntry, index, index, TokenStore.empty(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), ArrayListMultimap.create());
 	}
 
 	public static DecompiledClassSource text(ClassEntry classEntry, String text) {
@@ -42,15 +65,165 @@ public class DecompiledClassSource {
 	}
 
 	public DecompiledClassSource remapSource(EnigmaProject project, Translator translator) {
-		SourceRemapper remapper = new SourceRemapper(obfuscatedIndex.getSource(), obfuscatedIndex.referenceTokens());
+		List<Token> tokens = ImmutableList.copyOf(obfuscatedIndex.referenceTokens());
+		Map<Token, RenamableTokenType> types = new HashMap<>();
+		SourceRemapper remapper = new SourceRemapper(obfuscatedIndex.getSource(), tokens);
 
 		TokenStore tokenStore = TokenStore.create(this.obfuscatedIndex);
-		SourceRemapper.Result remapResult = remapper.remap((token, movedToken) -> remapToken(tokenStore, project, token, movedToken, translator));
+		SourceRemapper.Result remapResult = remapper.remap((token, movedToken) -> {
+			RemappedName name = remapToken(project, token, translator);
+			if (name.type != null) {
+				types.put(token, name.type);
+				tokenStore.add(name.type, movedToken);
+			}
+
+			return name.name;
+		});
 		SourceIndex remappedIndex = obfuscatedIndex.remapTo(remapResult);
-		return new DecompiledClassSource(this.classEntry, this.obfuscatedIndex, remappedIndex, tokenStore);
+
+		List<Token> remappedTokens = new ArrayList<>(tokens.size());
+		List<RenamableTokenType> tokenTypes = new ArrayList<>(tokens.size());
+		for (Token token : tokens) {
+			remappedTokens.add(remapResult.getRemappedToken(token));
+			tokenTypes.add(types.get(token));
+		}
+
+		return new DecompiledClassSource(this.classEntry, this.obfuscatedIndex, remappedIndex, tokenStore, tokens, remappedTokens, tokenTypes, indexTokens(project, tokens));
+	}
+
+	/**
+	 * Updates the remapped source after the mappings of some entries have changed. Only the tokens
+	 * that depend on those entries are remapped again, and the rest of the source is only moved.
+	 *
+	 * @param entries the obfuscated entries whose mappings have changed, as they are stored in the mappings
+	 * @return the updated source, or this source if it doesn't refer to any of the entries
+	 */
+	public DecompiledClassSource remapEntries(EnigmaProject project, Translator translator, Collection<? extends Entry<?>> entries) {
+		if (tokens.isEmpty()) {
+			return remapSource(project, translator);
+		}
+
+		BitSet affected = new BitSet(tokens.size());
+		for (Entry<?> entry : entries) {
+			for (int i : tokensByEntry.get(entry)) {
+				affected.set(i);
+			}
+		}
+
+		if (affected.isEmpty()) {
+			return this;
+		}
+
+		String source = remappedIndex.getSource();
+		StringBuilder remappedSource = new StringBuilder(source.length());
+		TokenStore tokenStore = TokenStore.create(this.obfuscatedIndex);
+		List<Token> remappedTokens = new ArrayList<>(tokens.size());
+		List<RenamableTokenType> tokenTypes = new ArrayList<>(tokens.size());
+		Map<Token, Token> movedTokens = new HashMap<>();
+
+		int copied = 0;
+		int offset = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			Token token = tokens.get(i);
+			Token remappedToken = this.remappedTokens.get(i);
+			RenamableTokenType type = this.tokenTypes.get(i);
+
+			if (affected.get(i)) {
+				RemappedName name = remapToken(project, token, translator);
+				String text = name.name != null ? name.name : token.text;
+				remappedSource.append(source, copied, remappedToken.start).append(text);
+				copied = remappedToken.end;
+
+				int start = remappedToken.start + offset;
+				offset += text.length() - remappedToken.length();
+				remappedToken = new Token(start, start + text.length(), text);
+				type = name.type;
+			} else if (offset != 0) {
+				remappedToken = remappedToken.move(offset);
+			}
+
+			remappedTokens.add(remappedToken);
+			tokenTypes.add(type);
+			if (type != null) {
+				tokenStore.add(type, remappedToken);
+			}
+
+			if (!token.equals(remappedToken)) {
+				movedTokens.put(token, remappedToken);
+			}
+		}
+
+		remappedSource.append(source, copied, source.length());
+
+		SourceIndex remappedIndex = obfuscatedIndex.remapTo(new SourceRemapper.Result(remappedSource.toString(), movedTokens));
+		return new DecompiledClassSource(this.classEntry, this.obfuscatedIndex, remappedIndex, tokenStore, tokens, remappedTokens, tokenTypes, tokensByEntry);
+	}
+
+	/**
+	 * @param entries obfuscated entries, as they are stored in the mappings
+	 * @return whether the remapped source would change if the mappings of any of the entries changed
+	 */
+	public boolean dependsOn(Collection<? extends Entry<?>> entries) {
+		if (tokens.isEmpty()) {
+			return true;
+		}
+
+		for (Entry<?> entry : entries) {
+			if (tokensByEntry.containsKey(entry)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private ListMultimap<Entry<?>, Integer> indexTokens(EnigmaProject project, List<Token> tokens) {
+		EntryResolver resolver = project.getMapper().getObfResolver();
+		Map<Entry<?>, Set<Entry<?>>> dependencies = new HashMap<>();
+
+		ListMultimap<Entry<?>, Integer> tokensByEntry = ArrayListMultimap.create();
+		for (int i = 0; i < tokens.size(); i++) {
+			Entry<?> entry = obfuscatedIndex.getReference(tokens.get(i)).getNameableEntry();
+			for (Entry<?> dependency : dependencies.computeIfAbsent(entry, e -> getDependencies(resolver, e))) {
+				tokensByEntry.put(dependency, i);
+			}
+		}
+
+		return tokensByEntry;
 	}
 
-	private String remapToken(TokenStore target, EnigmaProject project, Token token, Token movedToken, Translator translator) {
+	/**
+	 * Collects the entries whose mappings the remapped name of an entry depends on: the entries it
+	 * resolves to, the outer classes of a class, and the types a default local variable name is
+	 * generated from.
+	 */
+	private static Set<Entry<?>> getDependencies(EntryResolver resolver, Entry<?> entry) {
+		Set<Entry<?>> dependencies = new HashSet<>();
+		dependencies.add(entry);
+		dependencies.addAll(resolver.resolveEntry(entry, ResolutionStrategy.RESOLVE_ROOT));
+
+		if (entry instanceof ClassEntry) {
+			for (ClassEntry outerClass = ((ClassEntry) entry).getOuterClass(); outerClass != null; outerClass = outerClass.getOuterClass()) {
+				dependencies.add(outerClass);
+			}
+		} else if (entry instanceof LocalVariableDefEntry) {
+			LocalVariableDefEntry localVariable = (LocalVariableDefEntry) entry;
+			addType(dependencies, localVariable.getDesc());
+			if (localVariable.isArgument()) {
+				localVariable.getParent().getDesc().getArgumentDescs().forEach(argument -> addType(dependencies, argument));
+			}
+		}
+
+		return dependencies;
+	}
+
+	private static void addType(Set<Entry<?>> dependencies, TypeDescriptor type) {
+		if (type.isType()) {
+			dependencies.add(type.getTypeEntry());
+		}
+	}
+
+	private RemappedName remapToken(EnigmaProject project, Token token, Translator translator) {
 		EntryReference<Entry<?>, Entry<?>> reference = obfuscatedIndex.getReference(token);
 
 		Entry<?> entry = reference.getNameableEntry();
@@ -58,25 +231,18 @@ public class DecompiledClassSource {
 
 		if (project.isRenamable(reference)) {
 			if (!translatedEntry.isObfuscated()) {
-				target.add(translatedEntry.getType(), movedToken);
-				return translatedEntry.getValue().getSourceRemapName();
+				return new RemappedName(translatedEntry.getValue().getSourceRemapName(), translatedEntry.getType());
 			} else {
 				Optional<String> proposedName = proposeName(project, entry);
 				if (proposedName.isPresent()) {
-					target.add(RenamableTokenType.PROPOSED, movedToken);
-					return proposedName.get();
+					return new RemappedName(proposedName.get(), RenamableTokenType.PROPOSED);
 				}
 
-				target.add(RenamableTokenType.OBFUSCATED, movedToken);
+				return new RemappedName(generateDefaultName(translatedEntry.getValue()), RenamableTokenType.OBFUSCATED);
 			}
 		}
 
-		String defaultName = generateDefaultName(translatedEntry.getValue());
-		if (defaultName != null) {
-			return defaultName;
-		}
-
-		return null;
+		return new RemappedName(generateDefaultName(translatedEntry.getValue()), null);
 	}
 
 	private Optional<String> proposeName(EnigmaProject project, Entry<?> entry) {
@@ -156,4 +322,22 @@ public class DecompiledClassSource {
 	public String toString() {
 		return remappedIndex.getSource();
 	}
+
+	private static final class RemappedName {
+		/**
+		 * The name the token is remapped to, or {@code null} to keep its name.
+		 */
+		@Nullable
+		private final String name;
+		/**
+		 * The type of the token, or {@code null} if it isn't renamable.
+		 */
+		@Nullable
+		private final RenamableTokenType type;
+
+		RemappedName(@Nullable String name, @Nullable RenamableTokenType type) {
+			this.name = name;
+			this.type = type;
+		}
+	}
 }
@@ -3,7 +3,23 @@ package cuchaz.enigma.source;
 import cuchaz.enigma.source.cfr.CfrDecompiler;
 import cuchaz.enigma.source.procyon.ProcyonDecompiler;
 
+import javax.annotation.Nullable;
+
 public class Decompilers {
     public static final DecompilerService PROCYON = ProcyonDecompiler::new;
     public static final DecompilerService CFR = CfrDecompiler::new;
+
+    /**
+     * @return a stable name for one of the built-in decompilers, or {@code null} for any other service
+     */
+    @Nullable
+    public static String getId(DecompilerService service) {
+        if (service == PROCYON) {
+            return "procyon";
+        } else if (service == CFR) {
+            return "cfr";
+        }
+
+        return null;
+    }
 }
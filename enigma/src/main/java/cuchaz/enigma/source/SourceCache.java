@@ -0,0 +1,274 @@
+package cuchaz.enigma.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import cuchaz.enigma.Enigma;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.utils.Utils;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the uncommented sources of decompiled classes, so that reopening a class doesn't decompile
+ * it again.
+ * <p>
+ * Sources are held in memory up to a number of bytes, least recently used first out, and are also
+ * written to a directory, if there is one, where they survive restarts. A source is only valid for
+ * the jar, library classpath, decompiler and settings it was produced with, which are all part of
+ * its {@link Key}. Entries on disk written by another version of Enigma are ignored, since its
+ * decompilers may produce different output.
+ * <p>
+ * The directory holds one subdirectory per jar. It is pruned when a jar is opened, see
+ * {@link #open(byte[], byte[])}.
+ */
+public final class SourceCache {
+    public static final long DEFAULT_MAXIMUM_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_MAXIMUM_DISK_BYTES = 512L * 1024 * 1024;
+
+    private static final int MAGIC = 0x454E5343; // "ENSC"
+    private static final int VERSION = 1;
+
+    private final Cache<Key, Record> memory;
+    @Nullable
+    private final Path directory;
+    private final long maximumDiskBytes;
+
+    public SourceCache(long maximumBytes, @Nullable Path directory) {
+        this(maximumBytes, directory, DEFAULT_MAXIMUM_DISK_BYTES);
+    }
+
+    public SourceCache(long maximumBytes, @Nullable Path directory, long maximumDiskBytes) {
+        this.memory = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((Key key, Record record) -> record.weight())
+                .build();
+        this.directory = directory;
+        this.maximumDiskBytes = maximumDiskBytes;
+    }
+
+    /**
+     * Prunes the directory for a jar that is being opened. Sources of the jar that were produced
+     * against another classpath are deleted, since they can never be read again. Then the
+     * directories of other jars are deleted, least recently opened first, until the directory
+     * fits in its maximum size; the sources of the opened jar are never deleted for space.
+     */
+    public void open(byte[] jarChecksum, byte[] classpathChecksum) {
+        if (directory == null) {
+            return;
+        }
+
+        Path jarDirectory = directory.resolve(hex(jarChecksum));
+        try {
+            Files.createDirectories(jarDirectory);
+            for (Path child : list(jarDirectory)) {
+                if (!child.getFileName().toString().equals(hex(classpathChecksum))) {
+                    Utils.delete(child);
+                }
+            }
+
+            Files.setLastModifiedTime(jarDirectory, FileTime.fromMillis(System.currentTimeMillis()));
+            prune(jarDirectory);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed to prune source cache " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void prune(Path keep) throws IOException {
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> opened = new HashMap<>();
+        long totalSize = 0;
+        for (Path jarDirectory : list(directory)) {
+            long size = size(jarDirectory);
+            sizes.put(jarDirectory, size);
+            opened.put(jarDirectory, Files.getLastModifiedTime(jarDirectory));
+            totalSize += size;
+        }
+
+        List<Path> candidates = new ArrayList<>(sizes.keySet());
+        candidates.remove(keep);
+        candidates.sort(Comparator.comparing(opened::get));
+        for (Path jarDirectory : candidates) {
+            if (totalSize <= maximumDiskBytes) {
+                break;
+            }
+
+            Utils.delete(jarDirectory);
+            totalSize -= sizes.get(jarDirectory);
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> children = Files.list(directory)) {
+            return children.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * @param decompiler the decompiler to fall back to when javadocs have to be inserted into the source
+     * @return the cached source, or {@code null} if it is neither in memory nor on disk
+     */
+    @Nullable
+    public Source get(Key key, Decompiler decompiler) {
+        Record record = memory.getIfPresent(key);
+        if (record == null && directory != null) {
+            record = read(key);
+            if (record != null) {
+                memory.put(key, record);
+            }
+        }
+
+        return record != null ? new CachedSource(new ClassEntry(key.className), record.text, record.index, decompiler) : null;
+    }
+
+    /**
+     * @return whether there is a source for the key, without reading it; a source on disk may still
+     * turn out to be unusable when it is read
+     */
+    public boolean contains(Key key) {
+        return memory.getIfPresent(key) != null || (directory != null && Files.isRegularFile(getPath(key)));
+    }
+
+    public void put(Key key, Source source) {
+        Record record;
+        try {
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(index)) {
+                SourceIndexSerializer.write(source.index(), out);
+            }
+            record = new Record(source.asString(), index.toByteArray());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Failed to cache the source of " + key.className + ": " + e.getMessage());
+            return;
+        }
+
+        memory.put(key, record);
+        if (directory != null) {
+            write(key, record);
+        }
+    }
+
+    public void invalidateAll() {
+        memory.invalidateAll();
+    }
+
+    private Path getPath(Key key) {
+        String decompiler = key.decompilerId + "-" + (key.settings.removeImports ? "i" : "") + (key.settings.removeVariableFinal ? "f" : "");
+        return directory.resolve(hex(key.jarChecksum)).resolve(hex(key.classpathChecksum)).resolve(decompiler).resolve(key.className + ".src");
+    }
+
+    private static String hex(byte[] checksum) {
+        return BaseEncoding.base16().lowerCase().encode(checksum);
+    }
+
+    @Nullable
+    private Record read(Key key) {
+        Path path = getPath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !Enigma.VERSION.equals(SourceIndexSerializer.readString(in))
+                    || !key.className.equals(SourceIndexSerializer.readString(in))) {
+                return null;
+            }
+
+            String text = SourceIndexSerializer.readString(in);
+            byte[] index = new byte[in.readInt()];
+            in.readFully(index);
+            return new Record(text, index);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read cached source " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the record to a temporary file first and then moves it in place, so that concurrent
+     * readers never observe a partially written source.
+     */
+    private void write(Key key, Record record) {
+        Path path = getPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    SourceIndexSerializer.writeString(out, Enigma.VERSION);
+                    SourceIndexSerializer.writeString(out, key.className);
+                    SourceIndexSerializer.writeString(out, record.text);
+                    out.writeInt(record.index.length);
+                    out.write(record.index);
+                }
+
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write cached source " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Record {
+        private final String text;
+        private final byte[] index;
+
+        Record(String text, byte[] index) {
+            this.text = text;
+            this.index = index;
+        }
+
+        int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, 2L * text.length() + index.length);
+        }
+    }
+
+    public static final class Key {
+        private final byte[] jarChecksum;
+        private final byte[] classpathChecksum;
+        private final String className;
+        private final String decompilerId;
+        private final SourceSettings settings;
+
+        public Key(byte[] jarChecksum, byte[] classpathChecksum, String className, String decompilerId, SourceSettings settings) {
+            this.jarChecksum = jarChecksum;
+            this.classpathChecksum = classpathChecksum;
+            this.className = className;
+            this.decompilerId = decompilerId;
+            this.settings = settings;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Arrays.equals(jarChecksum, key.jarChecksum) && Arrays.equals(classpathChecksum, key.classpathChecksum)
+                    && className.equals(key.className) && decompilerId.equals(key.decompilerId) && settings.equals(key.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(jarChecksum), Arrays.hashCode(classpathChecksum), className, decompilerId, settings);
+        }
+    }
+}
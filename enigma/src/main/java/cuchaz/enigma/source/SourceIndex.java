@@ -145,6 +145,18 @@ public class SourceIndex {
         }
     }
 
+    Map<Entry<?>, Token> getDeclarationTokens() {
+        return declarationToToken;
+    }
+
+    Map<Token, EntryReference<Entry<?>, Entry<?>>> getTokenReferences() {
+        return tokenToReference;
+    }
+
+    Multimap<EntryReference<Entry<?>, Entry<?>>, Token> getReferenceTokens() {
+        return referenceToTokens;
+    }
+
     public SourceIndex remapTo(SourceRemapper.Result result) {
         SourceIndex remapped = new SourceIndex(result.getSource());
 
@@ -0,0 +1,335 @@
+package cuchaz.enigma.source;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.Signature;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.*;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes a {@link SourceIndex} to a stream and reads it back. The source text itself is not
+ * written, it has to be passed back in when reading.
+ * <p>
+ * Entries and tokens are written the first time they are used and referred to by number after
+ * that, so tokens that are shared between the maps of the index are shared again when it is read.
+ * Entries keep their definition details, but not their javadocs.
+ */
+final class SourceIndexSerializer {
+    private static final int NULL = -1;
+    private static final int NEW = -2;
+
+    private static final byte CLASS = 0;
+    private static final byte CLASS_DEF = 1;
+    private static final byte FIELD = 2;
+    private static final byte FIELD_DEF = 3;
+    private static final byte METHOD = 4;
+    private static final byte METHOD_DEF = 5;
+    private static final byte LOCAL_VARIABLE = 6;
+    private static final byte LOCAL_VARIABLE_DEF = 7;
+
+    private SourceIndexSerializer() {
+    }
+
+    static void write(SourceIndex index, DataOutput out) throws IOException {
+        Writer writer = new Writer(out);
+
+        Map<Entry<?>, Token> declarations = index.getDeclarationTokens();
+        out.writeInt(declarations.size());
+        for (Map.Entry<Entry<?>, Token> declaration : declarations.entrySet()) {
+            writer.writeEntry(declaration.getKey());
+            writer.writeToken(declaration.getValue());
+        }
+
+        Map<Token, EntryReference<Entry<?>, Entry<?>>> tokenReferences = index.getTokenReferences();
+        out.writeInt(tokenReferences.size());
+        for (Map.Entry<Token, EntryReference<Entry<?>, Entry<?>>> reference : tokenReferences.entrySet()) {
+            writer.writeToken(reference.getKey());
+            writer.writeReference(reference.getValue());
+        }
+
+        Collection<Map.Entry<EntryReference<Entry<?>, Entry<?>>, Token>> referenceTokens = index.getReferenceTokens().entries();
+        out.writeInt(referenceTokens.size());
+        for (Map.Entry<EntryReference<Entry<?>, Entry<?>>, Token> reference : referenceTokens) {
+            writer.writeReference(reference.getKey());
+            writer.writeToken(reference.getValue());
+        }
+    }
+
+    static SourceIndex read(String source, DataInput in) throws IOException {
+        Reader reader = new Reader(in);
+        SourceIndex index = new SourceIndex(source);
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Entry<?> entry = reader.readEntry();
+            index.getDeclarationTokens().put(entry, reader.readToken());
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Token token = reader.readToken();
+            index.getTokenReferences().put(token, reader.readReference());
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            EntryReference<Entry<?>, Entry<?>> reference = reader.readReference();
+            index.getReferenceTokens().put(reference, reader.readToken());
+        }
+
+        return index;
+    }
+
+    static void writeString(DataOutput out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Writer {
+        private final DataOutput out;
+        // entries of different types may be equal to each other, so they are numbered per type
+        private final Map<Class<?>, Map<Entry<?>, Integer>> entries = new HashMap<>();
+        private final Map<Token, Integer> tokens = new IdentityHashMap<>();
+        private int entryCount;
+
+        Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeToken(Token token) throws IOException {
+            Integer id = tokens.get(token);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+
+            out.writeInt(NEW);
+            out.writeInt(token.start);
+            out.writeInt(token.end);
+            writeString(out, token.text);
+            tokens.put(token, tokens.size());
+        }
+
+        void writeReference(EntryReference<Entry<?>, Entry<?>> reference) throws IOException {
+            writeEntry(reference.entry);
+            writeEntry(reference.context);
+            out.writeBoolean(reference.isNamed());
+            out.writeBoolean(reference.isDeclaration());
+        }
+
+        void writeEntry(@Nullable Entry<?> entry) throws IOException {
+            if (entry == null) {
+                out.writeInt(NULL);
+                return;
+            }
+
+            Map<Entry<?>, Integer> ids = entries.computeIfAbsent(entry.getClass(), c -> new HashMap<>());
+            Integer id = ids.get(entry);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+
+            // the entries a record refers to are written inside of it, before it gets its number
+            out.writeInt(NEW);
+            if (entry.getClass() == ClassEntry.class) {
+                out.writeByte(CLASS);
+                writeEntry(entry.getParent());
+                writeString(out, entry.getName());
+            } else if (entry.getClass() == ClassDefEntry.class) {
+                ClassDefEntry classDef = (ClassDefEntry) entry;
+                out.writeByte(CLASS_DEF);
+                writeEntry(classDef.getParent());
+                writeString(out, classDef.getName());
+                writeString(out, classDef.getSignature().getSignature());
+                out.writeInt(classDef.getAccess().getFlags());
+                writeEntry(classDef.getSuperClass());
+                out.writeInt(classDef.getInterfaces().length);
+                for (ClassEntry iface : classDef.getInterfaces()) {
+                    writeEntry(iface);
+                }
+            } else if (entry.getClass() == FieldEntry.class) {
+                FieldEntry field = (FieldEntry) entry;
+                out.writeByte(FIELD);
+                writeEntry(field.getParent());
+                writeString(out, field.getName());
+                writeString(out, field.getDesc().toString());
+            } else if (entry.getClass() == FieldDefEntry.class) {
+                FieldDefEntry fieldDef = (FieldDefEntry) entry;
+                out.writeByte(FIELD_DEF);
+                writeEntry(fieldDef.getParent());
+                writeString(out, fieldDef.getName());
+                writeString(out, fieldDef.getDesc().toString());
+                writeString(out, fieldDef.getSignature().getSignature());
+                out.writeInt(fieldDef.getAccess().getFlags());
+            } else if (entry.getClass() == MethodEntry.class) {
+                MethodEntry method = (MethodEntry) entry;
+                out.writeByte(METHOD);
+                writeEntry(method.getParent());
+                writeString(out, method.getName());
+                writeString(out, method.getDesc().toString());
+            } else if (entry.getClass() == MethodDefEntry.class) {
+                MethodDefEntry methodDef = (MethodDefEntry) entry;
+                out.writeByte(METHOD_DEF);
+                writeEntry(methodDef.getParent());
+                writeString(out, methodDef.getName());
+                writeString(out, methodDef.getDesc().toString());
+                writeString(out, methodDef.getSignature().getSignature());
+                out.writeInt(methodDef.getAccess().getFlags());
+            } else if (entry.getClass() == LocalVariableEntry.class) {
+                LocalVariableEntry variable = (LocalVariableEntry) entry;
+                out.writeByte(LOCAL_VARIABLE);
+                writeEntry(variable.getParent());
+                writeString(out, variable.getName());
+                out.writeInt(variable.getIndex());
+                out.writeBoolean(variable.isArgument());
+            } else if (entry.getClass() == LocalVariableDefEntry.class) {
+                LocalVariableDefEntry variableDef = (LocalVariableDefEntry) entry;
+                out.writeByte(LOCAL_VARIABLE_DEF);
+                writeEntry(variableDef.getParent());
+                writeString(out, variableDef.getName());
+                out.writeInt(variableDef.getIndex());
+                out.writeBoolean(variableDef.isArgument());
+                writeString(out, variableDef.getDesc().toString());
+            } else {
+                throw new IllegalArgumentException("Cannot write entry of type " + entry.getClass().getName() + ": " + entry);
+            }
+
+            ids.put(entry, entryCount++);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInput in;
+        private final List<Entry<?>> entries = new ArrayList<>();
+        private final List<Token> tokens = new ArrayList<>();
+
+        Reader(DataInput in) {
+            this.in = in;
+        }
+
+        Token readToken() throws IOException {
+            int id = in.readInt();
+            if (id != NEW) {
+                return tokens.get(id);
+            }
+
+            int start = in.readInt();
+            int end = in.readInt();
+            Token token = new Token(start, end, readString(in));
+            tokens.add(token);
+            return token;
+        }
+
+        EntryReference<Entry<?>, Entry<?>> readReference() throws IOException {
+            Entry<?> entry = readEntry();
+            Entry<?> context = readEntry();
+            boolean named = in.readBoolean();
+            boolean declaration = in.readBoolean();
+
+            String sourceName = named ? entry.getName() : null;
+            return declaration ? EntryReference.declaration(entry, sourceName) : new EntryReference<>(entry, sourceName, context);
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        <E extends Entry<?>> E readEntry() throws IOException {
+            int id = in.readInt();
+            if (id == NULL) {
+                return null;
+            } else if (id != NEW) {
+                return (E) entries.get(id);
+            }
+
+            Entry<?> entry = readEntryRecord();
+            entries.add(entry);
+            return (E) entry;
+        }
+
+        private Entry<?> readEntryRecord() throws IOException {
+            byte kind = in.readByte();
+
+            switch (kind) {
+                case CLASS: {
+                    ClassEntry parent = readEntry();
+                    return new ClassEntry(parent, readString(in));
+                }
+                case CLASS_DEF: {
+                    ClassEntry parent = readEntry();
+                    String name = readString(in);
+                    Signature signature = Signature.createSignature(readString(in));
+                    AccessFlags access = new AccessFlags(in.readInt());
+                    ClassEntry superClass = readEntry();
+                    ClassEntry[] interfaces = new ClassEntry[in.readInt()];
+                    for (int i = 0; i < interfaces.length; i++) {
+                        interfaces[i] = readEntry();
+                    }
+
+                    return new ClassDefEntry(parent, name, signature, access, superClass, interfaces);
+                }
+                case FIELD: {
+                    ClassEntry parent = readEntry();
+                    String name = readString(in);
+                    return new FieldEntry(parent, name, new TypeDescriptor(readString(in)));
+                }
+                case FIELD_DEF: {
+                    ClassEntry parent = readEntry();
+                    String name = readString(in);
+                    TypeDescriptor desc = new TypeDescriptor(readString(in));
+                    Signature signature = Signature.createTypedSignature(readString(in));
+                    return new FieldDefEntry(parent, name, desc, signature, new AccessFlags(in.readInt()));
+                }
+                case METHOD: {
+                    ClassEntry parent = readEntry();
+                    String name = readString(in);
+                    return new MethodEntry(parent, name, new MethodDescriptor(readString(in)));
+                }
+                case METHOD_DEF: {
+                    ClassEntry parent = readEntry();
+                    String name = readString(in);
+                    MethodDescriptor desc = new MethodDescriptor(readString(in));
+                    Signature signature = Signature.createSignature(readString(in));
+                    return new MethodDefEntry(parent, name, desc, signature, new AccessFlags(in.readInt()));
+                }
+                case LOCAL_VARIABLE: {
+                    MethodEntry parent = readEntry();
+                    String name = readString(in);
+                    int index = in.readInt();
+                    return new LocalVariableEntry(parent, index, name, in.readBoolean(), null);
+                }
+                case LOCAL_VARIABLE_DEF: {
+                    MethodEntry parent = readEntry();
+                    String name = readString(in);
+                    int index = in.readInt();
+                    boolean parameter = in.readBoolean();
+                    return new LocalVariableDefEntry(parent, index, name, parameter, new TypeDescriptor(readString(in)), null);
+                }
+                default:
+                    throw new IOException("Unknown entry kind " + kind);
+            }
+        }
+    }
+}
@@ -12,18 +12,28 @@ public class SourceRemapper {
 		this.tokens = tokens;
 	}
 
+	/**
+	 * Writes the remapped source in a single pass, copying the text between renamed tokens as is.
+	 * The tokens must be in order and must not overlap.
+	 */
 	public Result remap(Remapper remapper) {
-		StringBuffer remappedSource = new StringBuffer(source);
+		// renamed identifiers are usually longer than obfuscated ones
+		StringBuilder remappedSource = new StringBuilder(source.length() + source.length() / 4);
 		Map<Token, Token> remappedTokens = new HashMap<>();
 
+		int copied = 0;
 		int accumulatedOffset = 0;
 		for (Token token : tokens) {
 			Token movedToken = token.move(accumulatedOffset);
 
 			String remappedName = remapper.remap(token, movedToken);
 			if (remappedName != null) {
+				remappedSource.append(source, copied, token.start).append(remappedName);
+				copied = token.end;
+
 				accumulatedOffset += movedToken.getRenameOffset(remappedName);
-				movedToken.rename(remappedSource, remappedName);
+				movedToken.text = remappedName;
+				movedToken.end = movedToken.start + remappedName.length();
 			}
 
 			if (!token.equals(movedToken)) {
@@ -31,6 +41,8 @@ public class SourceRemapper {
 			}
 		}
 
+		remappedSource.append(source, copied, source.length());
+
 		return new Result(remappedSource.toString(), remappedTokens);
 	}
 
@@ -1,5 +1,7 @@
 package cuchaz.enigma.source;
 
+import java.util.Objects;
+
 public class SourceSettings {
     public final boolean removeImports;
     public final boolean removeVariableFinal;
@@ -8,4 +10,17 @@ public class SourceSettings {
         this.removeImports = removeImports;
         this.removeVariableFinal = removeVariableFinal;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SourceSettings)) return false;
+        SourceSettings that = (SourceSettings) o;
+        return removeImports == that.removeImports && removeVariableFinal == that.removeVariableFinal;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(removeImports, removeVariableFinal);
+    }
 }
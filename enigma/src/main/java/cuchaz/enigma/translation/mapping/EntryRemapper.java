@@ -1,12 +1,16 @@
 package cuchaz.enigma.translation.mapping;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
+import cuchaz.enigma.analysis.index.EntryIndex;
 import cuchaz.enigma.analysis.index.JarIndex;
 import cuchaz.enigma.translation.MappingTranslator;
 import cuchaz.enigma.translation.Translatable;
@@ -14,7 +18,9 @@ import cuchaz.enigma.translation.TranslateResult;
 import cuchaz.enigma.translation.Translator;
 import cuchaz.enigma.translation.mapping.tree.DeltaTrackingTree;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.FlatEntryTree;
 import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
+import cuchaz.enigma.translation.representation.AccessFlags;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
 import cuchaz.enigma.translation.representation.entry.FieldEntry;
@@ -24,6 +30,13 @@ import cuchaz.enigma.utils.validation.Message;
 import cuchaz.enigma.utils.validation.ValidationContext;
 
 public class EntryRemapper {
+	/**
+	 * Whether remappers keep their mappings in a {@link FlatEntryTree}, which needs much less memory
+	 * for large sets of mappings. Set the {@code enigma.flatMappingTrees} system property to {@code true}
+	 * to use flat trees by default.
+	 */
+	public static final boolean FLAT_MAPPING_TREES = Boolean.parseBoolean(System.getProperty("enigma.flatMappingTrees", "false"));
+
 	private final DeltaTrackingTree<EntryMapping> obfToDeobf;
 
 	private final EntryResolver obfResolver;
@@ -41,14 +54,32 @@ public class EntryRemapper {
 		this.jarIndex = jarIndex;
 
 		this.validator = new MappingValidator(obfToDeobf, deobfuscator, jarIndex);
+		this.obfToDeobf.addChangeListener(validator::onMappingChanged);
 	}
 
 	public static EntryRemapper mapped(JarIndex index, EntryTree<EntryMapping> obfToDeobf) {
+		return mapped(index, obfToDeobf, FLAT_MAPPING_TREES);
+	}
+
+	/**
+	 * @param flat whether to copy the mappings into a {@link FlatEntryTree} first, if they aren't in one already
+	 */
+	public static EntryRemapper mapped(JarIndex index, EntryTree<EntryMapping> obfToDeobf, boolean flat) {
+		if (flat && !(obfToDeobf instanceof FlatEntryTree)) {
+			obfToDeobf = new FlatEntryTree<>(obfToDeobf);
+		}
 		return new EntryRemapper(index, obfToDeobf);
 	}
 
 	public static EntryRemapper empty(JarIndex index) {
-		return new EntryRemapper(index, new HashEntryTree<>());
+		return empty(index, FLAT_MAPPING_TREES);
+	}
+
+	/**
+	 * @param flat whether to keep the mappings in a {@link FlatEntryTree} rather than a {@link HashEntryTree}
+	 */
+	public static EntryRemapper empty(JarIndex index, boolean flat) {
+		return new EntryRemapper(index, flat ? new FlatEntryTree<>() : new HashEntryTree<>());
 	}
 
 	public <E extends Entry<?>> void mapFromObf(ValidationContext vc, E obfuscatedEntry, @Nullable EntryMapping deobfMapping) {
@@ -86,26 +117,81 @@ public class EntryRemapper {
 		mapFromObf(vc, obfuscatedEntry, null);
 	}
 
-	// A little bit of a hack to also map the getter method for record fields/components.
-	private void mapRecordComponentGetter(ValidationContext vc, ClassEntry classEntry, FieldEntry fieldEntry, EntryMapping fieldMapping) {
-		if (!jarIndex.getEntryIndex().getClassAccess(classEntry).isRecord() || jarIndex.getEntryIndex().getFieldAccess(fieldEntry).isStatic()) {
-			return;
+	/**
+	 * Starts collecting mapping changes to validate and apply at once, which is much cheaper than
+	 * applying them one by one when changing many entries.
+	 */
+	public MappingBatch beginBatch() {
+		return new MappingBatch(this);
+	}
+
+	boolean commit(ValidationContext vc, Collection<MappingBatch.Change> changes) {
+		Map<Entry<?>, EntryMapping> resolvedMappings = new LinkedHashMap<>();
+		Map<Entry<?>, String> renames = new LinkedHashMap<>();
+
+		for (MappingBatch.Change change : changes) {
+			if (change.entry instanceof FieldEntry && isRecordComponent((FieldEntry) change.entry)) {
+				MethodEntry getter = jarIndex.getEntryIndex().getRecordGetter((FieldEntry) change.entry);
+				if (getter != null) {
+					resolveChange(getter, change.mapping != null ? new EntryMapping(change.mapping.getTargetName()) : null, true, resolvedMappings, renames);
+				} else if (change.mapping != null) {
+					vc.raise(Message.UNKNOWN_RECORD_GETTER, change.mapping.getTargetName());
+				}
+			}
+
+			resolveChange(change.entry, change.mapping, change.renaming, resolvedMappings, renames);
+		}
+
+		if (!vc.canProceed()) return false;
+
+		Map<Entry<?>, EntryMapping> previousMappings = new HashMap<>();
+		Set<Entry<?>> previouslyChanged = new HashSet<>();
+		for (Map.Entry<Entry<?>, EntryMapping> resolved : resolvedMappings.entrySet()) {
+			previousMappings.put(resolved.getKey(), obfToDeobf.get(resolved.getKey()));
+			if (obfToDeobf.isChanged(resolved.getKey())) {
+				previouslyChanged.add(resolved.getKey());
+			}
+			obfToDeobf.insert(resolved.getKey(), resolved.getValue());
 		}
 
-		// Find all the methods in this record class
-		List<MethodEntry> classMethods = jarIndex.getEntryIndex().getMethods().stream()
-				.filter(entry -> classEntry.equals(entry.getParent()))
-				.collect(Collectors.toList());
+		// names are checked against the new mappings, so that a batch can swap names
+		validator.validateRenames(vc, renames);
+
+		if (!vc.canProceed()) {
+			// a failed batch leaves no trace in the next delta
+			previousMappings.forEach((entry, mapping) -> obfToDeobf.revert(entry, mapping, previouslyChanged.contains(entry)));
+			return false;
+		}
 
-		MethodEntry methodEntry = null;
+		return true;
+	}
 
-		for (MethodEntry method : classMethods) {
-			// Find the matching record component getter via matching the names. My understanding is this is safe, failing this it may need to be a bit more intelligent
-			if (method.getName().equals(fieldEntry.getName()) && method.getDesc().toString().equals("()" + fieldEntry.getDesc())) {
-				methodEntry = method;
-				break;
+	private void resolveChange(Entry<?> obfuscatedEntry, @Nullable EntryMapping deobfMapping, boolean renaming, Map<Entry<?>, EntryMapping> resolvedMappings, Map<Entry<?>, String> renames) {
+		for (Entry<?> resolvedEntry : obfResolver.resolveEntry(obfuscatedEntry, renaming ? ResolutionStrategy.RESOLVE_ROOT : ResolutionStrategy.RESOLVE_CLOSEST)) {
+			resolvedMappings.put(resolvedEntry, deobfMapping);
+			if (renaming && deobfMapping != null) {
+				renames.put(resolvedEntry, deobfMapping.getTargetName());
+			} else {
+				renames.remove(resolvedEntry);
 			}
 		}
+	}
+
+	private boolean isRecordComponent(FieldEntry fieldEntry) {
+		EntryIndex entryIndex = jarIndex.getEntryIndex();
+		AccessFlags classAccess = entryIndex.getClassAccess(fieldEntry.getParent());
+		AccessFlags fieldAccess = entryIndex.getFieldAccess(fieldEntry);
+		return classAccess != null && classAccess.isRecord() && fieldAccess != null && !fieldAccess.isStatic();
+	}
+
+	// A little bit of a hack to also map the getter method for record fields/components.
+	private void mapRecordComponentGetter(ValidationContext vc, ClassEntry classEntry, FieldEntry fieldEntry, EntryMapping fieldMapping) {
+		if (!isRecordComponent(fieldEntry)) {
+			return;
+		}
+
+		// The getter is matched to the component by name and type when the jar is indexed
+		MethodEntry methodEntry = jarIndex.getEntryIndex().getRecordGetter(fieldEntry);
 
 		if (methodEntry == null && fieldMapping != null) {
 			vc.raise(Message.UNKNOWN_RECORD_GETTER, fieldMapping.getTargetName());
@@ -1,5 +1,8 @@
 package cuchaz.enigma.translation.mapping;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Sets;
 import cuchaz.enigma.analysis.IndexTreeBuilder;
 import cuchaz.enigma.analysis.MethodImplementationsTreeNode;
@@ -16,15 +19,33 @@ import cuchaz.enigma.translation.representation.entry.MethodEntry;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+/**
+ * Resolves entries against a {@link JarIndex}.
+ * <p>
+ * Walking the hierarchy for a member and building the inheritance trees for a method are
+ * expensive, and the same members are resolved over and over, so both results are remembered.
+ * Results are kept per concrete entry class, since resolving a def entry gives def entries. Entries
+ * with javadocs are not cached, because javadocs don't take part in equality but are copied into
+ * the results. The caches must be {@linkplain #invalidateCaches() invalidated} whenever the index changes.
+ * Each cache holds at most {@link #DEFAULT_CACHE_SIZE} results, least recently used first out.
+ */
 public class IndexEntryResolver implements EntryResolver {
+	public static final long DEFAULT_CACHE_SIZE = Long.getLong("enigma.resolverCacheSize", 100_000);
+
 	private final EntryIndex entryIndex;
 	private final InheritanceIndex inheritanceIndex;
 	private final BridgeMethodIndex bridgeMethodIndex;
 
 	private final IndexTreeBuilder treeBuilder;
 
+	private final Cache<CacheKey, Set<Entry<ClassEntry>>> childResolutions = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_SIZE).build();
+	private final Cache<CacheKey, Set<MethodEntry>> equivalentMethods = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_SIZE).build();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
 	public IndexEntryResolver(JarIndex index) {
 		this.entryIndex = index.getEntryIndex();
 		this.inheritanceIndex = index.getInheritanceIndex();
@@ -64,16 +85,10 @@ public class IndexEntryResolver implements EntryResolver {
 
 	@Nullable
 	private Entry<ClassEntry> getClassChild(Entry<?> entry) {
-		if (entry instanceof ClassEntry) {
-			return null;
-		}
-
 		// get the entry in the hierarchy that is the child of a class
-		List<Entry<?>> ancestry = entry.getAncestry();
-		for (int i = ancestry.size() - 1; i > 0; i--) {
-			Entry<?> child = ancestry.get(i);
+		for (Entry<?> child = entry; child != null && !(child instanceof ClassEntry); child = child.getParent()) {
 			Entry<ClassEntry> cast = child.castParent(ClassEntry.class);
-			if (cast != null && !(cast instanceof ClassEntry)) {
+			if (cast != null) {
 				// we found the entry which is a child of a class, we are now able to resolve the owner of this entry
 				return cast;
 			}
@@ -83,6 +98,24 @@ public class IndexEntryResolver implements EntryResolver {
 	}
 
 	private Set<Entry<ClassEntry>> resolveChildEntry(Entry<ClassEntry> entry, ResolutionStrategy strategy) {
+		if (entry.getJavadocs() != null) {
+			return computeResolvedChildEntry(entry, strategy);
+		}
+
+		CacheKey key = new CacheKey(entry, strategy);
+		Set<Entry<ClassEntry>> resolved = childResolutions.getIfPresent(key);
+		if (resolved != null) {
+			hits.increment();
+			return resolved;
+		}
+
+		misses.increment();
+		resolved = Collections.unmodifiableSet(computeResolvedChildEntry(entry, strategy));
+		childResolutions.put(key, resolved);
+		return resolved;
+	}
+
+	private Set<Entry<ClassEntry>> computeResolvedChildEntry(Entry<ClassEntry> entry, ResolutionStrategy strategy) {
 		ClassEntry ownerClass = entry.getParent();
 
 		if (entry instanceof MethodEntry) {
@@ -165,6 +198,24 @@ public class IndexEntryResolver implements EntryResolver {
 			return Collections.singleton(methodEntry);
 		}
 
+		if (methodEntry.getJavadocs() != null) {
+			return computeEquivalentMethods(methodEntry);
+		}
+
+		CacheKey key = new CacheKey(methodEntry, null);
+		Set<MethodEntry> methodEntries = equivalentMethods.getIfPresent(key);
+		if (methodEntries != null) {
+			hits.increment();
+			return methodEntries;
+		}
+
+		misses.increment();
+		methodEntries = Collections.unmodifiableSet(computeEquivalentMethods(methodEntry));
+		equivalentMethods.put(key, methodEntries);
+		return methodEntries;
+	}
+
+	private Set<MethodEntry> computeEquivalentMethods(MethodEntry methodEntry) {
 		Set<MethodEntry> methodEntries = Sets.newHashSet();
 		resolveEquivalentMethods(methodEntries, treeBuilder.buildMethodInheritance(VoidTranslator.INSTANCE, methodEntry));
 		return methodEntries;
@@ -224,4 +275,46 @@ public class IndexEntryResolver implements EntryResolver {
 	private boolean canInherit(MethodEntry entry, AccessFlags access) {
 		return !entry.isConstructor() && !access.isPrivate() && !access.isStatic() && !access.isFinal();
 	}
+
+	/**
+	 * Forgets every cached resolution. Called once the index has been processed, since resolving
+	 * while the index is being built can give different results.
+	 */
+	public void invalidateCaches() {
+		childResolutions.invalidateAll();
+		equivalentMethods.invalidateAll();
+	}
+
+	/**
+	 * @return how often resolutions were answered from the caches. Only hits and misses are counted.
+	 */
+	public CacheStats getStats() {
+		long missCount = misses.sum();
+		return new CacheStats(hits.sum(), missCount, missCount, 0, 0, 0);
+	}
+
+	private static final class CacheKey {
+		private final Entry<?> entry;
+		private final @Nullable ResolutionStrategy strategy;
+
+		CacheKey(Entry<?> entry, @Nullable ResolutionStrategy strategy) {
+			this.entry = entry;
+			this.strategy = strategy;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * entry.hashCode() + (strategy == null ? 0 : strategy.ordinal() + 1);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+
+			CacheKey other = (CacheKey) obj;
+			return strategy == other.strategy && entry.getClass() == other.entry.getClass() && entry.equals(other.entry);
+		}
+	}
 }
@@ -0,0 +1,89 @@
+package cuchaz.enigma.translation.mapping;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.utils.validation.ValidationContext;
+
+/**
+ * A set of mapping changes that are validated and applied together by {@link #commit(ValidationContext)}.
+ *
+ * <p>Changes are collected without touching the mappings. On commit, every change is resolved,
+ * all of them are applied, and the new names are validated once against the result, so that names
+ * can be swapped within a batch. If any of them is invalid, none of the changes are kept. When the
+ * same entry is changed more than once, the last change wins.</p>
+ */
+public class MappingBatch {
+	private final EntryRemapper remapper;
+	private final Map<Entry<?>, Change> changes = new LinkedHashMap<>();
+
+	MappingBatch(EntryRemapper remapper) {
+		this.remapper = remapper;
+	}
+
+	public MappingBatch mapFromObf(Entry<?> obfuscatedEntry, @Nullable EntryMapping deobfMapping) {
+		return mapFromObf(obfuscatedEntry, deobfMapping, true);
+	}
+
+	public MappingBatch mapFromObf(Entry<?> obfuscatedEntry, @Nullable EntryMapping deobfMapping, boolean renaming) {
+		changes.remove(obfuscatedEntry);
+		changes.put(obfuscatedEntry, new Change(obfuscatedEntry, deobfMapping, renaming));
+		return this;
+	}
+
+	public MappingBatch removeByObf(Entry<?> obfuscatedEntry) {
+		return mapFromObf(obfuscatedEntry, null);
+	}
+
+	public int size() {
+		return changes.size();
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	/**
+	 * @return the mapping each changed entry is set to, in the order the changes were made, with
+	 * {@code null} for removed mappings
+	 */
+	public Map<Entry<?>, EntryMapping> getChanges() {
+		Map<Entry<?>, EntryMapping> mappings = new LinkedHashMap<>();
+		for (Change change : changes.values()) {
+			mappings.put(change.entry, change.mapping);
+		}
+		return Collections.unmodifiableMap(mappings);
+	}
+
+	/**
+	 * Applies the changes of this batch and empties it.
+	 *
+	 * @return whether the changes were valid and have been applied
+	 */
+	public boolean commit(ValidationContext vc) {
+		Collection<Change> committed = changes.values();
+		try {
+			return remapper.commit(vc, committed);
+		} finally {
+			changes.clear();
+		}
+	}
+
+	static final class Change {
+		final Entry<?> entry;
+		@Nullable
+		final EntryMapping mapping;
+		final boolean renaming;
+
+		Change(Entry<?> entry, @Nullable EntryMapping mapping, boolean renaming) {
+			this.entry = entry;
+			this.mapping = mapping;
+			this.renaming = renaming;
+		}
+	}
+}
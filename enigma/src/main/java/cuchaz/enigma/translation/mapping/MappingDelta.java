@@ -1,5 +1,6 @@
 package cuchaz.enigma.translation.mapping;
 
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import cuchaz.enigma.translation.Translatable;
@@ -33,6 +34,24 @@ public class MappingDelta<T> implements Translatable {
 		return new MappingDelta<>(new HashEntryTree<>(), changes);
 	}
 
+	/**
+	 * Builds the delta between two sets of mappings, marking every entry whose name, access or
+	 * javadoc differs between them as changed.
+	 */
+	public static MappingDelta<EntryMapping> compare(EntryTree<EntryMapping> baseMappings, EntryTree<EntryMapping> mappings) {
+		EntryTree<Object> changes = new HashEntryTree<>();
+
+		Stream.concat(baseMappings.getAllEntries(), mappings.getAllEntries())
+				.filter(entry -> !isSameMapping(baseMappings.get(entry), mappings.get(entry)))
+				.forEach(entry -> changes.insert(entry, PLACEHOLDER));
+
+		return new MappingDelta<>(baseMappings, changes);
+	}
+
+	private static boolean isSameMapping(EntryMapping a, EntryMapping b) {
+		return Objects.equals(a, b) && (a == null || Objects.equals(a.getJavadoc(), b.getJavadoc()));
+	}
+
 	public EntryTree<T> getBaseMappings() {
 		return baseMappings;
 	}
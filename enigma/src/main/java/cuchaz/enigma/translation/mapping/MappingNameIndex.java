@@ -0,0 +1,139 @@
+package cuchaz.enigma.translation.mapping;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import cuchaz.enigma.translation.Translator;
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.EntryTreeNode;
+import cuchaz.enigma.translation.representation.entry.Entry;
+
+/**
+ * Finds the entries of a mapping tree by their parent and deobfuscated name, so that checking a
+ * new name for clashes doesn't have to translate every sibling.
+ *
+ * <p>Most entries are their own root, and their deobfuscated name only depends on their own
+ * mapping; those are indexed by that name and updated whenever the entry changes. The names of
+ * the other entries, such as overrides that only have mapped parameters, come from the mappings
+ * of other entries, so they are kept apart and are always candidates.</p>
+ */
+final class MappingNameIndex {
+	private final EntryTree<EntryMapping> mappings;
+	private final Translator deobfuscator;
+	private final EntryResolver resolver;
+
+	private final Map<Entry<?>, Map<String, Set<Entry<?>>>> namedChildren = new HashMap<>();
+	private final Map<Entry<?>, Set<Entry<?>>> derivedChildren = new HashMap<>();
+	// the name each indexed entry is filed under, or null for derived entries
+	private final Map<Entry<?>, String> indexedNames = new HashMap<>();
+	private boolean built;
+
+	MappingNameIndex(EntryTree<EntryMapping> mappings, Translator deobfuscator, EntryResolver resolver) {
+		this.mappings = mappings;
+		this.deobfuscator = deobfuscator;
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Returns the children of the parent in the mapping tree that may be named {@code name} once
+	 * translated. The caller still has to translate them to rule out the derived ones.
+	 */
+	synchronized Collection<Entry<?>> getCandidates(@Nullable Entry<?> parent, String name) {
+		ensureBuilt();
+
+		Map<String, Set<Entry<?>>> named = namedChildren.get(parent);
+		Set<Entry<?>> matches = named != null ? named.get(name) : null;
+		Set<Entry<?>> derived = derivedChildren.get(parent);
+
+		if (derived == null) {
+			return matches != null ? new ArrayList<>(matches) : Collections.emptyList();
+		}
+
+		List<Entry<?>> candidates = new ArrayList<>(derived);
+		if (matches != null) {
+			candidates.addAll(matches);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Updates the entry and its ancestors after the entry was inserted into or removed from the
+	 * mapping tree, which may have added or removed those ancestors as well.
+	 */
+	synchronized void update(Entry<?> entry) {
+		if (!built) {
+			return;
+		}
+
+		for (Entry<?> node = entry; node != null; node = node.getParent()) {
+			remove(node);
+			if (mappings.findNode(node) != null) {
+				add(node);
+			}
+		}
+	}
+
+	private void ensureBuilt() {
+		if (!built) {
+			for (EntryTreeNode<EntryMapping> node : mappings) {
+				add(node.getEntry());
+			}
+			built = true;
+		}
+	}
+
+	private void add(Entry<?> entry) {
+		Entry<?> parent = entry.getParent();
+
+		if (isOwnRoot(entry)) {
+			String name = deobfuscator.translate(entry).getName();
+			namedChildren.computeIfAbsent(parent, p -> new HashMap<>()).computeIfAbsent(name, n -> new HashSet<>()).add(entry);
+			indexedNames.put(entry, name);
+		} else {
+			derivedChildren.computeIfAbsent(parent, p -> new HashSet<>()).add(entry);
+			indexedNames.put(entry, null);
+		}
+	}
+
+	private void remove(Entry<?> entry) {
+		if (!indexedNames.containsKey(entry)) {
+			return;
+		}
+
+		Entry<?> parent = entry.getParent();
+		String name = indexedNames.remove(entry);
+		if (name != null) {
+			Map<String, Set<Entry<?>>> named = namedChildren.get(parent);
+			Set<Entry<?>> entries = named.get(name);
+			entries.remove(entry);
+			if (entries.isEmpty()) {
+				named.remove(name);
+				if (named.isEmpty()) {
+					namedChildren.remove(parent);
+				}
+			}
+		} else {
+			Set<Entry<?>> derived = derivedChildren.get(parent);
+			derived.remove(entry);
+			if (derived.isEmpty()) {
+				derivedChildren.remove(parent);
+			}
+		}
+	}
+
+	/**
+	 * An entry that resolves to itself is translated with its own mapping only.
+	 */
+	private boolean isOwnRoot(Entry<?> entry) {
+		Collection<? extends Entry<?>> roots = resolver.resolveEntry(entry, ResolutionStrategy.RESOLVE_ROOT);
+		return roots.size() == 1 && roots.contains(entry);
+	}
+}
@@ -2,6 +2,8 @@ package cuchaz.enigma.translation.mapping;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import cuchaz.enigma.analysis.index.InheritanceIndex;
@@ -10,19 +12,28 @@ import cuchaz.enigma.translation.Translator;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.utils.Pair;
 import cuchaz.enigma.utils.validation.Message;
 import cuchaz.enigma.utils.validation.ValidationContext;
 
 public class MappingValidator {
 
-	private final EntryTree<EntryMapping> obfToDeobf;
 	private final Translator deobfuscator;
 	private final JarIndex index;
+	private final MappingNameIndex nameIndex;
 
 	public MappingValidator(EntryTree<EntryMapping> obfToDeobf, Translator deobfuscator, JarIndex index) {
-		this.obfToDeobf = obfToDeobf;
 		this.deobfuscator = deobfuscator;
 		this.index = index;
+		this.nameIndex = new MappingNameIndex(obfToDeobf, deobfuscator, index.getEntryResolver());
+	}
+
+	/**
+	 * Keeps the validator up to date with the mappings. Must be called whenever an entry is inserted
+	 * into or removed from the mappings it validates against.
+	 */
+	public void onMappingChanged(Entry<?> entry) {
+		nameIndex.update(entry);
 	}
 
 	public void validateRename(ValidationContext vc, Entry<?> entry, String name) {
@@ -33,6 +44,24 @@ public class MappingValidator {
 		}
 	}
 
+	/**
+	 * Validates several renames at once, checking every equivalent entry only once per name.
+	 * Names are checked against the current mappings, so renames that swap names between
+	 * entries must be applied before they are validated.
+	 */
+	public void validateRenames(ValidationContext vc, Map<? extends Entry<?>, String> renames) {
+		Set<Pair<Entry<?>, String>> validated = new HashSet<>();
+		for (Map.Entry<? extends Entry<?>, String> rename : renames.entrySet()) {
+			String name = rename.getValue();
+			for (Entry<?> equivalentEntry : index.getEntryResolver().resolveEquivalentEntries(rename.getKey())) {
+				if (validated.add(new Pair<>(equivalentEntry, name))) {
+					equivalentEntry.validateName(vc, name);
+					validateUnique(vc, equivalentEntry, name);
+				}
+			}
+		}
+	}
+
 	private void validateUnique(ValidationContext vc, Entry<?> entry, String name) {
 		ClassEntry containingClass = entry.getContainingClass();
 		Collection<ClassEntry> relatedClasses = getRelatedClasses(containingClass);
@@ -41,7 +70,9 @@ public class MappingValidator {
 			Entry<?> relatedEntry = entry.replaceAncestor(containingClass, relatedClass);
 			Entry<?> translatedEntry = deobfuscator.translate(relatedEntry);
 
-			Collection<Entry<?>> translatedSiblings = obfToDeobf.getSiblings(relatedEntry).stream()
+			// only the siblings that can translate to the new name need translating
+			Collection<Entry<?>> translatedSiblings = nameIndex.getCandidates(relatedEntry.getParent(), name).stream()
+					.filter(sibling -> !sibling.equals(relatedEntry))
 					.map(deobfuscator::translate)
 					.collect(Collectors.toList());
 
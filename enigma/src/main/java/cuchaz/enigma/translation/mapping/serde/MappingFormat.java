@@ -1,5 +1,6 @@
 package cuchaz.enigma.translation.mapping.serde;
 
+import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.MappingDelta;
@@ -52,10 +53,14 @@ public enum MappingFormat {
 	}
 
 	public EntryTree<EntryMapping> read(Path path, ProgressListener progressListener, MappingSaveParameters saveParameters) throws IOException, MappingParseException {
+		return read(path, progressListener, saveParameters, null);
+	}
+
+	public EntryTree<EntryMapping> read(Path path, ProgressListener progressListener, MappingSaveParameters saveParameters, @Nullable EnigmaProject project) throws IOException, MappingParseException {
 		if (reader == null) {
 			throw new IllegalStateException(name() + " does not support reading");
 		}
-		return reader.read(path, progressListener, saveParameters);
+		return reader.read(path, progressListener, saveParameters, project);
 	}
 
 	@Nullable
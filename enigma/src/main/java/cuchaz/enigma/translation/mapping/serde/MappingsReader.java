@@ -1,12 +1,22 @@
 package cuchaz.enigma.translation.mapping.serde;
 
+import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Path;
 
 public interface MappingsReader {
 	EntryTree<EntryMapping> read(Path path, ProgressListener progress, MappingSaveParameters saveParameters) throws MappingParseException, IOException;
+
+	/**
+	 * Reads mappings for the given project, which formats that omit information
+	 * (such as field descriptors) can use to complete their entries.
+	 */
+	default EntryTree<EntryMapping> read(Path path, ProgressListener progress, MappingSaveParameters saveParameters, @Nullable EnigmaProject project) throws MappingParseException, IOException {
+		return read(path, progress, saveParameters);
+	}
 }
@@ -1,7 +1,7 @@
 package cuchaz.enigma.translation.mapping.serde.srg;
 
 import com.google.common.base.Charsets;
-import cuchaz.enigma.EnigmaProfile;
+import cuchaz.enigma.EnigmaProject;
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.MappingPair;
@@ -17,6 +17,7 @@ import cuchaz.enigma.translation.representation.entry.FieldEntry;
 import cuchaz.enigma.translation.representation.entry.MethodEntry;
 import cuchaz.enigma.utils.I18n;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,10 +27,19 @@ public class SrgMappingsReader implements MappingsReader {
 
     @Override
     public EntryTree<EntryMapping> read(Path path, ProgressListener progress, MappingSaveParameters saveParameters) throws MappingParseException, IOException {
-        return read(path, Files.readAllLines(path, Charsets.UTF_8), progress);
+        return read(path, progress, saveParameters, null);
     }
 
-    private EntryTree<EntryMapping> read(Path path, List<String> lines, ProgressListener progress) throws MappingParseException {
+    /**
+     * SRG files don't record field descriptors, so fields are only read when a project is
+     * given to look them up in.
+     */
+    @Override
+    public EntryTree<EntryMapping> read(Path path, ProgressListener progress, MappingSaveParameters saveParameters, @Nullable EnigmaProject project) throws MappingParseException, IOException {
+        return read(path, Files.readAllLines(path, Charsets.UTF_8), progress, project);
+    }
+
+    private EntryTree<EntryMapping> read(Path path, List<String> lines, ProgressListener progress, @Nullable EnigmaProject project) throws MappingParseException {
         EntryTree<EntryMapping> mappings = new HashEntryTree<>();
 
         progress.init(lines.size(), I18n.translate("progress.mappings.tiny_file.loading"));
@@ -44,7 +54,7 @@ public class SrgMappingsReader implements MappingsReader {
             }
 
             try {
-                MappingPair<?, EntryMapping> mapping = parseLine(line);
+                MappingPair<?, EntryMapping> mapping = parseLine(line, project);
                 if(mapping == null) continue;
                 mappings.insert(mapping.getEntry(), mapping.getMapping());
             } catch (Throwable t) {
@@ -56,7 +66,7 @@ public class SrgMappingsReader implements MappingsReader {
         return mappings;
     }
 
-    private MappingPair<?, EntryMapping> parseLine(String line) {
+    private MappingPair<?, EntryMapping> parseLine(String line, @Nullable EnigmaProject project) {
         String[] tokens = line.split(" ");
 
         String key = tokens[0];
@@ -64,7 +74,7 @@ public class SrgMappingsReader implements MappingsReader {
             case "CL:":
                 return parseClass(tokens);
             case "FD:":
-                return parseField(tokens);
+                return parseField(tokens, project);
             case "MD:":
                 return parseMethod(tokens);
             default:
@@ -79,12 +89,11 @@ public class SrgMappingsReader implements MappingsReader {
         return new MappingPair<>(obfuscatedEntry, new EntryMapping(mapping));
     }
 
-    private MappingPair<FieldEntry, EntryMapping> parseField(String[] tokens) {
+    private MappingPair<FieldEntry, EntryMapping> parseField(String[] tokens, @Nullable EnigmaProject project) {
         ClassEntry ownerClass = new ClassEntry(tokens[1].substring(0, tokens[1].lastIndexOf('/')));
         String obfuscatedFieldName =  tokens[1].substring(tokens[1].lastIndexOf('/') + 1);
-        String fieldSignature = EnigmaProfile.fieldSignatures.get(ownerClass.getName() + "/" + obfuscatedFieldName);
-        if (fieldSignature == null) return null;//System.out.println(ownerClass.getName() + "/" + obfuscatedFieldName);
-        TypeDescriptor descriptor = new TypeDescriptor(fieldSignature);
+        TypeDescriptor descriptor = project != null ? project.getFieldDescriptor(ownerClass, obfuscatedFieldName) : null;
+        if (descriptor == null) return null;
 
         FieldEntry obfuscatedEntry = new FieldEntry(ownerClass, obfuscatedFieldName, descriptor);
         String mapping = tokens[2].substring(tokens[2].lastIndexOf('/') + 1);
@@ -8,19 +8,29 @@ import cuchaz.enigma.translation.mapping.MappingDelta;
 import cuchaz.enigma.translation.representation.entry.Entry;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public class DeltaTrackingTree<T> implements EntryTree<T> {
 	private final EntryTree<T> delegate;
+	private final Object lock = new Object();
 
-	private EntryTree<T> deltaReference;
+	private SnapshotEntryTree.Generation<T> generation = new SnapshotEntryTree.Generation<>();
 	private EntryTree<Object> changes = new HashEntryTree<>();
-
+	private final List<Consumer<Entry<?>>> changeListeners = new ArrayList<>();
+
+	/**
+	 * Tracks the changes made to the delegate through this tree. The delegate must not be changed
+	 * directly while it is tracked, since the base mappings of the next delta are read through to it.
+	 * Changes and deltas may be made on different threads: both hold the same lock, which the base
+	 * mappings also hold while they read the delegate.
+	 */
 	public DeltaTrackingTree(EntryTree<T> delegate) {
 		this.delegate = delegate;
-		this.deltaReference = new HashEntryTree<>(delegate);
 	}
 
 	public DeltaTrackingTree() {
@@ -29,19 +39,71 @@ public class DeltaTrackingTree<T> implements EntryTree<T> {
 
 	@Override
 	public void insert(Entry<?> entry, T value) {
-		trackChange(entry);
-		delegate.insert(entry, value);
+		synchronized (lock) {
+			generation.recordOriginal(entry, delegate.get(entry));
+			trackChange(entry);
+			delegate.insert(entry, value);
+		}
+		notifyChanged(entry);
 	}
 
 	@Nullable
 	@Override
 	public T remove(Entry<?> entry) {
-		trackChange(entry);
-		return delegate.remove(entry);
+		T value;
+		synchronized (lock) {
+			generation.recordOriginal(entry, delegate.get(entry));
+			trackChange(entry);
+			value = delegate.remove(entry);
+		}
+		notifyChanged(entry);
+		return value;
+	}
+
+	/**
+	 * Registers a callback that is run with every entry inserted into or removed from this tree,
+	 * once the change has been made.
+	 */
+	public void addChangeListener(Consumer<Entry<?>> listener) {
+		changeListeners.add(listener);
+	}
+
+	private void notifyChanged(Entry<?> entry) {
+		for (Consumer<Entry<?>> listener : changeListeners) {
+			listener.accept(entry);
+		}
+	}
+
+	/**
+	 * @return whether the entry has been changed since the last delta
+	 */
+	public boolean isChanged(Entry<?> entry) {
+		synchronized (lock) {
+			return changes.contains(entry);
+		}
+	}
+
+	/**
+	 * Puts back the value an entry had before a change that is being undone. Unlike {@link #insert(Entry, Object)},
+	 * the entry only stays in the changes of the next delta if it already was before the undone change.
+	 *
+	 * @param wasChanged what {@link #isChanged(Entry)} returned before the undone change
+	 */
+	public void revert(Entry<?> entry, @Nullable T value, boolean wasChanged) {
+		synchronized (lock) {
+			generation.recordOriginal(entry, delegate.get(entry));
+			delegate.insert(entry, value);
+			if (!wasChanged) {
+				changes.remove(entry);
+			}
+		}
+		notifyChanged(entry);
 	}
 
 	public void trackChange(Entry<?> entry) {
-		changes.insert(entry, MappingDelta.PLACEHOLDER);
+		synchronized (lock) {
+			changes.insert(entry, MappingDelta.PLACEHOLDER);
+		}
 	}
 
 	@Nullable
@@ -73,9 +135,11 @@ public class DeltaTrackingTree<T> implements EntryTree<T> {
 
 	@Override
 	public DeltaTrackingTree<T> translate(Translator translator, EntryResolver resolver, EntryMap<EntryMapping> mappings) {
-		DeltaTrackingTree<T> translatedTree = new DeltaTrackingTree<>(delegate.translate(translator, resolver, mappings));
-		translatedTree.changes = changes.translate(translator, resolver, mappings);
-		return translatedTree;
+		synchronized (lock) {
+			DeltaTrackingTree<T> translatedTree = new DeltaTrackingTree<>(delegate.translate(translator, resolver, mappings));
+			translatedTree.changes = changes.translate(translator, resolver, mappings);
+			return translatedTree;
+		}
 	}
 
 	@Override
@@ -93,18 +157,26 @@ public class DeltaTrackingTree<T> implements EntryTree<T> {
 		return delegate.iterator();
 	}
 
+	/**
+	 * Returns the changes since the last delta, and the mappings as they were then. Those mappings
+	 * aren't copied: they are read through to this tree, undoing the changes made since.
+	 */
 	public MappingDelta<T> takeDelta() {
-		MappingDelta<T> delta = new MappingDelta<>(deltaReference, changes);
-		resetDelta();
-		return delta;
+		synchronized (lock) {
+			MappingDelta<T> delta = new MappingDelta<>(new SnapshotEntryTree<>(delegate, generation, lock), changes);
+			resetDelta();
+			return delta;
+		}
 	}
 
 	private void resetDelta() {
-		deltaReference = new HashEntryTree<>(delegate);
+		generation = generation.seal();
 		changes = new HashEntryTree<>();
 	}
 
 	public boolean isDirty() {
-		return !changes.isEmpty();
+		synchronized (lock) {
+			return !changes.isEmpty();
+		}
 	}
 }
@@ -0,0 +1,406 @@
+package cuchaz.enigma.translation.mapping.tree;
+
+import cuchaz.enigma.translation.Translator;
+import cuchaz.enigma.translation.mapping.EntryMap;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryResolver;
+import cuchaz.enigma.translation.representation.entry.Entry;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An {@link EntryTree} that keeps all of its nodes in flat arrays instead of one object and one
+ * child map per node, which makes it considerably smaller than a {@link HashEntryTree} for large
+ * sets of mappings.
+ * <p>
+ * Nodes are numbered, and their parent, first and last child and sibling links are stored as int
+ * arrays indexed by those numbers. A single open-addressing table maps each pair of parent node and
+ * entry to its node, so finding an entry takes one probe per level of its ancestry. Number 0 is the
+ * invisible root that top-level classes hang from.
+ * <p>
+ * Unlike in a {@link HashEntryTree}, iteration order is defined: nodes are visited before their
+ * children, and children in the order they were first inserted. Nodes returned by this tree are
+ * views; once their entry has been removed from the tree they have no value and no children.
+ */
+public class FlatEntryTree<T> implements EntryTree<T> {
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private Entry<?>[] entries = new Entry<?>[16];
+	private Object[] values = new Object[16];
+	private int[] parents = new int[16];
+	private int[] firstChildren = new int[16];
+	private int[] lastChildren = new int[16];
+	private int[] previousSiblings = new int[16];
+	private int[] nextSiblings = new int[16];
+	private int nodeLimit = 1;
+	private int nodeCount;
+	private int freeNodes = NONE;
+
+	// node number + 1 for each occupied slot, 0 for free slots
+	private int[] slots = new int[32];
+
+	public FlatEntryTree() {
+		parents[ROOT] = NONE;
+		firstChildren[ROOT] = NONE;
+		lastChildren[ROOT] = NONE;
+	}
+
+	public FlatEntryTree(EntryTree<T> tree) {
+		this();
+		for (EntryTreeNode<T> node : tree) {
+			insert(node.getEntry(), node.getValue());
+		}
+	}
+
+	@Override
+	public void insert(Entry<?> entry, T value) {
+		int node = computeNode(entry);
+		values[node] = value;
+		if (value == null) {
+			removeDeadFrom(node);
+		}
+	}
+
+	@Override
+	@Nullable
+	public T remove(Entry<?> entry) {
+		int node = findNodeId(entry);
+		if (node == NONE) {
+			return null;
+		}
+
+		T value = getValue(node);
+		values[node] = null;
+		removeDeadFrom(node);
+
+		return value;
+	}
+
+	@Override
+	@Nullable
+	public T get(Entry<?> entry) {
+		int node = findNodeId(entry);
+		return node != NONE ? getValue(node) : null;
+	}
+
+	@Override
+	public boolean contains(Entry<?> entry) {
+		return get(entry) != null;
+	}
+
+	@Override
+	public Collection<Entry<?>> getChildren(Entry<?> entry) {
+		int node = findNodeId(entry);
+		if (node == NONE) {
+			return Collections.emptyList();
+		}
+		return getChildEntries(node);
+	}
+
+	@Override
+	public Collection<Entry<?>> getSiblings(Entry<?> entry) {
+		Entry<?> parent = entry.getParent();
+		Collection<Entry<?>> generation = parent == null ? getChildEntries(ROOT) : getChildren(parent);
+
+		Set<Entry<?>> siblings = new HashSet<>(generation);
+		siblings.remove(entry);
+		return siblings;
+	}
+
+	@Override
+	@Nullable
+	public EntryTreeNode<T> findNode(Entry<?> entry) {
+		int node = findNodeId(entry);
+		return node != NONE ? new Node(node) : null;
+	}
+
+	@Override
+	public Iterator<EntryTreeNode<T>> iterator() {
+		return getNodes(ROOT).iterator();
+	}
+
+	@Override
+	public Stream<Entry<?>> getAllEntries() {
+		return StreamSupport.stream(spliterator(), false)
+				.filter(EntryTreeNode::hasValue)
+				.map(EntryTreeNode::getEntry);
+	}
+
+	@Override
+	public Stream<EntryTreeNode<T>> getRootNodes() {
+		return getChildNodes(ROOT).stream();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nodeCount == 0;
+	}
+
+	@Override
+	public FlatEntryTree<T> translate(Translator translator, EntryResolver resolver, EntryMap<EntryMapping> mappings) {
+		FlatEntryTree<T> translatedTree = new FlatEntryTree<>();
+		for (EntryTreeNode<T> node : this) {
+			translatedTree.insert(translator.translate(node.getEntry()), node.getValue());
+		}
+		return translatedTree;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T getValue(int node) {
+		return (T) values[node];
+	}
+
+	private List<Entry<?>> getChildEntries(int node) {
+		List<Entry<?>> children = new ArrayList<>();
+		for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+			children.add(entries[child]);
+		}
+		return children;
+	}
+
+	private List<EntryTreeNode<T>> getChildNodes(int node) {
+		List<EntryTreeNode<T>> children = new ArrayList<>();
+		for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+			children.add(new Node(child));
+		}
+		return children;
+	}
+
+	/**
+	 * Collects the nodes below the given node, each before its children, following the sibling
+	 * links rather than recursing.
+	 */
+	private List<EntryTreeNode<T>> getNodes(int top) {
+		List<EntryTreeNode<T>> nodes = new ArrayList<>();
+		if (top != ROOT) {
+			nodes.add(new Node(top));
+		}
+
+		int node = firstChildren[top];
+		while (node != NONE) {
+			nodes.add(new Node(node));
+
+			if (firstChildren[node] != NONE) {
+				node = firstChildren[node];
+				continue;
+			}
+
+			while (node != top && nextSiblings[node] == NONE) {
+				node = parents[node];
+			}
+			node = node != top ? nextSiblings[node] : NONE;
+		}
+
+		return nodes;
+	}
+
+	private int findNodeId(Entry<?> entry) {
+		Entry<?> parent = entry.getParent();
+		int parentNode = parent == null ? ROOT : findNodeId(parent);
+		if (parentNode == NONE) {
+			return NONE;
+		}
+
+		int mask = slots.length - 1;
+		for (int slot = getHomeSlot(parentNode, entry); slots[slot] != 0; slot = (slot + 1) & mask) {
+			int node = slots[slot] - 1;
+			if (parents[node] == parentNode && entries[node].equals(entry)) {
+				return node;
+			}
+		}
+
+		return NONE;
+	}
+
+	private int computeNode(Entry<?> entry) {
+		Entry<?> parent = entry.getParent();
+		int parentNode = parent == null ? ROOT : computeNode(parent);
+
+		int mask = slots.length - 1;
+		int slot = getHomeSlot(parentNode, entry);
+		for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int node = slots[slot] - 1;
+			if (parents[node] == parentNode && entries[node].equals(entry)) {
+				return node;
+			}
+		}
+
+		int node = allocateNode(parentNode, entry);
+		if (nodeCount * 2 > slots.length) {
+			rehash(slots.length * 2);
+		} else {
+			slots[slot] = node + 1;
+		}
+
+		return node;
+	}
+
+	private int getHomeSlot(int parentNode, Entry<?> entry) {
+		int hash = (entry.hashCode() * 31 + parentNode) * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (slots.length - 1);
+	}
+
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int node = ROOT + 1; node < nodeLimit; node++) {
+			if (entries[node] != null) {
+				int slot = getHomeSlot(parents[node], entries[node]);
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = node + 1;
+			}
+		}
+	}
+
+	private int allocateNode(int parentNode, Entry<?> entry) {
+		int node;
+		if (freeNodes != NONE) {
+			node = freeNodes;
+			freeNodes = nextSiblings[node];
+		} else {
+			if (nodeLimit == entries.length) {
+				grow(nodeLimit * 2);
+			}
+			node = nodeLimit++;
+		}
+
+		entries[node] = entry;
+		values[node] = null;
+		parents[node] = parentNode;
+		firstChildren[node] = NONE;
+		lastChildren[node] = NONE;
+		nextSiblings[node] = NONE;
+
+		int last = lastChildren[parentNode];
+		previousSiblings[node] = last;
+		if (last == NONE) {
+			firstChildren[parentNode] = node;
+		} else {
+			nextSiblings[last] = node;
+		}
+		lastChildren[parentNode] = node;
+
+		nodeCount++;
+		return node;
+	}
+
+	private void grow(int capacity) {
+		entries = Arrays.copyOf(entries, capacity);
+		values = Arrays.copyOf(values, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		firstChildren = Arrays.copyOf(firstChildren, capacity);
+		lastChildren = Arrays.copyOf(lastChildren, capacity);
+		previousSiblings = Arrays.copyOf(previousSiblings, capacity);
+		nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+	}
+
+	/**
+	 * Removes the node and then its ancestors, for as long as they have neither a value nor children.
+	 */
+	private void removeDeadFrom(int node) {
+		while (node != ROOT && values[node] == null && firstChildren[node] == NONE) {
+			int parentNode = parents[node];
+			freeNode(node);
+			node = parentNode;
+		}
+	}
+
+	private void freeNode(int node) {
+		removeSlot(node);
+
+		int parentNode = parents[node];
+		int previous = previousSiblings[node];
+		int next = nextSiblings[node];
+		if (previous == NONE) {
+			firstChildren[parentNode] = next;
+		} else {
+			nextSiblings[previous] = next;
+		}
+		if (next == NONE) {
+			lastChildren[parentNode] = previous;
+		} else {
+			previousSiblings[next] = previous;
+		}
+
+		entries[node] = null;
+		values[node] = null;
+		parents[node] = NONE;
+		nextSiblings[node] = freeNodes;
+		freeNodes = node;
+		nodeCount--;
+	}
+
+	/**
+	 * Clears the slot of the node and shifts later slots of the same probe sequence back into it,
+	 * so that lookups never have to skip over deleted slots.
+	 */
+	private void removeSlot(int node) {
+		int mask = slots.length - 1;
+		int hole = getHomeSlot(parents[node], entries[node]);
+		while (slots[hole] != node + 1) {
+			hole = (hole + 1) & mask;
+		}
+
+		for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int candidate = slots[slot] - 1;
+			int home = getHomeSlot(parents[candidate], entries[candidate]);
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				slots[hole] = slots[slot];
+				hole = slot;
+			}
+		}
+
+		slots[hole] = 0;
+	}
+
+	private final class Node implements EntryTreeNode<T> {
+		private final int node;
+		private final Entry<?> entry;
+
+		Node(int node) {
+			this.node = node;
+			this.entry = entries[node];
+		}
+
+		private boolean isAttached() {
+			return entries[node] == entry;
+		}
+
+		@Override
+		@Nullable
+		public T getValue() {
+			return isAttached() ? FlatEntryTree.this.getValue(node) : null;
+		}
+
+		@Override
+		public Entry<?> getEntry() {
+			return entry;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return !isAttached() || (values[node] == null && firstChildren[node] == NONE);
+		}
+
+		@Override
+		public Collection<Entry<?>> getChildren() {
+			return isAttached() ? getChildEntries(node) : Collections.emptyList();
+		}
+
+		@Override
+		public Collection<? extends EntryTreeNode<T>> getChildNodes() {
+			return isAttached() ? FlatEntryTree.this.getChildNodes(node) : Collections.emptyList();
+		}
+
+		@Override
+		public Collection<? extends EntryTreeNode<T>> getNodesRecursively() {
+			return isAttached() ? getNodes(node) : Collections.singletonList(this);
+		}
+	}
+}
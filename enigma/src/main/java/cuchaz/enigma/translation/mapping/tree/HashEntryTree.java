@@ -90,49 +90,47 @@ public class HashEntryTree<T> implements EntryTree<T> {
 	@Override
 	@Nullable
 	public HashTreeNode<T> findNode(Entry<?> target) {
-		List<Entry<?>> parentChain = target.getAncestry();
-		if (parentChain.isEmpty()) {
-			return null;
-		}
-
-		HashTreeNode<T> node = root.get(parentChain.get(0));
-		for (int i = 1; i < parentChain.size(); i++) {
-			if (node == null) {
-				return null;
-			}
-			node = node.getChild(parentChain.get(i));
+		Entry<?> parent = target.getParent();
+		if (parent == null) {
+			return root.get(target);
 		}
 
-		return node;
+		HashTreeNode<T> parentNode = findNode(parent);
+		return parentNode != null ? parentNode.getChild(target) : null;
 	}
 
 	private List<HashTreeNode<T>> computePath(Entry<?> target, boolean make) {
-		List<Entry<?>> ancestry = target.getAncestry();
-		if (ancestry.isEmpty()) {
-			return Collections.emptyList();
-		}
-
-		List<HashTreeNode<T>> path = new ArrayList<>(ancestry.size());
-
-		Entry<?> rootEntry = ancestry.get(0);
-		HashTreeNode<T> node = make ? root.computeIfAbsent(rootEntry, HashTreeNode::new) : root.get(rootEntry);
-		if (node == null) {
-			return Collections.emptyList();
-		}
+		List<HashTreeNode<T>> path = new ArrayList<>(target.getDepth() + 1);
+		return appendPath(path, target, make) ? path : Collections.emptyList();
+	}
 
-		path.add(node);
+	/**
+	 * Appends the nodes from the root down to the target, walking up through the parents of the
+	 * target rather than building its ancestry.
+	 *
+	 * @return whether every node along the path exists
+	 */
+	private boolean appendPath(List<HashTreeNode<T>> path, Entry<?> target, boolean make) {
+		Entry<?> parent = target.getParent();
 
-		for (int i = 1; i < ancestry.size(); i++) {
-			Entry<?> ancestor = ancestry.get(i);
-			node = make ? node.computeChild(ancestor) : node.getChild(ancestor);
-			if (node == null) {
-				return Collections.emptyList();
+		HashTreeNode<T> node;
+		if (parent == null) {
+			node = make ? root.computeIfAbsent(target, HashTreeNode::new) : root.get(target);
+		} else {
+			if (!appendPath(path, parent, make)) {
+				return false;
 			}
 
-			path.add(node);
+			HashTreeNode<T> parentNode = path.get(path.size() - 1);
+			node = make ? parentNode.computeChild(target) : parentNode.getChild(target);
 		}
 
-		return path;
+		if (node == null) {
+			return false;
+		}
+
+		path.add(node);
+		return true;
 	}
 
 	private void removeDeadAlong(List<HashTreeNode<T>> path) {
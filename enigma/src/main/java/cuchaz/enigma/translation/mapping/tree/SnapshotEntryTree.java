@@ -0,0 +1,171 @@
+package cuchaz.enigma.translation.mapping.tree;
+
+import cuchaz.enigma.translation.Translator;
+import cuchaz.enigma.translation.mapping.EntryMap;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryResolver;
+import cuchaz.enigma.translation.representation.entry.Entry;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * The state a tracked tree had at the start of a {@link Generation}, read through to the live tree
+ * without copying it.
+ * <p>
+ * Each generation remembers the value every entry had before its first change in that generation.
+ * An entry's value at the start of a generation is therefore the value remembered by the earliest
+ * generation from then on that changed it, or the live value if none did. Lookups only walk those
+ * generations; everything else is answered by building a copy once, which also happens before the
+ * snapshot itself is modified. Both hold the lock of the tracking tree, so the snapshot can be read on
+ * another thread than the one changing the live tree.
+ */
+final class SnapshotEntryTree<T> implements EntryTree<T> {
+	private final EntryTree<T> live;
+	private final Generation<T> generation;
+	private final Object lock;
+	private volatile EntryTree<T> copy;
+
+	SnapshotEntryTree(EntryTree<T> live, Generation<T> generation, Object lock) {
+		this.live = live;
+		this.generation = generation;
+		this.lock = lock;
+	}
+
+	private EntryTree<T> getCopy() {
+		EntryTree<T> copy = this.copy;
+		if (copy == null) {
+			synchronized (lock) {
+				copy = this.copy;
+				if (copy == null) {
+					Set<Entry<?>> entries = new LinkedHashSet<>();
+					live.getAllEntries().forEach(entries::add);
+					for (Generation<T> g = generation; g != null; g = g.next) {
+						entries.addAll(g.originals.keySet());
+					}
+
+					copy = new HashEntryTree<>();
+					for (Entry<?> entry : entries) {
+						T value = getOriginal(entry);
+						if (value != null) {
+							copy.insert(entry, value);
+						}
+					}
+
+					this.copy = copy;
+				}
+			}
+		}
+
+		return copy;
+	}
+
+	@Override
+	public void insert(Entry<?> entry, T value) {
+		getCopy().insert(entry, value);
+	}
+
+	@Nullable
+	@Override
+	public T remove(Entry<?> entry) {
+		return getCopy().remove(entry);
+	}
+
+	@Nullable
+	@Override
+	public T get(Entry<?> entry) {
+		EntryTree<T> copy = this.copy;
+		if (copy != null) {
+			return copy.get(entry);
+		}
+
+		synchronized (lock) {
+			copy = this.copy;
+			return copy != null ? copy.get(entry) : getOriginal(entry);
+		}
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private T getOriginal(Entry<?> entry) {
+		for (Generation<T> g = generation; g != null; g = g.next) {
+			Object original = g.originals.get(entry);
+			if (original != null) {
+				return original == Generation.ABSENT ? null : (T) original;
+			}
+		}
+
+		return live.get(entry);
+	}
+
+	@Override
+	public Collection<Entry<?>> getChildren(Entry<?> entry) {
+		return getCopy().getChildren(entry);
+	}
+
+	@Override
+	public Collection<Entry<?>> getSiblings(Entry<?> entry) {
+		return getCopy().getSiblings(entry);
+	}
+
+	@Nullable
+	@Override
+	public EntryTreeNode<T> findNode(Entry<?> entry) {
+		return getCopy().findNode(entry);
+	}
+
+	@Override
+	public Stream<EntryTreeNode<T>> getRootNodes() {
+		return getCopy().getRootNodes();
+	}
+
+	@Override
+	public Stream<Entry<?>> getAllEntries() {
+		return getCopy().getAllEntries();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return getCopy().isEmpty();
+	}
+
+	@Override
+	public Iterator<EntryTreeNode<T>> iterator() {
+		return getCopy().iterator();
+	}
+
+	@Override
+	public EntryTree<T> translate(Translator translator, EntryResolver resolver, EntryMap<EntryMapping> mappings) {
+		return getCopy().translate(translator, resolver, mappings);
+	}
+
+	/**
+	 * The changes made to a tracked tree between two deltas. Generations are chained from oldest to
+	 * newest, so a snapshot only keeps alive the generations that came after it.
+	 */
+	static final class Generation<T> {
+		private static final Object ABSENT = new Object();
+
+		private final Map<Entry<?>, Object> originals = new ConcurrentHashMap<>();
+		private volatile Generation<T> next;
+
+		/**
+		 * Remembers the value of the entry before it changes, unless it already changed in this generation.
+		 */
+		void recordOriginal(Entry<?> entry, @Nullable T value) {
+			originals.putIfAbsent(entry, value != null ? value : ABSENT);
+		}
+
+		Generation<T> seal() {
+			Generation<T> next = new Generation<>();
+			this.next = next;
+			return next;
+		}
+	}
+}
@@ -112,7 +112,11 @@ public class ClassEntry extends ParentedEntry<ClassEntry> implements Comparable<
 	}
 
 	public boolean equals(ClassEntry other) {
-		return other != null && Objects.equals(parent, other.parent) && this.name.equals(other.name);
+		if (other == this) {
+			return true;
+		}
+
+		return other != null && fullName.hashCode() == other.fullName.hashCode() && this.name.equals(other.name) && Objects.equals(parent, other.parent);
 	}
 
 	@Override
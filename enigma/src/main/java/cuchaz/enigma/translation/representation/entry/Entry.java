@@ -11,7 +11,7 @@
 
 package cuchaz.enigma.translation.representation.entry;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -119,22 +119,55 @@ public interface Entry<P extends Entry<?>> extends Translatable {
 		return parent.getContainingClass();
 	}
 
+	/**
+	 * Returns the number of ancestors above this entry, which is {@code 0} for top-level classes.
+	 */
+	default int getDepth() {
+		int depth = 0;
+		for (Entry<?> ancestor = getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * Returns the ancestor of this entry at the given depth without building the whole ancestry,
+	 * so that {@code getAncestor(i)} is {@code getAncestry().get(i)}. The top-level class is at
+	 * depth {@code 0} and this entry is at depth {@link #getDepth()}.
+	 *
+	 * @throws IndexOutOfBoundsException if the depth is negative or deeper than this entry
+	 */
+	default Entry<?> getAncestor(int depth) {
+		int ownDepth = getDepth();
+		if (depth < 0 || depth > ownDepth) {
+			throw new IndexOutOfBoundsException("Depth " + depth + " outside of 0.." + ownDepth);
+		}
+
+		Entry<?> ancestor = this;
+		for (int i = ownDepth; i > depth; i--) {
+			ancestor = ancestor.getParent();
+		}
+		return ancestor;
+	}
+
+	/**
+	 * Returns this entry and its ancestors, starting with the top-level class. Prefer
+	 * {@link #getDepth()} and {@link #getAncestor(int)} on hot paths, which don't allocate.
+	 */
 	default List<Entry<?>> getAncestry() {
-		P parent = getParent();
-		List<Entry<?>> entries = new ArrayList<>();
-		if (parent != null) {
-			entries.addAll(parent.getAncestry());
+		Entry<?>[] entries = new Entry<?>[getDepth() + 1];
+		Entry<?> ancestor = this;
+		for (int i = entries.length - 1; i >= 0; i--) {
+			entries[i] = ancestor;
+			ancestor = ancestor.getParent();
 		}
-		entries.add(this);
-		return entries;
+		return Arrays.asList(entries);
 	}
 
 	@Nullable
 	@SuppressWarnings("unchecked")
 	default <E extends Entry<?>> E findAncestor(Class<E> type) {
-		List<Entry<?>> ancestry = getAncestry();
-		for (int i = ancestry.size() - 1; i >= 0; i--) {
-			Entry<?> ancestor = ancestry.get(i);
+		for (Entry<?> ancestor = this; ancestor != null; ancestor = ancestor.getParent()) {
 			if (type.isAssignableFrom(ancestor.getClass())) {
 				return (E) ancestor;
 			}
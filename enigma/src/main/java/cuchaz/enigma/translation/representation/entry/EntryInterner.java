@@ -0,0 +1,76 @@
+package cuchaz.enigma.translation.representation.entry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Hands out one canonical instance for each distinct entry, so that indices holding the same entry
+ * many times share a single object, and comparisons between canonical entries hit the identity
+ * check in {@code equals}. The parent chain of an interned entry, and the super class and interfaces
+ * of a {@link ClassDefEntry}, are interned as well.
+ * <p>
+ * Entries are pooled per concrete class, since a def entry equals the plain entry it was built from
+ * but carries more information. Javadocs don't take part in equality either, so only entries read
+ * from bytecode should be interned.
+ */
+public final class EntryInterner {
+	private final Map<Class<?>, Map<Entry<?>, Entry<?>>> pools = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	public <E extends Entry<?>> E intern(@Nullable E entry) {
+		if (entry == null) {
+			return null;
+		}
+
+		Map<Entry<?>, Entry<?>> pool = pools.computeIfAbsent(entry.getClass(), c -> new ConcurrentHashMap<>());
+		Entry<?> canonical = pool.get(entry);
+		if (canonical != null) {
+			return (E) canonical;
+		}
+
+		Entry<?> interned = withCanonicalParts(entry);
+		canonical = pool.putIfAbsent(interned, interned);
+		return (E) (canonical != null ? canonical : interned);
+	}
+
+	public int size() {
+		return pools.values().stream().mapToInt(Map::size).sum();
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Entry<?> withCanonicalParts(Entry<?> entry) {
+		Entry parent = entry.getParent();
+		if (parent != null) {
+			Entry<?> canonicalParent = intern(parent);
+			if (canonicalParent != parent) {
+				entry = ((Entry) entry).withParent(canonicalParent);
+			}
+		}
+
+		if (entry instanceof ClassDefEntry) {
+			entry = withCanonicalSupertypes((ClassDefEntry) entry);
+		}
+
+		return entry;
+	}
+
+	private ClassDefEntry withCanonicalSupertypes(ClassDefEntry entry) {
+		ClassEntry superClass = intern(entry.getSuperClass());
+		boolean changed = superClass != entry.getSuperClass();
+
+		ClassEntry[] interfaces = entry.getInterfaces().clone();
+		for (int i = 0; i < interfaces.length; i++) {
+			ClassEntry canonical = intern(interfaces[i]);
+			changed |= canonical != interfaces[i];
+			interfaces[i] = canonical;
+		}
+
+		if (!changed) {
+			return entry;
+		}
+
+		return new ClassDefEntry(entry.getParent(), entry.getName(), entry.getSignature(), entry.getAccess(), superClass, interfaces, entry.getJavadocs());
+	}
+}
@@ -25,6 +25,7 @@ import cuchaz.enigma.translation.representation.TypeDescriptor;
 
 public class FieldEntry extends ParentedEntry<ClassEntry> implements Comparable<FieldEntry> {
 	protected final TypeDescriptor desc;
+	private final int hash;
 
 	public FieldEntry(ClassEntry parent, String name, TypeDescriptor desc) {
 		this(parent, name, desc, null);
@@ -37,6 +38,7 @@ public class FieldEntry extends ParentedEntry<ClassEntry> implements Comparable<
 		Preconditions.checkNotNull(desc, "Field descriptor cannot be null");
 
 		this.desc = desc;
+		this.hash = Objects.hash(parent, name, desc);
 	}
 
 	public static FieldEntry parse(String owner, String name, String desc) {
@@ -74,7 +76,7 @@ public class FieldEntry extends ParentedEntry<ClassEntry> implements Comparable<
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.parent, this.name, this.desc);
+		return hash;
 	}
 
 	@Override
@@ -83,7 +85,11 @@ public class FieldEntry extends ParentedEntry<ClassEntry> implements Comparable<
 	}
 
 	public boolean equals(FieldEntry other) {
-		return this.parent.equals(other.parent) && name.equals(other.name) && desc.equals(other.desc);
+		if (other == this) {
+			return true;
+		}
+
+		return hash == other.hash && name.equals(other.name) && desc.equals(other.desc) && this.parent.equals(other.parent);
 	}
 
 	@Override
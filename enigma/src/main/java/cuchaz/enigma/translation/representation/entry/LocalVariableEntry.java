@@ -20,6 +20,7 @@ public class LocalVariableEntry extends ParentedEntry<MethodEntry> implements Co
 
 	protected final int index;
 	protected final boolean parameter;
+	private final int hash;
 
 	public LocalVariableEntry(MethodEntry parent, int index, String name, boolean parameter, String javadoc) {
 		super(parent, name, javadoc);
@@ -29,6 +30,7 @@ public class LocalVariableEntry extends ParentedEntry<MethodEntry> implements Co
 
 		this.index = index;
 		this.parameter = parameter;
+		this.hash = Objects.hash(parent, index);
 	}
 
 	@Override
@@ -71,7 +73,7 @@ public class LocalVariableEntry extends ParentedEntry<MethodEntry> implements Co
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.parent, this.index);
+		return hash;
 	}
 
 	@Override
@@ -80,7 +82,11 @@ public class LocalVariableEntry extends ParentedEntry<MethodEntry> implements Co
 	}
 
 	public boolean equals(LocalVariableEntry other) {
-		return this.parent.equals(other.parent) && this.index == other.index;
+		if (other == this) {
+			return true;
+		}
+
+		return hash == other.hash && this.index == other.index && this.parent.equals(other.parent);
 	}
 
 	@Override
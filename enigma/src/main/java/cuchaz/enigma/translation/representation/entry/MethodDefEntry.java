@@ -72,6 +72,6 @@ public class MethodDefEntry extends MethodEntry implements DefEntry<ClassEntry>
 
 	@Override
 	public MethodDefEntry withParent(ClassEntry parent) {
-		return new MethodDefEntry(new ClassEntry(parent.getFullName()), name, descriptor, signature, access, javadocs);
+		return new MethodDefEntry(normalizeOwner(parent), name, descriptor, signature, access, javadocs);
 	}
 }
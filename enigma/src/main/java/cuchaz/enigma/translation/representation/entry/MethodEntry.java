@@ -26,6 +26,7 @@ import cuchaz.enigma.translation.representation.MethodDescriptor;
 public class MethodEntry extends ParentedEntry<ClassEntry> implements Comparable<MethodEntry> {
 
 	protected final MethodDescriptor descriptor;
+	private final int hash;
 
 	public MethodEntry(ClassEntry parent, String name, MethodDescriptor descriptor) {
 		this(parent, name, descriptor, null);
@@ -38,6 +39,7 @@ public class MethodEntry extends ParentedEntry<ClassEntry> implements Comparable
 		Preconditions.checkNotNull(descriptor, "Method descriptor cannot be null");
 
 		this.descriptor = descriptor;
+		this.hash = Objects.hash(parent, name, descriptor);
 	}
 
 	public static MethodEntry parse(String owner, String name, String desc) {
@@ -74,12 +76,21 @@ public class MethodEntry extends ParentedEntry<ClassEntry> implements Comparable
 
 	@Override
 	public MethodEntry withParent(ClassEntry parent) {
-		return new MethodEntry(new ClassEntry(parent.getFullName()), name, descriptor, javadocs);
+		return new MethodEntry(normalizeOwner(parent), name, descriptor, javadocs);
+	}
+
+	/**
+	 * Rebuilds the owner's outer class chain from its full name, keeping the given instance when
+	 * it already has that shape so canonical owners stay canonical.
+	 */
+	static ClassEntry normalizeOwner(ClassEntry owner) {
+		ClassEntry normalized = new ClassEntry(owner.getFullName());
+		return normalized.equals(owner) ? owner : normalized;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.parent, this.name, this.descriptor);
+		return hash;
 	}
 
 	@Override
@@ -88,7 +99,11 @@ public class MethodEntry extends ParentedEntry<ClassEntry> implements Comparable
 	}
 
 	public boolean equals(MethodEntry other) {
-		return this.parent.equals(other.getParent()) && this.name.equals(other.getName()) && this.descriptor.equals(other.getDesc());
+		if (other == this) {
+			return true;
+		}
+
+		return hash == other.hash && this.name.equals(other.getName()) && this.descriptor.equals(other.getDesc()) && this.parent.equals(other.getParent());
 	}
 
 	@Override
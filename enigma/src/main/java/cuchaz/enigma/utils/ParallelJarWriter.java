@@ -0,0 +1,250 @@
+package cuchaz.enigma.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a JAR file whose entries are compressed ahead of time, so the expensive part of writing
+ * an entry can run on any thread through {@link #prepare(String, byte[], int)}, and only appending
+ * the finished entry with {@link #write(PreparedEntry)} is serialized.
+ * <p>
+ * A compression level of {@link Deflater#NO_COMPRESSION} stores entries uncompressed, like {@code zip -0}.
+ */
+public final class ParallelJarWriter implements Closeable {
+    /**
+     * The compression level used when none is given. Set the {@code enigma.jarCompressionLevel}
+     * system property to a level from 0 (stored) to 9 to override it.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = Integer.getInteger("enigma.jarCompressionLevel", Deflater.DEFAULT_COMPRESSION);
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+
+    private final OutputStream out;
+    private final int dosTime = toDosTime(LocalDateTime.now());
+    private final List<CentralRecord> records = new ArrayList<>();
+    private long offset;
+    private boolean closed;
+
+    public ParallelJarWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+    }
+
+    /**
+     * Compresses an entry for writing. This doesn't touch any writer state and can be called
+     * from any thread.
+     *
+     * @param name             the name of the entry within the JAR
+     * @param data             the uncompressed contents of the entry
+     * @param compressionLevel the deflate level, or {@link Deflater#NO_COMPRESSION} to store the entry
+     */
+    public static PreparedEntry prepare(String name, byte[] data, int compressionLevel) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        if (compressionLevel == Deflater.NO_COMPRESSION) {
+            return new PreparedEntry(name, STORED, crc.getValue(), data.length, data);
+        }
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+
+            return new PreparedEntry(name, DEFLATED, crc.getValue(), data.length, compressed.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Appends a prepared entry to the JAR. Entries appear in the order they are written.
+     */
+    public synchronized void write(PreparedEntry entry) throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+
+        if (offset > 0xFFFFFFFFL) {
+            throw new ZipException("JAR file is too large");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(30 + entry.name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) entry.method);
+        header.putInt(dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt(entry.data.length);
+        header.putInt(entry.size);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.put(entry.name);
+
+        out.write(header.array());
+        out.write(entry.data);
+
+        records.add(new CentralRecord(entry.name, entry.method, entry.crc, entry.data.length, entry.size, offset));
+        offset += header.capacity() + entry.data.length;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            long directoryOffset = offset;
+            for (CentralRecord record : records) {
+                ByteBuffer header = ByteBuffer.allocate(46 + record.name.length).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(CENTRAL_HEADER_SIGNATURE);
+                header.putShort((short) VERSION);
+                header.putShort((short) VERSION);
+                header.putShort((short) UTF8_FLAG);
+                header.putShort((short) record.method);
+                header.putInt(dosTime);
+                header.putInt((int) record.crc);
+                header.putInt(record.compressedSize);
+                header.putInt(record.size);
+                header.putShort((short) record.name.length);
+                header.putShort((short) 0); // extra length
+                header.putShort((short) 0); // comment length
+                header.putShort((short) 0); // disk number
+                header.putShort((short) 0); // internal attributes
+                header.putInt(0); // external attributes
+                header.putInt((int) record.offset);
+                header.put(record.name);
+
+                out.write(header.array());
+                offset += header.capacity();
+            }
+
+            writeEnd(directoryOffset, offset - directoryOffset);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeEnd(long directoryOffset, long directorySize) throws IOException {
+        boolean zip64 = records.size() >= 0xFFFF || directoryOffset >= 0xFFFFFFFFL;
+
+        ByteBuffer end = ByteBuffer.allocate((zip64 ? 56 + 20 : 0) + 22).order(ByteOrder.LITTLE_ENDIAN);
+        if (zip64) {
+            end.putInt(ZIP64_END_SIGNATURE);
+            end.putLong(44); // size of the remaining record
+            end.putShort((short) ZIP64_VERSION);
+            end.putShort((short) ZIP64_VERSION);
+            end.putInt(0); // disk number
+            end.putInt(0); // disk with the central directory
+            end.putLong(records.size());
+            end.putLong(records.size());
+            end.putLong(directorySize);
+            end.putLong(directoryOffset);
+
+            end.putInt(ZIP64_LOCATOR_SIGNATURE);
+            end.putInt(0); // disk with the ZIP64 end record
+            end.putLong(directoryOffset + directorySize);
+            end.putInt(1); // total disks
+        }
+
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0); // disk number
+        end.putShort((short) 0); // disk with the central directory
+        end.putShort((short) Math.min(records.size(), 0xFFFF));
+        end.putShort((short) Math.min(records.size(), 0xFFFF));
+        end.putInt((int) Math.min(directorySize, 0xFFFFFFFFL));
+        end.putInt((int) Math.min(directoryOffset, 0xFFFFFFFFL));
+        end.putShort((short) 0); // comment length
+
+        out.write(end.array());
+    }
+
+    private static int toDosTime(LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    /**
+     * An entry that has been compressed and is ready to be appended to a JAR.
+     */
+    public static final class PreparedEntry {
+        private final byte[] name;
+        private final int method;
+        private final long crc;
+        private final int size;
+        private final byte[] data;
+
+        PreparedEntry(String name, int method, long crc, int size, byte[] data) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        public String getName() {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The central directory fields of a written entry, kept without its data.
+     */
+    private static final class CentralRecord {
+        final byte[] name;
+        final int method;
+        final long crc;
+        final int compressedSize;
+        final int size;
+        final long offset;
+
+        CentralRecord(byte[] name, int method, long crc, int compressedSize, int size, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
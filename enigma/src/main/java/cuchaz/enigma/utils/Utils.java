@@ -12,13 +12,18 @@
 package cuchaz.enigma.utils;
 
 import com.google.common.io.CharStreams;
+import com.google.common.primitives.Longs;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
@@ -80,6 +85,33 @@ public class Utils {
         return digest.digest();
     }
 
+    /**
+     * Hashes the runtime and class path this JVM loads library classes from. Class path elements
+     * are identified by their path, size and modification time rather than by their contents.
+     */
+    public static byte[] classpathSha1() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Algorithm guaranteed to be supported
+            throw new RuntimeException(e);
+        }
+        digest.update(System.getProperty("java.runtime.version", "").getBytes(StandardCharsets.UTF_8));
+        for (String element : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            digest.update((byte) 0);
+            digest.update(element.getBytes(StandardCharsets.UTF_8));
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(element), BasicFileAttributes.class);
+                digest.update(Longs.toByteArray(attributes.size()));
+                digest.update(Longs.toByteArray(attributes.lastModifiedTime().toMillis()));
+            } catch (IOException | InvalidPathException e) {
+                // missing elements only contribute their path
+            }
+        }
+        return digest.digest();
+    }
+
     public static void withLock(Lock l, Runnable op) {
         try {
             l.lock();
@@ -0,0 +1,53 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+
+/**
+ * Times mapping tree lookups and ancestor walks over nested entries. Run with an optional number of
+ * classes, which defaults to 10000.
+ */
+public final class EntryAncestryBenchmark {
+	private static final int ROUNDS = 10;
+
+	public static void main(String... args) {
+		int classes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+		List<Entry<?>> entries = new ArrayList<>();
+		EntryTree<String> tree = new HashEntryTree<>();
+		for (int i = 0; i < classes; i++) {
+			ClassEntry inner = newClass("a" + i + "$b");
+			for (int j = 0; j < 4; j++) {
+				MethodEntry method = newMethod(inner, "m" + j, "(II)V");
+				for (int k = 1; k <= 2; k++) {
+					LocalVariableEntry parameter = new LocalVariableEntry(method, k, "p" + k, true, null);
+					entries.add(parameter);
+					tree.insert(parameter, "parameter");
+				}
+			}
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			int found = 0;
+			for (Entry<?> entry : entries) {
+				if (tree.get(entry) != null && tree.findNode(entry.getAncestor(1)) != null && entry.findAncestor(MethodEntry.class) != null) {
+					found++;
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("round %d: %d lookups in %.2f ms (%.1f ns each)%n", round, found, elapsed / 1e6, (double) elapsed / entries.size());
+		}
+	}
+}
@@ -22,8 +22,7 @@ import java.nio.file.Paths;
 
 import static cuchaz.enigma.TestEntryFactory.newClass;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.contains;
-import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.*;
 
 public class PackageVisibilityIndexTest {
 	public static final Path JAR = Paths.get("build/test-obf/packageAccess.jar");
@@ -52,4 +51,15 @@ public class PackageVisibilityIndexTest {
 				contains(KEEP)
 		));
 	}
+
+	@Test
+	public void partitionIndices() {
+		PackageVisibilityIndex visibilityIndex = jarIndex.getPackageVisibilityIndex();
+		int base = visibilityIndex.getPartitionIndex(BASE);
+		assertThat(visibilityIndex.getPartitionIndex(SAME_PACKAGE_CHILD_INNER), is(base));
+		assertThat(visibilityIndex.getPartitionIndex(OTHER_PACKAGE_CHILD), not(base));
+		assertThat(visibilityIndex.getPartitionIndex(newClass("java/lang/Object")), is(-1));
+		assertThat(visibilityIndex.getPartitionCount(), is(3));
+		assertThat(visibilityIndex.getPartitionClasses(base), arrayContainingInAnyOrder(BASE, SAME_PACKAGE_CHILD, SAME_PACKAGE_CHILD_INNER));
+	}
 }
@@ -0,0 +1,36 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.source.SourceRemapper;
+import cuchaz.enigma.source.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times remapping a generated source where every line has a renamed token. Run with an optional
+ * number of tokens, which defaults to 200000.
+ */
+public final class SourceRemapperBenchmark {
+	private static final int ROUNDS = 10;
+
+	public static void main(String... args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+		StringBuilder source = new StringBuilder();
+		List<Token> tokens = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			source.append("    ");
+			tokens.add(new Token(source.length(), source.length() + 1, "a"));
+			source.append("a;\n");
+		}
+
+		SourceRemapper remapper = new SourceRemapper(source.toString(), tokens);
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			SourceRemapper.Result result = remapper.remap((token, movedToken) -> "field" + token.start);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("round %d: %d chars in %.2f ms%n", round, result.getSource().length(), elapsed / 1e6);
+		}
+	}
+}
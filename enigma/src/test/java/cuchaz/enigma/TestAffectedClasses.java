@@ -0,0 +1,155 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.analysis.AffectedClassCollector;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.MappingDelta;
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static cuchaz.enigma.TestEntryFactory.newField;
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that member renames reach the classes that name the member in ways the reference index
+ * doesn't record. The classes are generated, since the compiler only emits some of these shapes
+ * for code that doesn't survive obfuscation.
+ */
+public class TestAffectedClasses {
+	private static Path jar;
+	private static JarIndex index;
+	private static AffectedClassCollector collector;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		jar = Files.createTempFile("enigma-affected", ".jar");
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			// a.m() declares the local class a$1
+			ClassWriter a = classWriter("a");
+			method(a, Opcodes.ACC_STATIC, "m", "()V");
+			a.visitInnerClass("a$1", null, null, 0);
+			write(out, a);
+
+			ClassWriter local = classWriter("a$1");
+			local.visitOuterClass("a", "m", "()V");
+			local.visitInnerClass("a$1", null, null, 0);
+			write(out, local);
+
+			// b.A is an enum constant used as an annotation value by c
+			ClassWriter b = classWriter("b");
+			b.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "A", "Lb;", null, null).visitEnd();
+			write(out, b);
+
+			ClassWriter c = classWriter("c");
+			c.visitAnnotation("Lz;", true).visitEnum("value", "Lb;", "A");
+			write(out, c);
+
+			// d passes a handle to e.f() to a bootstrap method that isn't the lambda metafactory
+			ClassWriter d = classWriter("d");
+			MethodVisitor run = d.visitMethod(Opcodes.ACC_STATIC, "run", "()V", null, null);
+			run.visitCode();
+			Handle bootstrap = new Handle(Opcodes.H_INVOKESTATIC, "d", "bootstrap", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;)Ljava/lang/invoke/CallSite;", false);
+			run.visitInvokeDynamicInsn("call", "()V", bootstrap, new Handle(Opcodes.H_INVOKESTATIC, "e", "f", "()V", false));
+			run.visitInsn(Opcodes.RETURN);
+			run.visitMaxs(0, 0);
+			run.visitEnd();
+			write(out, d);
+
+			ClassWriter e = classWriter("e");
+			method(e, Opcodes.ACC_STATIC, "f", "()V");
+			write(out, e);
+
+			// g has members with the same names and descriptors, but nothing to do with the others
+			ClassWriter g = classWriter("g");
+			method(g, Opcodes.ACC_STATIC, "m", "()V");
+			method(g, Opcodes.ACC_STATIC, "f", "()V");
+			g.visitField(Opcodes.ACC_STATIC, "A", "Lb;", null, null).visitEnd();
+			write(out, g);
+		}
+
+		JarClassProvider jcp = new JarClassProvider(jar);
+		CachingClassProvider classProvider = new CachingClassProvider(jcp);
+		index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), classProvider, ProgressListener.none());
+		collector = new AffectedClassCollector(index, classProvider);
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception {
+		Files.deleteIfExists(jar);
+	}
+
+	@Test
+	public void enclosingMethodRenameAffectsLocalClass() {
+		Set<ClassEntry> affected = collect(newMethod("a", "m", "()V"));
+
+		assertTrue(affected.contains(newClass("a$1")));
+		assertFalse(affected.contains(newClass("c")));
+	}
+
+	@Test
+	public void enumConstantRenameAffectsAnnotationUsers() {
+		Set<ClassEntry> affected = collect(newField("b", "A", "Lb;"));
+
+		assertTrue(affected.contains(newClass("c")));
+		assertFalse(affected.contains(newClass("a$1")));
+	}
+
+	@Test
+	public void methodRenameAffectsMethodHandleUsers() {
+		Set<ClassEntry> affected = collect(newMethod("e", "f", "()V"));
+
+		assertTrue(affected.contains(newClass("d")));
+		assertFalse(affected.contains(newClass("g")));
+	}
+
+	private static Set<ClassEntry> collect(Entry<?> renamed) {
+		EntryTree<EntryMapping> mappings = new HashEntryTree<>();
+		mappings.insert(renamed, new EntryMapping("renamed"));
+		return collector.collect(MappingDelta.compare(new HashEntryTree<>(), mappings));
+	}
+
+	private static ClassWriter classWriter(String name) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+		return writer;
+	}
+
+	private static void method(ClassWriter writer, int access, String name, String desc) {
+		MethodVisitor method = writer.visitMethod(access, name, desc, null, null);
+		method.visitCode();
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+	}
+
+	private static void write(JarOutputStream out, ClassWriter writer) throws Exception {
+		writer.visitEnd();
+		byte[] bytes = writer.toByteArray();
+		String name = new ClassReader(bytes).getClassName();
+		out.putNextEntry(new JarEntry(name + ".class"));
+		out.write(bytes);
+		out.closeEntry();
+	}
+}
@@ -0,0 +1,53 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.ClassCacheParameters;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCachingClassProvider {
+	@Test
+	public void recordsHitsAndMisses() throws Exception {
+		try (JarClassProvider jcp = new JarClassProvider(Paths.get("build/test-obf/translation.jar"))) {
+			CachingClassProvider cache = new CachingClassProvider(jcp);
+			String name = jcp.getClassNames().iterator().next();
+
+			assertSame(cache.get(name), cache.get(name));
+			assertEquals(1, cache.getStats().hitCount());
+			assertEquals(1, cache.getStats().missCount());
+		}
+	}
+
+	@Test
+	public void evictsByWeight() throws Exception {
+		try (JarClassProvider jcp = new JarClassProvider(Paths.get("build/test-obf/translation.jar"))) {
+			// a budget of 1 byte can't hold any class, so every class is evicted as soon as it's loaded
+			CachingClassProvider cache = new CachingClassProvider(jcp, new ClassCacheParameters(1L, null, 1, true));
+
+			for (String name : jcp.getClassNames()) {
+				cache.get(name);
+			}
+
+			assertEquals(0, cache.size());
+			assertEquals(jcp.getClassNames().size(), cache.getStats().evictionCount());
+		}
+	}
+
+	@Test
+	public void readsProfileParameters() {
+		EnigmaProfile profile = EnigmaProfile.parse(new StringReader("{\"services\": {}, \"class_cache\": {\"maximum_weight\": 1024, \"concurrency_level\": 2}}"));
+		ClassCacheParameters parameters = profile.getClassCacheParameters();
+
+		assertEquals(1024, parameters.getMaximumWeight());
+		assertEquals(2, parameters.getConcurrencyLevel());
+		assertEquals(0, parameters.getExpireAfterAccessSeconds());
+		assertTrue(parameters.isRecordStats());
+	}
+}
@@ -34,7 +34,7 @@ public class TestDeobfed {
 
 	@BeforeClass
 	public static void beforeClass() throws Exception {
-		Enigma enigma = Enigma.create();
+		Enigma enigma = Enigma.builder().setIndexCacheDirectory(null).setSourceCacheDirectory(null).build();
 
 		Files.createDirectories(DEOBF.getParent());
 		EnigmaProject obfProject = enigma.openJar(OBF, new ClasspathClassProvider(), ProgressListener.none());
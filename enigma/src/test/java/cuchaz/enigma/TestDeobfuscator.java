@@ -22,7 +22,7 @@ import java.nio.file.Paths;
 
 public class TestDeobfuscator {
 	private EnigmaProject openProject() throws IOException {
-		Enigma enigma = Enigma.create();
+		Enigma enigma = Enigma.builder().setIndexCacheDirectory(null).setSourceCacheDirectory(null).build();
 		return enigma.openJar(Paths.get("build/test-obf/loneClass.jar"), new ClasspathClassProvider(), ProgressListener.none());
 	}
 
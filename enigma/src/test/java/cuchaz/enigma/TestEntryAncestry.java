@@ -0,0 +1,55 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import org.junit.Test;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestEntryAncestry {
+	private static final ClassEntry OUTER = newClass("a");
+	private static final ClassEntry INNER = newClass("a$b");
+	private static final MethodEntry METHOD = newMethod(INNER, "c", "(I)V");
+	private static final LocalVariableEntry PARAMETER = new LocalVariableEntry(METHOD, 1, "d", true, null);
+
+	@Test
+	public void indexedAncestors() {
+		assertThat(OUTER.getDepth(), is(0));
+		assertThat(PARAMETER.getDepth(), is(3));
+
+		for (int depth = 0; depth <= PARAMETER.getDepth(); depth++) {
+			assertThat(PARAMETER.getAncestor(depth), sameInstance(PARAMETER.getAncestry().get(depth)));
+		}
+
+		assertThat(PARAMETER.getAncestry(), contains(OUTER, INNER, METHOD, PARAMETER));
+		assertThat(PARAMETER.findAncestor(MethodEntry.class), is(METHOD));
+		assertThat(PARAMETER.findAncestor(ClassEntry.class), is(INNER));
+		assertThat(INNER.findAncestor(MethodEntry.class), nullValue());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void ancestorBelowEntry() {
+		METHOD.getAncestor(3);
+	}
+
+	@Test
+	public void treeWalksParents() {
+		EntryTree<String> tree = new HashEntryTree<>();
+		tree.insert(PARAMETER, "parameter");
+
+		assertThat(tree.get(PARAMETER), is("parameter"));
+		assertThat(tree.findNode(METHOD), notNullValue());
+		assertThat(tree.get(METHOD), nullValue());
+		assertThat(tree.findNode(newMethod(INNER, "e", "()V")), nullValue());
+
+		assertThat(tree.remove(PARAMETER), is("parameter"));
+		assertThat(tree.findNode(OUTER), nullValue());
+	}
+}
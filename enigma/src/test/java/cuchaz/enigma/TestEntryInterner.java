@@ -0,0 +1,69 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.Signature;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.EntryInterner;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static cuchaz.enigma.TestEntryFactory.newField;
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestEntryInterner {
+	private static final Path JAR = Paths.get("build/test-obf/inheritanceTree.jar");
+
+	@Test
+	public void equalEntriesShareAnInstance() {
+		EntryInterner interner = new EntryInterner();
+
+		MethodEntry first = interner.intern(newMethod("a$b", "a", "()V"));
+		MethodEntry second = interner.intern(newMethod("a$b", "a", "()V"));
+
+		assertThat(second, sameInstance(first));
+		assertThat(first.getParent(), sameInstance(interner.intern(newClass("a$b"))));
+		assertThat(first.getParent().getParent(), sameInstance(interner.intern(newClass("a"))));
+	}
+
+	@Test
+	public void defEntriesArePooledSeparately() {
+		EntryInterner interner = new EntryInterner();
+
+		MethodEntry method = interner.intern(newMethod("a", "a", "()V"));
+		MethodDefEntry def = interner.intern(new MethodDefEntry(newClass("a"), "a", method.getDesc(), Signature.createSignature(null), new AccessFlags(0)));
+
+		assertThat(def, equalTo(method));
+		assertThat(def, not(sameInstance(method)));
+		assertThat(def.getParent(), sameInstance(method.getParent()));
+	}
+
+	@Test
+	public void indexedReferencesAreCanonical() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+
+		EntryInterner interner = index.getEntryInterner();
+		FieldEntry nameField = newField("a", "a", "Ljava/lang/String;");
+		Collection<EntryReference<FieldEntry, MethodDefEntry>> references = index.getReferenceIndex().getReferencesToField(nameField);
+
+		assertThat(references, not(empty()));
+		for (EntryReference<FieldEntry, MethodDefEntry> reference : references) {
+			assertThat(reference.entry, sameInstance(interner.intern(reference.entry)));
+			assertThat(reference.context, sameInstance(interner.intern(reference.context)));
+		}
+	}
+}
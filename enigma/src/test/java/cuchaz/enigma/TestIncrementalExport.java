@@ -0,0 +1,156 @@
+package cuchaz.enigma;
+
+import com.google.common.io.ByteStreams;
+import cuchaz.enigma.classprovider.ClasspathClassProvider;
+import cuchaz.enigma.source.Decompilers;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.MappingDelta;
+import cuchaz.enigma.translation.mapping.serde.enigma.EnigmaMappingsReader;
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static cuchaz.enigma.TestEntryFactory.newField;
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestIncrementalExport {
+	private static final Path JAR = Paths.get("build/test-obf/translation.jar");
+	private static final Path MAPPINGS = Paths.get("src/test/resources/translation.mappings");
+
+	@Test
+	public void memberChangesOnlyAffectUsers() throws Exception {
+		EnigmaProject project = openProject();
+		EntryTree<EntryMapping> base = readMappings(project);
+		EntryTree<EntryMapping> changed = readMappings(project);
+		changed.insert(newField("a", "a", "I"), new EntryMapping("renamedField"));
+		project.setMappings(changed);
+
+		Set<ClassEntry> affected = project.getAffectedClasses(MappingDelta.compare(base, project.getMapper().getObfToDeobf()));
+
+		assertTrue(affected.contains(newClass("a")));
+		assertTrue(affected.size() < project.getJarIndex().getEntryIndex().getClasses().size());
+	}
+
+	@Test
+	public void classChangesAffectInnerClasses() throws Exception {
+		EnigmaProject project = openProject();
+		EntryTree<EntryMapping> base = readMappings(project);
+		EntryTree<EntryMapping> changed = readMappings(project);
+		changed.insert(newClass("g"), new EntryMapping("deobf/G_Renamed"));
+		project.setMappings(changed);
+
+		Set<ClassEntry> affected = project.getAffectedClasses(MappingDelta.compare(base, project.getMapper().getObfToDeobf()));
+
+		assertTrue(affected.contains(newClass("g")));
+		assertTrue(affected.contains(newClass("g$a$a")));
+		assertFalse(affected.contains(newClass("a")));
+	}
+
+	@Test
+	public void updatedOutputMatchesFullExport() throws Exception {
+		EnigmaProject project = openProject();
+		Path updatedJar = Files.createTempFile("enigma-updated", ".jar");
+		Path expectedJar = Files.createTempFile("enigma-expected", ".jar");
+		Path updatedSources = Files.createTempDirectory("enigma-updated");
+		Path expectedSources = Files.createTempDirectory("enigma-expected");
+
+		try {
+			EntryTree<EntryMapping> base = readMappings(project);
+			project.setMappings(base);
+			project.writeRemappedJar(updatedJar, ProgressListener.none());
+			project.writeDecompiledSources(updatedSources, ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE);
+
+			EntryTree<EntryMapping> changed = readMappings(project);
+			changed.insert(newClass("g"), new EntryMapping("deobf/G_Renamed"));
+			changed.insert(newMethod("b", "a", "()I"), new EntryMapping("renamedMethod"));
+			changed.insert(newField("a", "a", "I"), new EntryMapping("renamedField"));
+			project.setMappings(changed);
+
+			MappingDelta<EntryMapping> delta = MappingDelta.compare(base, project.getMapper().getObfToDeobf());
+			project.updateRemappedJar(updatedJar, delta, ProgressListener.none());
+			project.updateDecompiledSources(updatedSources, delta, ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE);
+
+			project.writeRemappedJar(expectedJar, ProgressListener.none());
+			project.writeDecompiledSources(expectedSources, ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE);
+
+			Map<String, byte[]> expectedEntries = readJar(expectedJar);
+			Map<String, byte[]> updatedEntries = readJar(updatedJar);
+			assertEquals(expectedEntries.keySet(), updatedEntries.keySet());
+			for (String name : expectedEntries.keySet()) {
+				assertArrayEquals(name, expectedEntries.get(name), updatedEntries.get(name));
+			}
+
+			Map<String, byte[]> expectedFiles = readDirectory(expectedSources);
+			Map<String, byte[]> updatedFiles = readDirectory(updatedSources);
+			assertEquals(expectedFiles.keySet(), updatedFiles.keySet());
+			for (String name : expectedFiles.keySet()) {
+				assertArrayEquals(name, expectedFiles.get(name), updatedFiles.get(name));
+			}
+		} finally {
+			Files.deleteIfExists(updatedJar);
+			Files.deleteIfExists(expectedJar);
+			deleteDirectory(updatedSources);
+			deleteDirectory(expectedSources);
+		}
+	}
+
+	private static EnigmaProject openProject() throws IOException {
+		return Enigma.builder().setIndexCacheDirectory(null).setSourceCacheDirectory(null).build().openJar(JAR, new ClasspathClassProvider(), ProgressListener.none());
+	}
+
+	private static EntryTree<EntryMapping> readMappings(EnigmaProject project) throws Exception {
+		return EnigmaMappingsReader.FILE.read(MAPPINGS, ProgressListener.none(), project.getEnigma().getProfile().getMappingSaveParameters());
+	}
+
+	private static Map<String, byte[]> readJar(Path path) throws IOException {
+		Map<String, byte[]> entries = new HashMap<>();
+
+		try (JarFile jar = new JarFile(path.toFile())) {
+			for (JarEntry entry : Collections.list(jar.entries())) {
+				if (!entry.isDirectory()) {
+					entries.put(entry.getName(), ByteStreams.toByteArray(jar.getInputStream(entry)));
+				}
+			}
+		}
+
+		return entries;
+	}
+
+	private static Map<String, byte[]> readDirectory(Path directory) throws IOException {
+		Map<String, byte[]> files = new HashMap<>();
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				files.put(directory.relativize(path).toString(), Files.readAllBytes(path));
+			}
+		}
+
+		return files;
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.analysis.index.EntryIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.ClasspathClassProvider;
+import cuchaz.enigma.source.*;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.validation.ValidationContext;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestIncrementalRemap {
+	private final EnigmaProject project;
+	private final Map<ClassEntry, DecompiledClassSource> sources = new HashMap<>();
+
+	public TestIncrementalRemap() throws Exception {
+		project = Enigma.builder().setIndexCacheDirectory(null).setSourceCacheDirectory(null).build().openJar(Paths.get("build/test-obf/inheritanceTree.jar"), new ClasspathClassProvider(), ProgressListener.none());
+		Decompiler decompiler = Decompilers.PROCYON.create(new CachingClassProvider(project.getClassProvider()), new SourceSettings(true, true));
+
+		for (ClassEntry entry : project.getJarIndex().getEntryIndex().getClasses()) {
+			if (entry.isInnerClass()) {
+				continue;
+			}
+
+			SourceIndex index = decompiler.getSource(entry.getFullName()).index();
+			index.resolveReferences(project.getMapper().getObfResolver());
+			sources.put(entry, new DecompiledClassSource(entry, index).remapSource(project, project.getMapper().getDeobfuscator()));
+		}
+	}
+
+	@Test
+	public void matchesFullRemap() {
+		EntryIndex entryIndex = project.getJarIndex().getEntryIndex();
+		List<Entry<?>> entries = new ArrayList<>();
+		entries.add(new ClassEntry("a"));
+		entries.addAll(entryIndex.getFields(new ClassEntry("a")));
+		for (MethodEntry method : entryIndex.getMethods(new ClassEntry("a"))) {
+			if (!method.isConstructor()) {
+				entries.add(method);
+			}
+		}
+
+		int i = 0;
+		for (Entry<?> entry : entries) {
+			String name = entry instanceof ClassEntry ? "pkg/RenamedClass" : entry instanceof FieldEntry ? "renamedField" + i++ : "renamedMethod" + i++;
+			Set<Entry<?>> changed = rename(entry, name);
+			assertFalse(changed.isEmpty());
+
+			for (ClassEntry classEntry : sources.keySet()) {
+				DecompiledClassSource previous = sources.get(classEntry);
+				DecompiledClassSource incremental = previous.remapEntries(project, project.getMapper().getDeobfuscator(), changed);
+				DecompiledClassSource full = previous.remapSource(project, project.getMapper().getDeobfuscator());
+
+				assertEquals(classEntry.toString(), full.toString(), incremental.toString());
+				assertSameTokens(full, incremental);
+				assertEquals(full.getHighlightedTokens(), incremental.getHighlightedTokens());
+				sources.put(classEntry, incremental);
+			}
+		}
+	}
+
+	@Test
+	public void unrelatedSourcesAreUntouched() {
+		DecompiledClassSource keep = sources.get(new ClassEntry("cuchaz/enigma/inputs/Keep"));
+		Set<Entry<?>> changed = rename(new ClassEntry("a"), "Renamed");
+
+		assertFalse(keep.dependsOn(changed));
+		assertSame(keep, keep.remapEntries(project, project.getMapper().getDeobfuscator(), changed));
+		assertTrue(sources.get(new ClassEntry("a")).dependsOn(changed));
+	}
+
+	private Set<Entry<?>> rename(Entry<?> entry, String name) {
+		Set<Entry<?>> changed = new HashSet<>();
+		EntryRemapper mapper = project.getMapper();
+		mapper.getObfToDeobf().addChangeListener(changed::add);
+
+		ValidationContext vc = new ValidationContext();
+		mapper.mapFromObf(vc, entry, new EntryMapping(name));
+		assertTrue(vc.canProceed());
+		return changed;
+	}
+
+	private static void assertSameTokens(DecompiledClassSource expected, DecompiledClassSource actual) {
+		List<Token> expectedTokens = new ArrayList<>();
+		expected.getIndex().referenceTokens().forEach(expectedTokens::add);
+		List<Token> actualTokens = new ArrayList<>();
+		actual.getIndex().referenceTokens().forEach(actualTokens::add);
+		assertEquals(expectedTokens, actualTokens);
+
+		for (Token token : expectedTokens) {
+			assertEquals(expected.getIndex().getReference(token), actual.getIndex().getReference(token));
+		}
+	}
+}
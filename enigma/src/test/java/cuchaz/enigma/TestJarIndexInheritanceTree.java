@@ -19,6 +19,7 @@ import cuchaz.enigma.classprovider.CachingClassProvider;
 import cuchaz.enigma.classprovider.JarClassProvider;
 import cuchaz.enigma.translation.mapping.EntryResolver;
 import cuchaz.enigma.translation.mapping.IndexEntryResolver;
+import cuchaz.enigma.translation.mapping.ResolutionStrategy;
 import cuchaz.enigma.translation.representation.AccessFlags;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.FieldEntry;
@@ -87,12 +88,44 @@ public class TestJarIndexInheritanceTree {
 		assertThat(index.getChildren(subClassB), is(empty()));
 	}
 
+	@Test
+	public void hierarchyClosure() {
+		InheritanceIndex index = this.index.getInheritanceIndex();
+
+		assertThat(index.getAncestors(subClassAA), contains(subClassA, baseClass));
+		assertThat(index.getDescendants(baseClass), containsInAnyOrder(subClassA, subClassAA, subClassB));
+		assertThat(index.getDescendants(subClassA), contains(subClassAA));
+
+		assertThat(index.isAncestor(subClassAA, baseClass), is(true));
+		assertThat(index.isAncestor(subClassAA, subClassA), is(true));
+		assertThat(index.isAncestor(baseClass, subClassAA), is(false));
+		assertThat(index.isAncestor(subClassB, subClassA), is(false));
+		assertThat(index.computeClassRelation(subClassAA, baseClass), is(InheritanceIndex.Relation.RELATED));
+		assertThat(index.computeClassRelation(subClassB, subClassA), is(InheritanceIndex.Relation.UNRELATED));
+	}
+
 	@Test
 	public void access() {
 		assertThat(index.getEntryIndex().getFieldAccess(nameField), is(new AccessFlags(Opcodes.ACC_PRIVATE)));
 		assertThat(index.getEntryIndex().getFieldAccess(numThingsField), is(new AccessFlags(Opcodes.ACC_PRIVATE)));
 	}
 
+	@Test
+	public void cachedResolution() {
+		IndexEntryResolver resolver = new IndexEntryResolver(index);
+		MethodEntry getName = newMethod(subClassAA, "a", "()Ljava/lang/String;");
+
+		Collection<MethodEntry> first = resolver.resolveEquivalentMethods(getName);
+		Collection<MethodEntry> second = resolver.resolveEquivalentMethods(getName);
+		assertThat(second, is(first));
+		assertThat(resolver.getStats().hitCount(), is(1L));
+
+		MethodEntry inherited = newMethod(subClassA, "a", "()Ljava/lang/String;");
+		assertThat(resolver.resolveFirstEntry(inherited, ResolutionStrategy.RESOLVE_ROOT), is(newMethod(baseClass, "a", "()Ljava/lang/String;")));
+		assertThat(resolver.resolveFirstEntry(inherited, ResolutionStrategy.RESOLVE_ROOT), is(newMethod(baseClass, "a", "()Ljava/lang/String;")));
+		assertThat(resolver.getStats().hitCount(), is(2L));
+	}
+
 	@Test
 	public void relatedMethodImplementations() {
 
@@ -73,6 +73,15 @@ public class TestJarIndexLoneClass {
 		assertThat(entryIndex.getFieldAccess(newField("a", "a", "LFoo;")), is(nullValue()));
 	}
 
+	@Test
+	public void membersByOwner() {
+		EntryIndex entryIndex = index.getEntryIndex();
+		assertThat(entryIndex.getFields(newClass("a")), contains(newField("a", "a", "Ljava/lang/String;")));
+		assertThat(entryIndex.getMethods(newClass("a")), hasItem(newMethod("a", "a", "()Ljava/lang/String;")));
+		assertThat(entryIndex.getFields(newClass("b")), is(empty()));
+		assertThat(entryIndex.getRecordGetter(newField("a", "a", "Ljava/lang/String;")), is(nullValue()));
+	}
+
 	@Test
 	public void classInheritance() {
 		IndexTreeBuilder treeBuilder = new IndexTreeBuilder(index);
@@ -0,0 +1,79 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.ReferenceIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestJarIndexParallel {
+	private static final String[] JARS = {"translation", "inheritanceTree", "innerClasses", "constructors", "packageAccess"};
+
+	@Test
+	public void parallelMatchesSequential() throws Exception {
+		for (String jar : JARS) {
+			Path path = Paths.get("build/test-obf/" + jar + ".jar");
+			JarIndex sequential = index(path, false);
+			JarIndex parallel = index(path, true);
+
+			assertEquals(jar, sequential.getEntryIndex().getClasses(), parallel.getEntryIndex().getClasses());
+			assertEquals(jar, sequential.getEntryIndex().getMethods(), parallel.getEntryIndex().getMethods());
+			assertEquals(jar, sequential.getEntryIndex().getFields(), parallel.getEntryIndex().getFields());
+			assertEquals(jar, sequential.getChildrenByClass(), parallel.getChildrenByClass());
+			assertEquals(jar, sequential.getBridgeMethodIndex().getBridgeToSpecialized(), parallel.getBridgeMethodIndex().getBridgeToSpecialized());
+			assertEquals(jar, sequential.getPackageVisibilityIndex().getPartitions(), parallel.getPackageVisibilityIndex().getPartitions());
+
+			ReferenceIndex expected = sequential.getReferenceIndex();
+			ReferenceIndex actual = parallel.getReferenceIndex();
+
+			for (ClassEntry entry : sequential.getEntryIndex().getClasses()) {
+				assertEquals(entry.toString(), sequential.getInheritanceIndex().getParents(entry), parallel.getInheritanceIndex().getParents(entry));
+				assertEquals(entry.toString(), expected.getReferencesToClass(entry), actual.getReferencesToClass(entry));
+				assertEquals(entry.toString(), expected.getFieldTypeReferencesToClass(entry), actual.getFieldTypeReferencesToClass(entry));
+				assertEquals(entry.toString(), expected.getMethodTypeReferencesToClass(entry), actual.getMethodTypeReferencesToClass(entry));
+			}
+
+			for (MethodEntry entry : sequential.getEntryIndex().getMethods()) {
+				assertEquals(entry.toString(), expected.getReferencesToMethod(entry), actual.getReferencesToMethod(entry));
+				assertEquals(entry.toString(), expected.getMethodsReferencedBy(entry), actual.getMethodsReferencedBy(entry));
+			}
+
+			for (FieldEntry entry : sequential.getEntryIndex().getFields()) {
+				assertEquals(entry.toString(), expected.getReferencesToField(entry), actual.getReferencesToField(entry));
+			}
+		}
+	}
+
+	@Test
+	public void classesOutsideTheBufferAreReadAgain() throws Exception {
+		for (String jar : JARS) {
+			Path path = Paths.get("build/test-obf/" + jar + ".jar");
+			JarIndex buffered = index(path, true);
+
+			JarClassProvider jcp = new JarClassProvider(path);
+			JarIndex unbuffered = JarIndex.empty();
+			unbuffered.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none(), true, 0);
+
+			assertEquals(jar, buffered.getEntryIndex().getMethods(), unbuffered.getEntryIndex().getMethods());
+			for (MethodEntry entry : buffered.getEntryIndex().getMethods()) {
+				assertEquals(entry.toString(), buffered.getReferenceIndex().getReferencesToMethod(entry), unbuffered.getReferenceIndex().getReferencesToMethod(entry));
+				assertEquals(entry.toString(), buffered.getReferenceIndex().getMethodsReferencedBy(entry), unbuffered.getReferenceIndex().getMethodsReferencedBy(entry));
+			}
+		}
+	}
+
+	private static JarIndex index(Path path, boolean parallel) throws Exception {
+		JarClassProvider jcp = new JarClassProvider(path);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none(), parallel);
+		return index;
+	}
+}
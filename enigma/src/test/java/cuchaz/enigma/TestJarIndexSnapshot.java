@@ -0,0 +1,139 @@
+package cuchaz.enigma;
+
+import com.google.common.io.BaseEncoding;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.JarIndexSnapshot;
+import cuchaz.enigma.analysis.index.ReferenceIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.ClasspathClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.Utils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestJarIndexSnapshot {
+	private static final String[] JARS = {"translation", "inheritanceTree", "innerClasses", "constructors", "packageAccess"};
+
+	@Test
+	public void snapshotMatchesIndex() throws Exception {
+		Path snapshot = Files.createTempFile("enigma-index", ".idx");
+
+		try {
+			for (String jar : JARS) {
+				Path path = Paths.get("build/test-obf/" + jar + ".jar");
+				byte[] checksum = Utils.zipSha1(path);
+				JarIndex index = index(path);
+				JarIndexSnapshot.write(index, checksum, snapshot);
+				JarIndex read = JarIndexSnapshot.read(snapshot, checksum);
+
+				assertNotNull(jar, read);
+				assertEquals(jar, index.getEntryIndex().getClasses(), read.getEntryIndex().getClasses());
+				assertEquals(jar, index.getEntryIndex().getMethods(), read.getEntryIndex().getMethods());
+				assertEquals(jar, index.getEntryIndex().getFields(), read.getEntryIndex().getFields());
+				assertEquals(jar, index.getChildrenByClass(), read.getChildrenByClass());
+				assertEquals(jar, index.getBridgeMethodIndex().getBridgeToSpecialized(), read.getBridgeMethodIndex().getBridgeToSpecialized());
+				assertEquals(jar, index.getBridgeMethodIndex().getSpecializedToBridge(), read.getBridgeMethodIndex().getSpecializedToBridge());
+				assertEquals(jar, index.getPackageVisibilityIndex().getPartitions(), read.getPackageVisibilityIndex().getPartitions());
+
+				ReferenceIndex expected = index.getReferenceIndex();
+				ReferenceIndex actual = read.getReferenceIndex();
+
+				for (ClassEntry entry : index.getEntryIndex().getClasses()) {
+					assertEquals(entry.toString(), index.getEntryIndex().getDefinition(entry).getAccess().getFlags(), read.getEntryIndex().getDefinition(entry).getAccess().getFlags());
+					assertEquals(entry.toString(), index.getInheritanceIndex().getParents(entry), read.getInheritanceIndex().getParents(entry));
+					assertEquals(entry.toString(), index.getInheritanceIndex().getChildren(entry), read.getInheritanceIndex().getChildren(entry));
+					assertEquals(entry.toString(), expected.getReferencesToClass(entry), actual.getReferencesToClass(entry));
+					assertEquals(entry.toString(), expected.getFieldTypeReferencesToClass(entry), actual.getFieldTypeReferencesToClass(entry));
+					assertEquals(entry.toString(), expected.getMethodTypeReferencesToClass(entry), actual.getMethodTypeReferencesToClass(entry));
+				}
+
+				for (MethodEntry entry : index.getEntryIndex().getMethods()) {
+					assertEquals(entry.toString(), index.getEntryIndex().getMethodAccess(entry).getFlags(), read.getEntryIndex().getMethodAccess(entry).getFlags());
+					assertEquals(entry.toString(), expected.getReferencesToMethod(entry), actual.getReferencesToMethod(entry));
+					assertEquals(entry.toString(), expected.getMethodsReferencedBy(entry), actual.getMethodsReferencedBy(entry));
+				}
+
+				for (FieldEntry entry : index.getEntryIndex().getFields()) {
+					assertEquals(entry.toString(), expected.getReferencesToField(entry), actual.getReferencesToField(entry));
+				}
+
+				byte[] otherChecksum = checksum.clone();
+				otherChecksum[0]++;
+				assertNull(jar, JarIndexSnapshot.read(snapshot, otherChecksum));
+			}
+		} finally {
+			Files.deleteIfExists(snapshot);
+		}
+	}
+
+	@Test
+	public void corruptSnapshotsFailAsIOException() throws Exception {
+		Path path = Paths.get("build/test-obf/inheritanceTree.jar");
+		byte[] checksum = Utils.zipSha1(path);
+		Path snapshot = Files.createTempFile("enigma-index", ".idx");
+
+		try {
+			JarIndexSnapshot.write(index(path), checksum, snapshot);
+			byte[] bytes = Files.readAllBytes(snapshot);
+			Random random = new Random(42);
+
+			for (int i = 0; i < 200; i++) {
+				byte[] corrupt = i % 2 == 0 ? Arrays.copyOf(bytes, random.nextInt(bytes.length)) : bytes.clone();
+				if (i % 2 != 0) {
+					for (int j = 0; j < 4; j++) {
+						corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt();
+					}
+				}
+
+				Files.write(snapshot, corrupt);
+				try {
+					JarIndexSnapshot.read(snapshot, checksum);
+				} catch (IOException e) {
+					// expected, the snapshot is rebuilt
+				}
+			}
+		} finally {
+			Files.deleteIfExists(snapshot);
+		}
+	}
+
+	@Test
+	public void openingAJarPrunesOtherSnapshots() throws Exception {
+		Path path = Paths.get("build/test-obf/inheritanceTree.jar");
+		Path directory = Files.createTempDirectory("enigma-index");
+		Path stale = directory.resolve("0000000000000000000000000000000000000000.idx");
+		Files.write(stale, new byte[16]);
+
+		try {
+			Enigma enigma = Enigma.builder().setIndexCacheDirectory(directory).setIndexCacheSize(0).setSourceCacheDirectory(null).build();
+			enigma.openJar(path, new ClasspathClassProvider(), ProgressListener.none());
+
+			assertFalse(Files.exists(stale));
+			assertTrue(Files.isRegularFile(directory.resolve(BaseEncoding.base16().lowerCase().encode(Utils.zipSha1(path)) + ".idx")));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	private static JarIndex index(Path path) throws Exception {
+		JarClassProvider jcp = new JarClassProvider(path);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+		return index;
+	}
+}
@@ -0,0 +1,81 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.classprovider.MappedJarClassProvider;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestMappedJarClassProvider {
+	private static final String[] JARS = {"translation", "inheritanceTree", "innerClasses", "constructors", "packageAccess"};
+
+	@Test
+	public void matchesJarClassProvider() throws Exception {
+		for (String jar : JARS) {
+			assertSameClasses(Paths.get("build/test-obf/" + jar + ".jar"));
+		}
+	}
+
+	@Test
+	public void readsStoredEntries() throws Exception {
+		Path stored = Files.createTempFile("enigma-stored", ".jar");
+
+		try {
+			try (JarClassProvider source = new JarClassProvider(Paths.get("build/test-obf/translation.jar"));
+				 OutputStream out = Files.newOutputStream(stored);
+				 ZipOutputStream zip = new ZipOutputStream(out)) {
+				zip.setMethod(ZipOutputStream.STORED);
+
+				for (String name : source.getClassNames()) {
+					byte[] bytes = source.getBytes(name);
+					CRC32 crc = new CRC32();
+					crc.update(bytes);
+
+					ZipEntry entry = new ZipEntry(name + ".class");
+					entry.setSize(bytes.length);
+					entry.setCrc(crc.getValue());
+					zip.putNextEntry(entry);
+					zip.write(bytes);
+					zip.closeEntry();
+				}
+			}
+
+			assertSameClasses(stored);
+		} finally {
+			Files.deleteIfExists(stored);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closedProviderRejectsReads() throws Exception {
+		MappedJarClassProvider mapped = new MappedJarClassProvider(Paths.get("build/test-obf/translation.jar"));
+		String name = mapped.getClassNames().iterator().next();
+
+		mapped.close();
+		mapped.close();
+		mapped.getBytes(name);
+	}
+
+	private static void assertSameClasses(Path path) throws Exception {
+		try (MappedJarClassProvider mapped = new MappedJarClassProvider(path);
+			 JarClassProvider expected = new JarClassProvider(path)) {
+			assertEquals(path.toString(), expected.getClassNames(), mapped.getClassNames());
+
+			for (String name : expected.getClassNames()) {
+				assertArrayEquals(name, expected.getBytes(name), mapped.getBytes(name));
+			}
+
+			assertNull(mapped.getBytes("does/not/Exist"));
+		}
+	}
+}
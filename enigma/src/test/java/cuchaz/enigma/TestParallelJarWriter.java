@@ -0,0 +1,77 @@
+package cuchaz.enigma;
+
+import com.google.common.io.ByteStreams;
+import cuchaz.enigma.utils.ParallelJarWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelJarWriter {
+	@Test
+	public void writesDeflatedEntries() throws Exception {
+		assertRoundTrip(entries(100), Deflater.DEFAULT_COMPRESSION, ZipEntry.DEFLATED);
+	}
+
+	@Test
+	public void writesStoredEntries() throws Exception {
+		assertRoundTrip(entries(100), Deflater.NO_COMPRESSION, ZipEntry.STORED);
+	}
+
+	@Test
+	public void writesZip64EntryCount() throws Exception {
+		assertRoundTrip(entries(70000), Deflater.NO_COMPRESSION, ZipEntry.STORED);
+	}
+
+	private static Map<String, byte[]> entries(int count) {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			entries.put("pkg/Class" + i + ".class", ("class " + i + " " + i * 31).getBytes(StandardCharsets.UTF_8));
+		}
+		return entries;
+	}
+
+	private static void assertRoundTrip(Map<String, byte[]> entries, int compressionLevel, int method) throws IOException {
+		Path path = Files.createTempFile("enigma-writer", ".jar");
+
+		try {
+			try (ParallelJarWriter writer = new ParallelJarWriter(Files.newOutputStream(path))) {
+				entries.entrySet().parallelStream()
+						.map(entry -> ParallelJarWriter.prepare(entry.getKey(), entry.getValue(), compressionLevel))
+						.forEachOrdered(entry -> {
+							try {
+								writer.write(entry);
+							} catch (IOException e) {
+								throw new RuntimeException(e);
+							}
+						});
+			}
+
+			try (JarFile jar = new JarFile(path.toFile())) {
+				int index = 0;
+				String[] names = entries.keySet().toArray(new String[0]);
+
+				for (ZipEntry entry : Collections.list(jar.entries())) {
+					assertEquals(names[index++], entry.getName());
+					assertEquals(entry.getName(), method, entry.getMethod());
+					assertArrayEquals(entry.getName(), entries.get(entry.getName()), ByteStreams.toByteArray(jar.getInputStream(entry)));
+				}
+
+				assertEquals(entries.size(), index);
+			}
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package cuchaz.enigma;
+
+import com.google.common.collect.Lists;
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.source.*;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.utils.Utils;
+import cuchaz.enigma.utils.validation.ValidationContext;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestSourceCache {
+	private static final String[] JARS = {"constructors", "inheritanceTree", "innerClasses"};
+	private static final SourceSettings SETTINGS = new SourceSettings(true, true);
+	private static final byte[] CLASSPATH = new byte[20];
+
+	@Test
+	public void sourcesSurviveRestart() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-sources");
+
+		try {
+			for (String jar : JARS) {
+				Path path = Paths.get("build/test-obf/" + jar + ".jar");
+				byte[] checksum = Utils.zipSha1(path);
+				JarClassProvider jarClassProvider = new JarClassProvider(path);
+				CachingClassProvider classProvider = new CachingClassProvider(jarClassProvider);
+				JarIndex index = JarIndex.empty();
+				index.indexJar(jarClassProvider.getClassNames(), classProvider, ProgressListener.none());
+
+				for (String decompilerId : new String[]{"procyon", "cfr"}) {
+					DecompilerService service = decompilerId.equals("procyon") ? Decompilers.PROCYON : Decompilers.CFR;
+					Decompiler decompiler = service.create(classProvider, SETTINGS);
+
+					for (ClassEntry entry : index.getEntryIndex().getClasses()) {
+						if (entry.isInnerClass()) {
+							continue;
+						}
+
+						SourceCache.Key key = new SourceCache.Key(checksum, CLASSPATH, entry.getFullName(), decompilerId, SETTINGS);
+						Source source = indexOnce(decompiler.getSource(entry.getFullName()));
+						new SourceCache(SourceCache.DEFAULT_MAXIMUM_BYTES, directory).put(key, source);
+
+						Source cached = new SourceCache(SourceCache.DEFAULT_MAXIMUM_BYTES, directory).get(key, decompiler);
+						assertNotNull(entry.toString(), cached);
+						assertSameSource(entry.toString(), source, cached);
+					}
+				}
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void keyMismatchMisses() throws Exception {
+		Path path = Paths.get("build/test-obf/constructors.jar");
+		Decompiler decompiler = Decompilers.PROCYON.create(new CachingClassProvider(new JarClassProvider(path)), SETTINGS);
+		Source source = decompiler.getSource("a");
+
+		SourceCache cache = new SourceCache(SourceCache.DEFAULT_MAXIMUM_BYTES, null);
+		byte[] checksum = new byte[20];
+		cache.put(new SourceCache.Key(checksum, CLASSPATH, "a", "procyon", SETTINGS), source);
+
+		assertNotNull(cache.get(new SourceCache.Key(checksum, CLASSPATH, "a", "procyon", SETTINGS), decompiler));
+		assertNull(cache.get(new SourceCache.Key(checksum, CLASSPATH, "a", "cfr", SETTINGS), decompiler));
+		assertNull(cache.get(new SourceCache.Key(checksum, CLASSPATH, "a", "procyon", new SourceSettings(false, false)), decompiler));
+		assertNull(cache.get(new SourceCache.Key(new byte[20 - 1], CLASSPATH, "a", "procyon", SETTINGS), decompiler));
+		assertNull(cache.get(new SourceCache.Key(checksum, new byte[20 - 1], "a", "procyon", SETTINGS), decompiler));
+	}
+
+	@Test
+	public void openingAJarPrunesTheDirectory() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-sources");
+		Decompiler decompiler = Decompilers.PROCYON.create(new CachingClassProvider(new JarClassProvider(Paths.get("build/test-obf/constructors.jar"))), SETTINGS);
+		Source source = decompiler.getSource("a");
+		byte[] first = checksum(1);
+		byte[] second = checksum(2);
+		byte[] third = checksum(3);
+
+		try {
+			SourceCache unbounded = new SourceCache(0, directory, Long.MAX_VALUE);
+			unbounded.open(first, CLASSPATH);
+			unbounded.put(new SourceCache.Key(first, CLASSPATH, "a", "procyon", SETTINGS), source);
+			unbounded.open(second, CLASSPATH);
+			unbounded.put(new SourceCache.Key(second, CLASSPATH, "a", "procyon", SETTINGS), source);
+			unbounded.put(new SourceCache.Key(second, checksum(4), "a", "procyon", SETTINGS), source);
+			unbounded.open(second, checksum(4));
+
+			assertNotNull(unbounded.get(new SourceCache.Key(first, CLASSPATH, "a", "procyon", SETTINGS), decompiler));
+			assertNull(unbounded.get(new SourceCache.Key(second, CLASSPATH, "a", "procyon", SETTINGS), decompiler));
+			assertNotNull(unbounded.get(new SourceCache.Key(second, checksum(4), "a", "procyon", SETTINGS), decompiler));
+
+			SourceCache bounded = new SourceCache(0, directory, 1);
+			bounded.open(third, CLASSPATH);
+			bounded.put(new SourceCache.Key(third, CLASSPATH, "a", "procyon", SETTINGS), source);
+			bounded.open(third, CLASSPATH);
+
+			assertNull(bounded.get(new SourceCache.Key(first, CLASSPATH, "a", "procyon", SETTINGS), decompiler));
+			assertNull(bounded.get(new SourceCache.Key(second, checksum(4), "a", "procyon", SETTINGS), decompiler));
+			assertNotNull(bounded.get(new SourceCache.Key(third, CLASSPATH, "a", "procyon", SETTINGS), decompiler));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void javadocsReuseOneDecompile() throws Exception {
+		Path path = Paths.get("build/test-obf/constructors.jar");
+		JarClassProvider jarClassProvider = new JarClassProvider(path);
+		CachingClassProvider classProvider = new CachingClassProvider(jarClassProvider);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jarClassProvider.getClassNames(), classProvider, ProgressListener.none());
+		EntryRemapper remapper = EntryRemapper.empty(index);
+		remapper.mapFromObf(new ValidationContext(), new ClassEntry("a"), new EntryMapping("Documented", "first"), false);
+
+		Decompiler procyon = Decompilers.PROCYON.create(classProvider, SETTINGS);
+		AtomicInteger decompiles = new AtomicInteger();
+		Decompiler counting = (className, r) -> {
+			decompiles.incrementAndGet();
+			return procyon.getSource(className, r);
+		};
+
+		SourceCache cache = new SourceCache(SourceCache.DEFAULT_MAXIMUM_BYTES, null);
+		SourceCache.Key key = new SourceCache.Key(new byte[20], CLASSPATH, "a", "procyon", SETTINGS);
+		cache.put(key, procyon.getSource("a", null));
+		Source cached = cache.get(key, counting);
+
+		assertTrue(cached.withJavadocs(remapper).asString().contains("first"));
+		remapper.mapFromObf(new ValidationContext(), new ClassEntry("a"), new EntryMapping("Documented", "second"), false);
+		assertTrue(cached.withJavadocs(remapper).asString().contains("second"));
+		assertEquals(1, decompiles.get());
+	}
+
+	private static byte[] checksum(int value) {
+		byte[] checksum = new byte[20];
+		checksum[0] = (byte) value;
+		return checksum;
+	}
+
+	/**
+	 * Procyon indexes its syntax tree again on every call, so the cached index is compared against
+	 * the one that was actually written.
+	 */
+	private static Source indexOnce(Source source) {
+		SourceIndex index = source.index();
+		return new Source() {
+			@Override
+			public String asString() {
+				return source.asString();
+			}
+
+			@Override
+			public Source withJavadocs(EntryRemapper remapper) {
+				return source.withJavadocs(remapper);
+			}
+
+			@Override
+			public SourceIndex index() {
+				return index;
+			}
+		};
+	}
+
+	private static void assertSameSource(String message, Source expected, Source actual) {
+		assertEquals(message, expected.asString(), actual.asString());
+
+		SourceIndex expectedIndex = expected.index();
+		SourceIndex actualIndex = actual.index();
+		assertEquals(message, Lists.newArrayList(expectedIndex.referenceTokens()), Lists.newArrayList(actualIndex.referenceTokens()));
+
+		for (Entry<?> declaration : expectedIndex.declarations()) {
+			assertEquals(message, expectedIndex.getDeclarationToken(declaration), actualIndex.getDeclarationToken(declaration));
+			assertEquals(message, declaration.getClass(), getDeclaration(actualIndex, declaration).getClass());
+		}
+
+		for (EntryReference<Entry<?>, Entry<?>> reference : expectedIndex.references()) {
+			assertEquals(message, expectedIndex.getReferenceTokens(reference), actualIndex.getReferenceTokens(reference));
+		}
+
+		for (Token token : expectedIndex.referenceTokens()) {
+			EntryReference<Entry<?>, Entry<?>> reference = expectedIndex.getReference(token);
+			assertEquals(message, reference, actualIndex.getReference(token));
+			assertEquals(message, reference.isNamed(), actualIndex.getReference(token).isNamed());
+		}
+	}
+
+	private static Entry<?> getDeclaration(SourceIndex index, Entry<?> entry) {
+		for (Entry<?> declaration : index.declarations()) {
+			if (declaration.equals(entry)) {
+				return declaration;
+			}
+		}
+
+		throw new AssertionError("Missing declaration " + entry);
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+}
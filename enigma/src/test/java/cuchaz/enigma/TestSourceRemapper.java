@@ -0,0 +1,65 @@
+package cuchaz.enigma;
+
+import cuchaz.enigma.source.SourceRemapper;
+import cuchaz.enigma.source.Token;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSourceRemapper {
+	@Test
+	public void renamesTokensAndMovesTheRest() {
+		String source = "class a extends b { a c; }";
+		Token a = new Token(6, 7, "a");
+		Token b = new Token(16, 17, "b");
+		Token a2 = new Token(20, 21, "a");
+		Token c = new Token(22, 23, "c");
+		List<Token> tokens = new ArrayList<>();
+		tokens.add(a);
+		tokens.add(b);
+		tokens.add(a2);
+		tokens.add(c);
+
+		SourceRemapper.Result result = new SourceRemapper(source, tokens).remap((token, movedToken) -> {
+			switch (token.text) {
+				case "a":
+					return "Foo";
+				case "c":
+					return "x";
+				default:
+					return null;
+			}
+		});
+
+		assertEquals("class Foo extends b { Foo x; }", result.getSource());
+		assertEquals(new Token(6, 9, "Foo"), result.getRemappedToken(a));
+		assertEquals(new Token(18, 19, "b"), result.getRemappedToken(b));
+		assertEquals(new Token(22, 25, "Foo"), result.getRemappedToken(a2));
+		assertEquals(new Token(26, 27, "x"), result.getRemappedToken(c));
+	}
+
+	@Test
+	public void remapsLargeSources() {
+		StringBuilder source = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		List<Token> tokens = new ArrayList<>();
+		for (int i = 0; i < 50_000; i++) {
+			source.append("    ");
+			expected.append("    ");
+			tokens.add(new Token(source.length(), source.length() + 1, "a"));
+			expected.append("field").append(source.length()).append(";\n");
+			source.append("a;\n");
+		}
+
+		SourceRemapper.Result result = new SourceRemapper(source.toString(), tokens).remap((token, movedToken) -> "field" + token.start);
+
+		assertEquals(expected.toString(), result.getSource());
+		for (int i = 0; i < tokens.size(); i += 997) {
+			Token token = result.getRemappedToken(tokens.get(i));
+			assertEquals("field" + tokens.get(i).start, result.getSource().substring(token.start, token.end));
+		}
+	}
+}
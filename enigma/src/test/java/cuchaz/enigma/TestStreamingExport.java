@@ -0,0 +1,126 @@
+package cuchaz.enigma;
+
+import com.google.common.io.ByteStreams;
+import cuchaz.enigma.classprovider.ClasspathClassProvider;
+import cuchaz.enigma.source.Decompilers;
+import cuchaz.enigma.translation.mapping.serde.enigma.EnigmaMappingsReader;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestStreamingExport {
+	private static final Path JAR = Paths.get("build/test-obf/translation.jar");
+	private static final Path MAPPINGS = Paths.get("src/test/resources/translation.mappings");
+
+	private static EnigmaProject project;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		Enigma enigma = Enigma.builder().setIndexCacheDirectory(null).setSourceCacheDirectory(null).build();
+		project = enigma.openJar(JAR, new ClasspathClassProvider(), ProgressListener.none());
+		project.setMappings(EnigmaMappingsReader.FILE.read(MAPPINGS, ProgressListener.none(), enigma.getProfile().getMappingSaveParameters()));
+	}
+
+	@Test
+	public void remappedJarMatchesExport() throws Exception {
+		Path expected = Files.createTempFile("enigma-export", ".jar");
+		Path actual = Files.createTempFile("enigma-stream", ".jar");
+
+		try {
+			project.exportRemappedJar(ProgressListener.none()).write(expected, ProgressListener.none());
+			project.writeRemappedJar(actual, ProgressListener.none());
+
+			Map<String, byte[]> expectedEntries = readEntries(expected);
+			Map<String, byte[]> actualEntries = readEntries(actual);
+
+			assertEquals(expectedEntries.keySet(), actualEntries.keySet());
+			assertTrue(actualEntries.containsKey("deobf/A_Basic.class"));
+			for (String name : expectedEntries.keySet()) {
+				assertArrayEquals(name, expectedEntries.get(name), actualEntries.get(name));
+			}
+		} finally {
+			Files.deleteIfExists(expected);
+			Files.deleteIfExists(actual);
+		}
+	}
+
+	@Test
+	public void remappedJarIsWrittenInNameOrder() throws Exception {
+		Path path = Files.createTempFile("enigma-stream", ".jar");
+
+		try {
+			project.writeRemappedJar(path, ProgressListener.none());
+
+			List<String> names = new ArrayList<>();
+			try (JarFile jar = new JarFile(path.toFile())) {
+				for (JarEntry entry : Collections.list(jar.entries())) {
+					names.add(entry.getName().substring(0, entry.getName().length() - ".class".length()));
+				}
+			}
+
+			List<String> sorted = new ArrayList<>(names);
+			Collections.sort(sorted);
+			assertEquals(sorted, names);
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void decompiledSourcesMatchExport() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-stream");
+
+		try {
+			project.writeDecompiledSources(directory, ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE);
+
+			EnigmaProject.SourceExport expected = project.exportRemappedJar(ProgressListener.none())
+					.decompile(ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE);
+
+			assertEquals(expected.decompiled.size(), countFiles(directory));
+			for (EnigmaProject.ClassSource source : expected.decompiled) {
+				assertEquals(source.name, source.source, new String(Files.readAllBytes(source.resolvePath(directory)), "UTF-8"));
+			}
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				for (Path file : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+					Files.delete(file);
+				}
+			}
+		}
+	}
+
+	private static Map<String, byte[]> readEntries(Path path) throws IOException {
+		Map<String, byte[]> entries = new HashMap<>();
+
+		try (JarFile jar = new JarFile(path.toFile())) {
+			for (JarEntry entry : Collections.list(jar.entries())) {
+				entries.put(entry.getName(), ByteStreams.toByteArray(jar.getInputStream(entry)));
+			}
+		}
+
+		return entries;
+	}
+
+	private static long countFiles(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+}
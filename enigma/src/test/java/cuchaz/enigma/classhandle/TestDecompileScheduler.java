@@ -0,0 +1,125 @@
+package cuchaz.enigma.classhandle;
+
+import cuchaz.enigma.classhandle.DecompileScheduler.Priority;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestDecompileScheduler {
+	@Test
+	public void runsMostImportantFirst() throws Exception {
+		DecompileScheduler scheduler = new DecompileScheduler(1);
+		CountDownLatch release = block(scheduler);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<Boolean> last = scheduler.submit(() -> Priority.PREFETCH, () -> true, () -> order.add("prefetch"));
+		scheduler.submit(() -> Priority.OPEN, () -> true, () -> order.add("open 1"));
+		scheduler.submit(() -> Priority.FOCUSED, () -> true, () -> order.add("focused"));
+		scheduler.submit(() -> Priority.OPEN, () -> true, () -> order.add("open 2"));
+
+		release.countDown();
+		last.get(10, TimeUnit.SECONDS);
+		scheduler.shutdown();
+		assertThat(scheduler.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+		assertThat(order, contains("focused", "open 1", "open 2", "prefetch"));
+	}
+
+	@Test
+	public void focusMovesWaitingTasksAhead() throws Exception {
+		DecompileScheduler scheduler = new DecompileScheduler(1);
+		CountDownLatch release = block(scheduler);
+		List<String> order = new CopyOnWriteArrayList<>();
+		AtomicReference<Priority> priority = new AtomicReference<>(Priority.OPEN);
+
+		CompletableFuture<Boolean> last = scheduler.submit(() -> Priority.OPEN, () -> true, () -> order.add("other"));
+		scheduler.submit(priority::get, () -> true, () -> order.add("focused later"));
+		priority.set(Priority.FOCUSED);
+
+		release.countDown();
+		last.get(10, TimeUnit.SECONDS);
+
+		assertThat(order, contains("focused later", "other"));
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void supersededTasksDoNotRun() throws Exception {
+		DecompileScheduler scheduler = new DecompileScheduler(1);
+		CountDownLatch release = block(scheduler);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<Boolean> stale = scheduler.submit(() -> Priority.FOCUSED, () -> false, () -> order.add("stale"));
+		CompletableFuture<Boolean> current = scheduler.submit(() -> Priority.OPEN, () -> true, () -> order.add("current"));
+
+		release.countDown();
+		assertThat(stale.get(10, TimeUnit.SECONDS), nullValue());
+		assertThat(current.get(10, TimeUnit.SECONDS), is(true));
+		assertThat(order, contains("current"));
+
+		scheduler.shutdown();
+		assertThat(scheduler.submit(() -> Priority.FOCUSED, () -> true, () -> order.add("late")).get(10, TimeUnit.SECONDS), nullValue());
+		assertThat(order, contains("current"));
+	}
+
+	@Test
+	public void prefetchesWaitForOtherWork() throws Exception {
+		DecompileScheduler scheduler = new DecompileScheduler(2);
+		CountDownLatch release = block(scheduler);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<Boolean> prefetch = scheduler.submit(() -> Priority.PREFETCH, () -> true, () -> order.add("prefetch"));
+		Thread.sleep(100);
+		assertThat(order, is(empty()));
+
+		release.countDown();
+		prefetch.get(10, TimeUnit.SECONDS);
+		assertThat(order, contains("prefetch"));
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void shutdownDropsWaitingPrefetches() throws Exception {
+		DecompileScheduler scheduler = new DecompileScheduler(1);
+		CountDownLatch release = block(scheduler);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<Boolean> prefetch = scheduler.submit(() -> Priority.PREFETCH, () -> true, () -> order.add("prefetch"));
+		CompletableFuture<Boolean> open = scheduler.submit(() -> Priority.OPEN, () -> true, () -> order.add("open"));
+		scheduler.shutdown();
+
+		assertThat(prefetch.get(10, TimeUnit.SECONDS), nullValue());
+		release.countDown();
+		assertThat(open.get(10, TimeUnit.SECONDS), is(true));
+		assertThat(scheduler.awaitTermination(10, TimeUnit.SECONDS), is(true));
+		assertThat(order, contains("open"));
+	}
+
+	/**
+	 * Occupies a thread of the scheduler until the returned latch is released, so that the tasks
+	 * submitted in the meantime have to wait.
+	 */
+	private static CountDownLatch block(DecompileScheduler scheduler) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.submit(() -> Priority.FOCUSED, () -> true, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return null;
+		});
+		started.await();
+		return release;
+	}
+}
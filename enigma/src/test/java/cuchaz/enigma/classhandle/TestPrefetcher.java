@@ -0,0 +1,61 @@
+package cuchaz.enigma.classhandle;
+
+import cuchaz.enigma.ProgressListener;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestPrefetcher {
+	private static final ClassEntry BASE_CLASS = new ClassEntry("a");
+	private static final ClassEntry SUB_CLASS_A = new ClassEntry("b");
+	private static final ClassEntry SUB_CLASS_B = new ClassEntry("c");
+	private static final ClassEntry SUB_SUB_CLASS_AA = new ClassEntry("d");
+
+	private final Prefetcher prefetcher;
+
+	public TestPrefetcher() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(Paths.get("build/test-obf/inheritanceTree.jar"));
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+		prefetcher = new Prefetcher(index);
+	}
+
+	@Test
+	public void parentsComeFirst() {
+		assertThat(prefetcher.getNeighbors(SUB_SUB_CLASS_AA, 8).get(0), is(SUB_CLASS_A));
+		assertThat(prefetcher.getNeighbors(SUB_CLASS_A, 8), contains(BASE_CLASS, SUB_SUB_CLASS_AA));
+	}
+
+	@Test
+	public void childrenComeLast() {
+		assertThat(prefetcher.getNeighbors(BASE_CLASS, 8), containsInAnyOrder(SUB_CLASS_A, SUB_CLASS_B));
+		assertThat(prefetcher.getNeighbors(BASE_CLASS, 8), not(hasItem(BASE_CLASS)));
+	}
+
+	@Test
+	public void limitIsRespected() {
+		assertThat(prefetcher.getNeighbors(SUB_CLASS_A, 1), contains(BASE_CLASS));
+		assertThat(prefetcher.getNeighbors(SUB_CLASS_A, 0), is(empty()));
+	}
+
+	@Test
+	public void countsPrefetchesThatWereOpened() {
+		prefetcher.onPrefetched(SUB_CLASS_A);
+		prefetcher.onPrefetched(SUB_CLASS_B);
+		prefetcher.onOpened(SUB_CLASS_A);
+		prefetcher.onOpened(SUB_CLASS_A);
+		prefetcher.onOpened(BASE_CLASS);
+
+		PrefetchStats stats = prefetcher.getStats();
+		assertThat(stats.getPrefetched(), is(2L));
+		assertThat(stats.getUsed(), is(1L));
+		assertThat(stats.getHitRate(), closeTo(0.5, 1e-9));
+	}
+}
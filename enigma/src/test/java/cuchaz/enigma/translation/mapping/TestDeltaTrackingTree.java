@@ -0,0 +1,105 @@
+package cuchaz.enigma.translation.mapping;
+
+import cuchaz.enigma.translation.mapping.tree.DeltaTrackingTree;
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestDeltaTrackingTree {
+	private static final ClassEntry CLASS = new ClassEntry("a");
+	private static final FieldEntry FIELD = FieldEntry.parse("a", "b", "I");
+	private static final FieldEntry OTHER_FIELD = FieldEntry.parse("a", "c", "I");
+
+	@Test
+	public void baseMappingsStayAsTheyWere() {
+		EntryTree<String> mappings = new HashEntryTree<>();
+		mappings.insert(CLASS, "Class");
+		mappings.insert(FIELD, "field");
+
+		DeltaTrackingTree<String> tree = new DeltaTrackingTree<>(mappings);
+		tree.insert(FIELD, "renamed");
+		tree.insert(OTHER_FIELD, "other");
+		tree.insert(FIELD, "renamedAgain");
+
+		MappingDelta<String> first = tree.takeDelta();
+		assertThat(first.getBaseMappings().get(FIELD), is("field"));
+		assertThat(first.getBaseMappings().get(OTHER_FIELD), nullValue());
+		assertThat(first.getBaseMappings().get(CLASS), is("Class"));
+		assertThat(first.getChanges().getAllEntries().collect(Collectors.toSet()), containsInAnyOrder(FIELD, OTHER_FIELD));
+
+		tree.remove(CLASS);
+		tree.insert(FIELD, "last");
+
+		MappingDelta<String> second = tree.takeDelta();
+		assertThat(second.getBaseMappings().get(FIELD), is("renamedAgain"));
+		assertThat(second.getBaseMappings().get(CLASS), is("Class"));
+		assertThat(second.getBaseMappings().get(OTHER_FIELD), is("other"));
+
+		assertThat(first.getBaseMappings().get(FIELD), is("field"));
+		assertThat(first.getBaseMappings().get(CLASS), is("Class"));
+		assertThat(first.getBaseMappings().getAllEntries().collect(Collectors.toSet()), containsInAnyOrder(CLASS, FIELD));
+		assertThat(tree.isDirty(), is(false));
+	}
+
+	@Test
+	public void baseMappingsCopyOnWrite() {
+		DeltaTrackingTree<String> tree = new DeltaTrackingTree<>();
+		tree.insert(CLASS, "Class");
+		tree.takeDelta();
+		tree.insert(CLASS, "Renamed");
+
+		EntryTree<String> base = tree.takeDelta().getBaseMappings();
+		base.insert(FIELD, "field");
+
+		assertThat(base.get(CLASS), is("Class"));
+		assertThat(base.get(FIELD), is("field"));
+		assertThat(tree.get(FIELD), nullValue());
+	}
+
+	@Test
+	public void baseMappingsSurviveRevertsAfterTheDelta() {
+		DeltaTrackingTree<String> tree = new DeltaTrackingTree<>();
+		tree.insert(CLASS, "Class");
+		boolean wasChanged = tree.isChanged(CLASS);
+		tree.insert(CLASS, "Renamed");
+		tree.takeDelta();
+
+		MappingDelta<String> delta = tree.takeDelta();
+		tree.revert(CLASS, "Class", wasChanged);
+
+		assertThat(delta.getBaseMappings().get(CLASS), is("Renamed"));
+	}
+
+	@Test
+	public void baseMappingsCanBeReadWhileRenaming() throws Exception {
+		DeltaTrackingTree<String> tree = new DeltaTrackingTree<>();
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(new ClassEntry("c" + i), "Class" + i);
+		}
+		tree.takeDelta();
+
+		MappingDelta<String> delta = tree.takeDelta();
+		CompletableFuture<Void> renames = CompletableFuture.runAsync(() -> {
+			for (int i = 0; i < 1000; i++) {
+				tree.insert(new ClassEntry("c" + i), "Renamed" + i);
+				tree.remove(new ClassEntry("c" + (999 - i)));
+			}
+		});
+
+		for (int i = 0; i < 1000; i++) {
+			assertThat(delta.getBaseMappings().get(new ClassEntry("c" + i)), is("Class" + i));
+		}
+		assertThat(delta.getBaseMappings().getAllEntries().count(), is(1000L));
+
+		renames.get();
+		assertThat(delta.getBaseMappings().get(new ClassEntry("c0")), is("Class0"));
+	}
+}
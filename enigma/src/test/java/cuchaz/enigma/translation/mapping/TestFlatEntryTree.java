@@ -0,0 +1,99 @@
+package cuchaz.enigma.translation.mapping;
+
+import cuchaz.enigma.translation.mapping.tree.EntryTree;
+import cuchaz.enigma.translation.mapping.tree.EntryTreeNode;
+import cuchaz.enigma.translation.mapping.tree.FlatEntryTree;
+import cuchaz.enigma.translation.mapping.tree.HashEntryTree;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestFlatEntryTree {
+	private static List<Entry<?>> createEntries() {
+		List<Entry<?>> entries = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			ClassEntry outer = new ClassEntry("a" + i);
+			ClassEntry inner = new ClassEntry(outer, "b");
+			MethodEntry method = MethodEntry.parse(inner.getFullName(), "c", "(I)V");
+			entries.add(outer);
+			entries.add(inner);
+			entries.add(method);
+			entries.add(FieldEntry.parse(outer.getFullName(), "d", "I"));
+			entries.add(new LocalVariableEntry(method, 1, "e", true, null));
+		}
+		return entries;
+	}
+
+	@Test
+	public void behavesLikeHashEntryTree() {
+		List<Entry<?>> entries = createEntries();
+		EntryTree<String> expected = new HashEntryTree<>();
+		EntryTree<String> actual = new FlatEntryTree<>();
+
+		Random random = new Random(1);
+		for (int i = 0; i < 5000; i++) {
+			Entry<?> entry = entries.get(random.nextInt(entries.size()));
+			switch (random.nextInt(3)) {
+				case 0:
+					String value = random.nextInt(4) == 0 ? null : "v" + i;
+					expected.insert(entry, value);
+					actual.insert(entry, value);
+					break;
+				case 1:
+					assertThat(actual.remove(entry), is(expected.remove(entry)));
+					break;
+				default:
+					break;
+			}
+
+			for (Entry<?> e : entries) {
+				assertThat(actual.get(e), is(expected.get(e)));
+				assertThat(new HashSet<>(actual.getChildren(e)), is(new HashSet<>(expected.getChildren(e))));
+				assertThat(actual.getSiblings(e), is(expected.getSiblings(e)));
+				assertThat(actual.findNode(e) == null, is(expected.findNode(e) == null));
+			}
+
+			assertThat(actual.isEmpty(), is(expected.isEmpty()));
+			assertThat(actual.getAllEntries().collect(Collectors.toSet()), is(expected.getAllEntries().collect(Collectors.toSet())));
+		}
+	}
+
+	@Test
+	public void iteratesParentsFirstInInsertionOrder() {
+		EntryTree<String> tree = new FlatEntryTree<>();
+		ClassEntry first = new ClassEntry("z");
+		ClassEntry second = new ClassEntry("a");
+		FieldEntry field = FieldEntry.parse("z", "f", "I");
+		MethodEntry method = MethodEntry.parse("z", "m", "()V");
+
+		tree.insert(field, "field");
+		tree.insert(second, "second");
+		tree.insert(method, "method");
+		tree.insert(first, "first");
+
+		List<Entry<?>> order = new ArrayList<>();
+		for (EntryTreeNode<String> node : tree) {
+			order.add(node.getEntry());
+		}
+
+		assertThat(order, contains(first, field, method, second));
+		assertThat(tree.findNode(first).getNodesRecursively().size(), is(3));
+
+		tree.remove(field);
+		tree.remove(method);
+		tree.remove(first);
+		assertThat(tree.getAllEntries().collect(Collectors.toList()), contains((Entry<?>) second));
+	}
+}
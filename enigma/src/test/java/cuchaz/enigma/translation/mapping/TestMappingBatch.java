@@ -0,0 +1,124 @@
+package cuchaz.enigma.translation.mapping;
+
+import cuchaz.enigma.ProgressListener;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.validation.ValidationContext;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestMappingBatch {
+	private static final Path JAR = Paths.get("build/test-obf/inheritanceTree.jar");
+	private static final MethodEntry GET_NAME = newMethod("a", "a", "()Ljava/lang/String;");
+	private static final MethodEntry DO_STUFF = newMethod("a", "a", "()V");
+	private static final MethodEntry OVERRIDDEN_DO_STUFF = newMethod("d", "a", "()V");
+
+	private final EntryRemapper remapper;
+
+	public TestMappingBatch() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+		remapper = EntryRemapper.empty(index);
+	}
+
+	private static String getName(EntryRemapper remapper, MethodEntry entry) {
+		EntryMapping mapping = remapper.getDeobfMapping(entry);
+		return mapping != null ? mapping.getTargetName() : null;
+	}
+
+	@Test
+	public void swapsNames() {
+		ValidationContext vc = new ValidationContext();
+		boolean committed = remapper.beginBatch()
+				.mapFromObf(GET_NAME, new EntryMapping("first"))
+				.mapFromObf(OVERRIDDEN_DO_STUFF, new EntryMapping("second"))
+				.commit(vc);
+
+		assertThat(committed, is(true));
+		assertThat(getName(remapper, DO_STUFF), is("second"));
+
+		MappingBatch swap = remapper.beginBatch()
+				.mapFromObf(GET_NAME, new EntryMapping("second"))
+				.mapFromObf(DO_STUFF, new EntryMapping("first"));
+		assertThat(swap.size(), is(2));
+		assertThat(swap.commit(vc), is(true));
+		assertThat(swap.isEmpty(), is(true));
+
+		assertThat(vc.canProceed(), is(true));
+		assertThat(getName(remapper, GET_NAME), is("second"));
+		assertThat(getName(remapper, DO_STUFF), is("first"));
+	}
+
+	@Test
+	public void listsChangesInOrder() {
+		MappingBatch batch = remapper.beginBatch()
+				.mapFromObf(DO_STUFF, new EntryMapping("first"))
+				.mapFromObf(GET_NAME, new EntryMapping("second"))
+				.removeByObf(DO_STUFF);
+
+		assertThat(batch.getChanges().keySet(), contains(GET_NAME, DO_STUFF));
+		assertThat(batch.getChanges().get(GET_NAME).getTargetName(), is("second"));
+		assertThat(batch.getChanges().get(DO_STUFF), nullValue());
+	}
+
+	@Test
+	public void rollsBackInvalidBatches() {
+		ValidationContext vc = new ValidationContext();
+		remapper.beginBatch().mapFromObf(GET_NAME, new EntryMapping("name")).commit(vc);
+
+		boolean committed = remapper.beginBatch()
+				.mapFromObf(GET_NAME, new EntryMapping("same"))
+				.mapFromObf(DO_STUFF, new EntryMapping("same"))
+				.commit(vc);
+
+		assertThat(committed, is(false));
+		assertThat(vc.canProceed(), is(false));
+		assertThat(getName(remapper, GET_NAME), is("name"));
+		assertThat(getName(remapper, DO_STUFF), nullValue());
+	}
+
+	@Test
+	public void invalidBatchesLeaveNoChanges() {
+		ValidationContext vc = new ValidationContext();
+		remapper.beginBatch().mapFromObf(GET_NAME, new EntryMapping("name")).commit(vc);
+		remapper.takeMappingDelta();
+		assertThat(remapper.isDirty(), is(false));
+
+		boolean committed = remapper.beginBatch()
+				.mapFromObf(GET_NAME, new EntryMapping("same"))
+				.mapFromObf(DO_STUFF, new EntryMapping("same"))
+				.commit(vc);
+
+		assertThat(committed, is(false));
+		assertThat(remapper.isDirty(), is(false));
+		assertThat(remapper.takeMappingDelta().getChanges().isEmpty(), is(true));
+	}
+
+	@Test
+	public void invalidBatchesKeepEarlierChanges() {
+		ValidationContext vc = new ValidationContext();
+		remapper.beginBatch().mapFromObf(GET_NAME, new EntryMapping("name")).commit(vc);
+
+		boolean committed = remapper.beginBatch()
+				.mapFromObf(GET_NAME, new EntryMapping("same"))
+				.mapFromObf(DO_STUFF, new EntryMapping("same"))
+				.commit(vc);
+
+		assertThat(committed, is(false));
+		assertThat(remapper.isDirty(), is(true));
+
+		MappingDelta<EntryMapping> delta = remapper.takeMappingDelta();
+		assertThat(delta.getChanges().contains(GET_NAME), is(true));
+		assertThat(delta.getChanges().contains(DO_STUFF), is(false));
+		assertThat(delta.getBaseMappings().get(GET_NAME), nullValue());
+	}
+}
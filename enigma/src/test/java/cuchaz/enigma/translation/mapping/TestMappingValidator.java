@@ -0,0 +1,71 @@
+package cuchaz.enigma.translation.mapping;
+
+import cuchaz.enigma.ProgressListener;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.validation.ValidationContext;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class TestMappingValidator {
+	private static final Path JAR = Paths.get("build/test-obf/inheritanceTree.jar");
+	private static final MethodEntry GET_NAME = newMethod("a", "a", "()Ljava/lang/String;");
+	private static final MethodEntry DO_STUFF = newMethod("a", "a", "()V");
+	private static final MethodEntry OVERRIDDEN_GET_NAME = newMethod("d", "a", "()Ljava/lang/String;");
+	private static final MethodEntry OVERRIDDEN_DO_STUFF = newMethod("d", "a", "()V");
+
+	private final EntryRemapper remapper;
+
+	public TestMappingValidator() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+		remapper = EntryRemapper.empty(index);
+	}
+
+	private boolean canRename(MethodEntry entry, String name) {
+		ValidationContext vc = new ValidationContext();
+		remapper.mapFromObf(vc, entry, new EntryMapping(name), true, true);
+		return vc.canProceed();
+	}
+
+	private void rename(MethodEntry entry, String name) {
+		ValidationContext vc = new ValidationContext();
+		remapper.mapFromObf(vc, entry, name != null ? new EntryMapping(name) : null);
+		assertThat(vc.canProceed(), is(true));
+	}
+
+	@Test
+	public void tracksRenamedSiblings() {
+		assertThat(canRename(DO_STUFF, "getName"), is(true));
+		rename(GET_NAME, "getName");
+		assertThat(canRename(DO_STUFF, "getName"), is(false));
+		assertThat(canRename(OVERRIDDEN_DO_STUFF, "getName"), is(false));
+
+		rename(GET_NAME, "name");
+		assertThat(canRename(DO_STUFF, "getName"), is(true));
+		assertThat(canRename(DO_STUFF, "name"), is(false));
+
+		rename(GET_NAME, null);
+		assertThat(canRename(DO_STUFF, "name"), is(true));
+	}
+
+	@Test
+	public void checksOverridesNamedByTheirRoot() {
+		// mapping a parameter puts the override into the mapping tree without a name of its own
+		ValidationContext vc = new ValidationContext();
+		remapper.mapFromObf(vc, new LocalVariableEntry(OVERRIDDEN_GET_NAME, 0, "a", true, null), new EntryMapping("self"), false);
+		rename(GET_NAME, "getName");
+
+		assertThat(canRename(OVERRIDDEN_DO_STUFF, "getName"), is(false));
+	}
+}
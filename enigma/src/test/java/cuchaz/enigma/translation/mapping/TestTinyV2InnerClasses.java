@@ -31,7 +31,7 @@ public final class TestTinyV2InnerClasses {
 
 //	@Test
 	public void testMappings() throws Exception {
-		EnigmaProject project = Enigma.create().openJar(jar, new ClasspathClassProvider(), ProgressListener.none());
+		EnigmaProject project = Enigma.builder().setIndexCacheDirectory(null).setSourceCacheDirectory(null).build().openJar(jar, new ClasspathClassProvider(), ProgressListener.none());
 		project.setMappings(EnigmaMappingsReader.DIRECTORY.read(mappings, ProgressListener.none(), project.getEnigma().getProfile().getMappingSaveParameters()));
 
 	}